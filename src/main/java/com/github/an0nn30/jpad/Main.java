@@ -1,5 +1,6 @@
 package com.github.an0nn30.jpad;
 
+import com.github.an0nn30.jpad.event.EventBus;
 import com.github.an0nn30.jpad.settings.Settings;
 import com.github.an0nn30.jpad.ui.EditorFrame;
 
@@ -11,11 +12,14 @@ import java.io.File;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 
 public class Main {
     public static void main(String[] args) {
         Settings.initialize();
+        EventBus.registerMBean();
         System.setProperty("apple.awt.application.appearance", "NSAppearanceNameAqua");
 
         // Detect and apply Linux scaling if running on Linux
@@ -31,15 +35,7 @@ public class Main {
                 @Override
                 public void openFiles(OpenFilesEvent e) {
                     if (!e.getFiles().isEmpty()) {
-                        SwingUtilities.invokeLater(() -> {
-                            File file = e.getFiles().get(0);
-                            EditorFrame frame = EditorFrame.getAnyOpenFrame();
-                            if (frame != null) {
-                                frame.openFileInNewTab(file);
-                            } else {
-                                new EditorFrame(file).setVisible(true);
-                            }
-                        });
+                        SwingUtilities.invokeLater(() -> Main.openFiles(e.getFiles()));
                     }
                 }
             });
@@ -47,19 +43,38 @@ public class Main {
 
         SwingUtilities.invokeLater(() -> {
             if (args.length >= 1) {
-                File file = new File(args[0]);
-                EditorFrame frame = EditorFrame.getAnyOpenFrame();
-                if (frame != null) {
-                    frame.openFileInNewTab(file);
-                } else {
-                    new EditorFrame(file).setVisible(true);
+                List<File> files = new ArrayList<>();
+                for (String arg : args) {
+                    files.add(new File(arg));
                 }
+                openFiles(files);
             } else {
-                new EditorFrame().setVisible(true);
+                EditorFrame frame = new EditorFrame();
+                frame.restoreSession();
+                frame.setVisible(true);
             }
+            // Offer to restore buffers left unsaved by a crash, in the first window.
+            EditorFrame.getAnyOpenFrame().getTabManager().recoverUnsavedChanges();
         });
     }
 
+    /**
+     * Opens files in the first open window, or in a new window if there is none.
+     * Several files are read in parallel and added as one batch.
+     */
+    private static void openFiles(List<File> files) {
+        EditorFrame frame = EditorFrame.getAnyOpenFrame();
+        if (frame == null && files.size() == 1) {
+            new EditorFrame(files.get(0)).setVisible(true);
+            return;
+        }
+        if (frame == null) {
+            frame = new EditorFrame();
+            frame.setVisible(true);
+        }
+        frame.getTabManager().openFiles(files);
+    }
+
     private static double getScaleFactor() {
         double xrdbScale = getScaleFactorFromXrdb();
         double gdkScale = getScaleFactorFromGDK();
@@ -36,6 +36,10 @@ public class SourceTreeRefresher {
         if (sourceTree != null) {
             sourceTree.uninstall();
         }
+        if (textAreaTabManager.getActiveTextArea() == null) {
+            treeSP.setViewportView(new JTree((TreeNode) null));
+            return;
+        }
 
         String language = textAreaTabManager.getActiveTextArea().getSyntaxEditingStyle();
 
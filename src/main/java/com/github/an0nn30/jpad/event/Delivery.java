@@ -0,0 +1,18 @@
+package com.github.an0nn30.jpad.event;
+
+/**
+ * How the {@link EventBus} delivers events to a listener.
+ */
+public enum Delivery {
+    /** The listener is called on the publishing thread before {@code publish} returns. */
+    SAME_THREAD,
+    /** The listener is called on the EDT, through {@link javax.swing.SwingUtilities#invokeLater}. */
+    EDT,
+    /** The listener is called on the event bus's background thread, one event at a time in publishing order. */
+    BACKGROUND,
+    /**
+     * The listener is called on the EDT at most once per frame with the latest event from each source; a burst of
+     * events, such as the updates while typing, becomes a single call.
+     */
+    COALESCED
+}
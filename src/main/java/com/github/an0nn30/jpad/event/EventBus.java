@@ -1,59 +1,443 @@
 package com.github.an0nn30.jpad.event;
 
-import java.util.HashMap;
+import com.github.an0nn30.jpad.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.swing.*;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 /**
  * A simple static event bus for decoupled communication between components.
  * <p>
- * Listeners can subscribe to a specific event type, and publishers can publish events
- * with associated data and source. Note that type safety is partially lost in the internal
- * storage due to the need to support different event types.
+ * Listeners subscribe to an event through its typed {@link EventKey}, and publishers publish the event with data
+ * of the key's type and a source. Each event type has an immutable array of subscribers, indexed by the type's
+ * ordinal, that is replaced on every subscribe or unsubscribe; publishing reads the current array and hands the
+ * event to each subscriber without locking, so the bus can be used from any thread.
+ * </p>
+ * <p>
+ * Each subscription has a {@link Delivery}: listeners are called on the publishing thread unless they asked to be
+ * called on the EDT, on the bus's background thread, or coalesced into one call per frame on the EDT.
+ * </p>
+ * <p>
+ * Subscribing returns a {@link Subscription} that ends it. Listeners that belong to a window are
+ * {@link Subscription#bindTo bound} to it, or subscribed {@link #subscribeWeakly weakly} to their owner, so that
+ * closed windows and their documents do not stay reachable from the bus.
+ * </p>
+ * <p>
+ * The bus counts the events published of each type and times every listener call into a
+ * {@link LatencyHistogram}, so that a listener that stalls the UI shows up in its {@link #getListenerStats()
+ * statistics}, which are also available over JMX once {@link #registerMBean()} has been called.
  * </p>
  */
 public class EventBus {
 
-    // Map storing event type keys to lists of listeners.
-    // The wildcard is used because listeners for different event types are stored in the same map.
-    private static final Map<String, List<Consumer<?>>> listeners = new HashMap<>();
+    private static final Subscriber<?>[] NO_SUBSCRIBERS = new Subscriber<?>[0];
+    // How long a coalescing subscriber collects events before it is called, in milliseconds; about one frame.
+    private static final int FRAME_MILLIS = 16;
+
+    // The subscribers of each event type, indexed by the type's ordinal. Arrays are never modified once stored.
+    private static final AtomicReferenceArray<Subscriber<?>[]> subscribers = new AtomicReferenceArray<>(
+            filledWithEmpty(EventType.values().length));
+
+    /** The name under which the bus's {@link EventBusMXBean} is registered. */
+    public static final String MBEAN_NAME = "com.github.an0nn30.jpad:type=EventBus";
+
+    // How often each event type was published, indexed by the type's ordinal.
+    private static final LongAdder[] publishCounts = new LongAdder[EventType.values().length];
+
+    static {
+        Arrays.setAll(publishCounts, i -> new LongAdder());
+    }
+
+    private static final ExecutorService BACKGROUND_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "retroedit-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A listener with its delivery mode and statistics.
+     */
+    private static final class Subscriber<T> {
+        private final Consumer<EventRecord<T>> listener;
+        private final Delivery delivery;
+        // Where the listener was subscribed, to tell listeners apart in the statistics.
+        private final String label;
+        private volatile LatencyHistogram histogram = new LatencyHistogram();
+        // The owner of a weak subscription, or null if the listener is held strongly.
+        private final WeakReference<?> owner;
+        // For coalesced delivery: the latest event from each source since the last call, and the frame timer.
+        private final Map<Object, EventRecord<T>> pending;
+        private final Timer frameTimer;
+        private volatile boolean cancelled;
+
+        private Subscriber(Consumer<EventRecord<T>> listener, Delivery delivery, WeakReference<?> owner) {
+            this.listener = listener;
+            this.delivery = delivery;
+            this.owner = owner;
+            this.label = subscriberLocation();
+            if (delivery == Delivery.COALESCED) {
+                pending = new LinkedHashMap<>();
+                frameTimer = new Timer(FRAME_MILLIS, e -> flush());
+                frameTimer.setRepeats(false);
+            } else {
+                pending = null;
+                frameTimer = null;
+            }
+        }
+
+        private void deliver(EventRecord<T> eventRecord) {
+            switch (delivery) {
+                case SAME_THREAD -> timed(eventRecord);
+                case EDT -> SwingUtilities.invokeLater(() -> call(eventRecord));
+                case BACKGROUND -> BACKGROUND_EXECUTOR.execute(() -> call(eventRecord));
+                case COALESCED -> {
+                    boolean first;
+                    synchronized (pending) {
+                        first = pending.isEmpty();
+                        pending.put(eventRecord.source(), eventRecord);
+                    }
+                    if (first) {
+                        frameTimer.start();
+                    }
+                }
+            }
+        }
+
+        private void flush() {
+            List<EventRecord<T>> eventRecords;
+            synchronized (pending) {
+                eventRecords = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+            for (EventRecord<T> eventRecord : eventRecords) {
+                call(eventRecord);
+            }
+        }
+
+        private void timed(EventRecord<T> eventRecord) {
+            long start = System.nanoTime();
+            try {
+                listener.accept(eventRecord);
+            } finally {
+                histogram.record(System.nanoTime() - start);
+            }
+        }
+
+        private boolean isOwnerCollected() {
+            return owner != null && owner.get() == null;
+        }
+
+        private void cancel() {
+            cancelled = true;
+            if (frameTimer != null) {
+                frameTimer.stop();
+                synchronized (pending) {
+                    pending.clear();
+                }
+            }
+        }
+
+        /**
+         * Calls the listener for an event delivered asynchronously, where there is no publisher to report a failure to.
+         */
+        private void call(EventRecord<T> eventRecord) {
+            if (cancelled) {
+                return;
+            }
+            try {
+                timed(eventRecord);
+            } catch (RuntimeException e) {
+                Logger.getInstance().error(EventBus.class, "Listener for " + eventRecord.type() + " failed: " + e);
+            }
+        }
+    }
+
+    /**
+     * Returns the class, method and line that subscribed, skipping the bus's own frames.
+     */
+    private static String subscriberLocation() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> !frame.getClassName().startsWith(EventBus.class.getName()))
+                .findFirst()
+                .map(frame -> {
+                    String className = frame.getClassName();
+                    return className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName()
+                            + ":" + frame.getLineNumber();
+                })
+                .orElse("unknown"));
+    }
+
+    private static Subscriber<?>[][] filledWithEmpty(int length) {
+        Subscriber<?>[][] arrays = new Subscriber<?>[length][];
+        Arrays.fill(arrays, NO_SUBSCRIBERS);
+        return arrays;
+    }
+
+    /**
+     * Subscribes a listener to the specified event, to be called on the publishing thread.
+     *
+     * @param key      the event.
+     * @param listener a Consumer that will be notified with an {@link EventRecord} when the event is published.
+     * @param <T>      the type of data associated with the event.
+     * @return the subscription, which ends it.
+     */
+    public static <T> Subscription subscribe(EventKey<T> key, Consumer<EventRecord<T>> listener) {
+        return subscribe(key, Delivery.SAME_THREAD, listener);
+    }
+
+    /**
+     * Subscribes a listener to the specified event.
+     *
+     * @param key      the event.
+     * @param delivery where and how the listener is called.
+     * @param listener a Consumer that will be notified with an {@link EventRecord} when the event is published.
+     * @param <T>      the type of data associated with the event.
+     * @return the subscription, which ends it.
+     */
+    public static <T> Subscription subscribe(EventKey<T> key, Delivery delivery, Consumer<EventRecord<T>> listener) {
+        return add(key, new Subscriber<>(listener, delivery, null));
+    }
+
+    /**
+     * Subscribes a listener that lasts only as long as its owner: the bus holds the owner weakly and passes it to
+     * the listener with each event, and the subscription ends once the owner has been garbage collected. The
+     * listener must reach the owner only through its first argument; a lambda that captures the owner keeps it alive.
+     *
+     * @param key      the event.
+     * @param owner    the object the listener belongs to, such as a component.
+     * @param delivery where and how the listener is called.
+     * @param listener called with the owner and an {@link EventRecord} when the event is published.
+     * @param <T>      the type of data associated with the event.
+     * @param <O>      the type of the owner.
+     * @return the subscription, which ends it.
+     */
+    public static <T, O> Subscription subscribeWeakly(EventKey<T> key, O owner, Delivery delivery,
+                                                      BiConsumer<? super O, EventRecord<T>> listener) {
+        WeakReference<O> ownerReference = new WeakReference<>(owner);
+        return add(key, new Subscriber<>(eventRecord -> {
+            O current = ownerReference.get();
+            if (current != null) {
+                listener.accept(current, eventRecord);
+            }
+        }, delivery, ownerReference));
+    }
+
+    private static <T> Subscription add(EventKey<T> key, Subscriber<T> subscriber) {
+        int index = key.type().ordinal();
+        synchronized (subscribers) {
+            Subscriber<?>[] current = subscribers.get(index);
+            List<Subscriber<?>> updated = new ArrayList<>(current.length + 1);
+            for (Subscriber<?> existing : current) {
+                // Weak subscribers whose owner is gone are dropped here, even if their event is never published.
+                if (existing.isOwnerCollected()) {
+                    existing.cancel();
+                } else {
+                    updated.add(existing);
+                }
+            }
+            updated.add(subscriber);
+            subscribers.set(index, updated.toArray(NO_SUBSCRIBERS));
+        }
+        return new Subscription(() -> remove(index, subscriber));
+    }
+
+    /**
+     * Unsubscribes a listener from the specified event. Coalesced events it has not been called for yet are dropped.
+     *
+     * @param key      the event.
+     * @param listener the listener previously passed to {@link #subscribe(EventKey, Consumer)}.
+     * @param <T>      the type of data associated with the event.
+     * @see Subscription#unsubscribe()
+     */
+    public static <T> void unsubscribe(EventKey<T> key, Consumer<EventRecord<T>> listener) {
+        int index = key.type().ordinal();
+        synchronized (subscribers) {
+            for (Subscriber<?> subscriber : subscribers.get(index)) {
+                if (subscriber.listener.equals(listener)) {
+                    remove(index, subscriber);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void remove(int index, Subscriber<?> subscriber) {
+        synchronized (subscribers) {
+            Subscriber<?>[] current = subscribers.get(index);
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == subscriber) {
+                    Subscriber<?>[] updated = new Subscriber<?>[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    subscribers.set(index, updated.length == 0 ? NO_SUBSCRIBERS : updated);
+                    break;
+                }
+            }
+        }
+        subscriber.cancel();
+    }
+
+    /**
+     * Returns the number of listeners subscribed to an event, including weak listeners whose owner is gone but
+     * that have not been dropped yet.
+     *
+     * @param key the event.
+     * @return the number of subscribers.
+     */
+    public static int getSubscriberCount(EventKey<?> key) {
+        return subscribers.get(key.type().ordinal()).length;
+    }
+
+    /**
+     * Describes the live subscribers of each event type, for finding listeners that outlive their owners.
+     *
+     * @return one line per event type with subscribers, giving their number by delivery mode.
+     */
+    public static String describeSubscribers() {
+        StringBuilder report = new StringBuilder();
+        for (EventType type : EventType.values()) {
+            Subscriber<?>[] eventSubscribers = subscribers.get(type.ordinal());
+            if (eventSubscribers.length == 0) {
+                continue;
+            }
+            Map<Delivery, Integer> byDelivery = new EnumMap<>(Delivery.class);
+            int weak = 0;
+            int collected = 0;
+            for (Subscriber<?> subscriber : eventSubscribers) {
+                byDelivery.merge(subscriber.delivery, 1, Integer::sum);
+                if (subscriber.owner != null) {
+                    weak++;
+                    if (subscriber.isOwnerCollected()) {
+                        collected++;
+                    }
+                }
+            }
+            report.append(type).append(": ").append(eventSubscribers.length).append(' ').append(byDelivery);
+            if (weak > 0) {
+                report.append(", ").append(weak).append(" weak (").append(collected).append(" collected)");
+            }
+            report.append('\n');
+        }
+        return report.toString();
+    }
+
+    /**
+     * Publishes an event to all of its subscribers.
+     *
+     * @param key    the event.
+     * @param data   the data associated with the event.
+     * @param source the source object from where the event originates.
+     * @param <T>    the type of the event data.
+     */
+    public static <T> void publish(EventKey<T> key, T data, Object source) {
+        publishCounts[key.type().ordinal()].increment();
+        Subscriber<?>[] eventSubscribers = subscribers.get(key.type().ordinal());
+        if (eventSubscribers.length == 0) {
+            return;
+        }
+        EventRecord<T> eventRecord = new EventRecord<>(key.type(), data, source);
+        for (Subscriber<?> subscriber : eventSubscribers) {
+            // Only subscribers of this key's data type are stored under its event type.
+            @SuppressWarnings("unchecked")
+            Subscriber<T> typedSubscriber = (Subscriber<T>) subscriber;
+            if (typedSubscriber.isOwnerCollected()) {
+                remove(key.type().ordinal(), typedSubscriber);
+            } else {
+                typedSubscriber.deliver(eventRecord);
+            }
+        }
+    }
 
     /**
-     * Subscribes a listener to the specified event type.
+     * Returns how many times each event type has been published.
      *
-     * @param eventType the name of the event type.
-     * @param listener  a Consumer that will be notified with an {@link EventRecord} when the event is published.
-     * @param <T>       the type of data associated with the event.
+     * @return the publish counts, in event type order.
      */
-    public static <T> void subscribe(String eventType, Consumer<EventRecord<T>> listener) {
-        // Compute the list for the event type if it does not exist, then add the listener.
-        listeners.computeIfAbsent(eventType, k -> new CopyOnWriteArrayList<>())
-                .add(listener);
+    public static Map<EventType, Long> getPublishCounts() {
+        Map<EventType, Long> counts = new EnumMap<>(EventType.class);
+        for (EventType type : EventType.values()) {
+            counts.put(type, publishCounts[type.ordinal()].sum());
+        }
+        return counts;
     }
 
     /**
-     * Publishes an event to all subscribers of the specified event type.
+     * Returns the call counts and execution times of the subscribed listeners.
      *
-     * @param eventType the name of the event type.
-     * @param data      the data associated with the event.
-     * @param source    the source object from where the event originates.
-     * @param <T>       the type of the event data.
+     * @return the statistics, the listener with the most time spent in total first.
      */
-    public static <T> void publish(String eventType, T data, Object source) {
-        // Create an event record with the given details.
-        EventRecord<T> eventRecord = new EventRecord<>(eventType, data, source);
-        List<Consumer<?>> eventListeners = listeners.get(eventType);
+    public static List<ListenerStats> getListenerStats() {
+        List<ListenerStats> stats = new ArrayList<>();
+        for (EventType type : EventType.values()) {
+            for (Subscriber<?> subscriber : subscribers.get(type.ordinal())) {
+                stats.add(new ListenerStats(type, subscriber.label, subscriber.delivery, subscriber.histogram));
+            }
+        }
+        stats.sort(Comparator.comparingDouble(ListenerStats::getTotalMillis).reversed());
+        return stats;
+    }
 
-        // If there are listeners for the event type, notify each one.
-        if (eventListeners != null) {
-            for (Consumer<?> consumer : eventListeners) {
-                // Cast is necessary because type information was lost in the map.
-                @SuppressWarnings("unchecked")
-                Consumer<EventRecord<T>> typedConsumer = (Consumer<EventRecord<T>>) consumer;
-                typedConsumer.accept(eventRecord);
+    /**
+     * Starts counting publishes and timing listeners again from zero.
+     */
+    public static void resetStatistics() {
+        for (LongAdder count : publishCounts) {
+            count.reset();
+        }
+        for (EventType type : EventType.values()) {
+            for (Subscriber<?> subscriber : subscribers.get(type.ordinal())) {
+                subscriber.histogram = new LatencyHistogram();
+            }
+        }
+    }
+
+    /**
+     * Registers the bus's {@link EventBusMXBean} with the platform MBean server, unless it is registered already.
+     */
+    public static void registerMBean() {
+        EventBusMXBean management = new EventBusMXBean() {
+            @Override
+            public Map<String, Long> getPublishCounts() {
+                Map<String, Long> counts = new LinkedHashMap<>();
+                EventBus.getPublishCounts().forEach((type, count) -> counts.put(type.name(), count));
+                return counts;
+            }
+
+            @Override
+            public ListenerStats[] getListenerStats() {
+                return EventBus.getListenerStats().toArray(new ListenerStats[0]);
+            }
+
+            @Override
+            public void resetStatistics() {
+                EventBus.resetStatistics();
+            }
+        };
+        try {
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                        new StandardMBean(management, EventBusMXBean.class, true), name);
             }
+        } catch (JMException e) {
+            Logger.getInstance().error(EventBus.class, "Could not register the event bus MBean: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+package com.github.an0nn30.jpad.event;
+
+import java.util.Map;
+
+/**
+ * The management interface of the {@link EventBus}, registered with the platform MBean server as
+ * {@value EventBus#MBEAN_NAME} so that its statistics can be read with JConsole or VisualVM.
+ */
+public interface EventBusMXBean {
+
+    /**
+     * Returns how many times each event type was published.
+     *
+     * @return the publish count by event type name.
+     */
+    Map<String, Long> getPublishCounts();
+
+    /**
+     * Returns the statistics of the subscribed listeners, the slowest in total first.
+     *
+     * @return the listener statistics.
+     */
+    ListenerStats[] getListenerStats();
+
+    /**
+     * Starts counting and timing again from zero.
+     */
+    void resetStatistics();
+}
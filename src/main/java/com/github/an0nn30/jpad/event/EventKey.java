@@ -0,0 +1,47 @@
+package com.github.an0nn30.jpad.event;
+
+/**
+ * A typed key for one {@link EventType}, which ties the event to the type of its data so that publishers and
+ * listeners need no casts.
+ *
+ * @param <T> the type of data published with the event.
+ */
+public final class EventKey<T> {
+
+    /** The title of the selected tab changed, or another tab was selected; the data is the tab title. */
+    public static final EventKey<String> TAB_UPDATED = new EventKey<>(EventType.TAB_UPDATED);
+    /** The syntax style of the active editor changed; the data is the syntax style. */
+    public static final EventKey<String> SYNTAX_HIGHLIGHT_CHANGED = new EventKey<>(EventType.SYNTAX_HIGHLIGHT_CHANGED);
+    /** The interface theme changed; the data is the theme name. */
+    public static final EventKey<String> THEME_CHANGED = new EventKey<>(EventType.THEME_CHANGED);
+    /** The editor theme changed; the data is the theme name. */
+    public static final EventKey<String> EDITOR_THEME_CHANGED = new EventKey<>(EventType.EDITOR_THEME_CHANGED);
+    /** The editor font size changed; the data is the new size. */
+    public static final EventKey<Integer> FONT_SIZE_CHANGED = new EventKey<>(EventType.FONT_SIZE_CHANGED);
+    /** The editor font family changed; the data is the family name. */
+    public static final EventKey<String> FONT_FAMILY_CHANGED = new EventKey<>(EventType.FONT_FAMILY_CHANGED);
+    /** A launch configuration started; the data is its name. */
+    public static final EventKey<String> PROCESS_RUNNING = new EventKey<>(EventType.PROCESS_RUNNING);
+    /** A launch configuration stopped; the data is its name. */
+    public static final EventKey<String> PROCESS_STOPPED = new EventKey<>(EventType.PROCESS_STOPPED);
+
+    private final EventType type;
+
+    private EventKey(EventType type) {
+        this.type = type;
+    }
+
+    /**
+     * Returns the event type this key stands for.
+     *
+     * @return the event type.
+     */
+    public EventType type() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return type.name();
+    }
+}
@@ -1,4 +1,4 @@
 package com.github.an0nn30.jpad.event;
 
-public record EventRecord<T>(String type, T data, Object source) {
-}
\ No newline at end of file
+public record EventRecord<T>(EventType type, T data, Object source) {
+}
@@ -1,6 +1,10 @@
 package com.github.an0nn30.jpad.event;
 
 
+/**
+ * The kinds of events published on the {@link EventBus}. Each kind has a typed {@link EventKey} that carries the
+ * type of its data.
+ */
 public enum EventType {
     TAB_UPDATED,
     SYNTAX_HIGHLIGHT_CHANGED,
@@ -10,4 +14,4 @@ public enum EventType {
     FONT_FAMILY_CHANGED,
     PROCESS_RUNNING,
     PROCESS_STOPPED,
-}
\ No newline at end of file
+}
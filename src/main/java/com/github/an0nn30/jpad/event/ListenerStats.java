@@ -0,0 +1,68 @@
+package com.github.an0nn30.jpad.event;
+
+/**
+ * A snapshot of how often an {@link EventBus} listener was called and how long it took.
+ */
+public final class ListenerStats {
+
+    private final EventType eventType;
+    private final String listener;
+    private final Delivery delivery;
+    private final long calls;
+    private final long totalNanos;
+    private final long medianNanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+
+    ListenerStats(EventType eventType, String listener, Delivery delivery, LatencyHistogram histogram) {
+        this.eventType = eventType;
+        this.listener = listener;
+        this.delivery = delivery;
+        this.calls = histogram.getCount();
+        this.totalNanos = histogram.getTotalNanos();
+        this.medianNanos = histogram.getPercentileNanos(0.5);
+        this.p99Nanos = histogram.getPercentileNanos(0.99);
+        this.maxNanos = histogram.getMaxNanos();
+    }
+
+    public EventType getEventType() {
+        return eventType;
+    }
+
+    /**
+     * Returns where the listener was subscribed, e.g. "EditorFrame.registerEventSubscriptions:316".
+     *
+     * @return the place of the subscription.
+     */
+    public String getListener() {
+        return listener;
+    }
+
+    public Delivery getDelivery() {
+        return delivery;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public double getTotalMillis() {
+        return totalNanos / 1e6;
+    }
+
+    public double getMeanMicros() {
+        return calls == 0 ? 0 : totalNanos / 1e3 / calls;
+    }
+
+    public double getMedianMicros() {
+        return medianNanos / 1e3;
+    }
+
+    public double getP99Micros() {
+        return p99Nanos / 1e3;
+    }
+
+    public double getMaxMicros() {
+        return maxNanos / 1e3;
+    }
+}
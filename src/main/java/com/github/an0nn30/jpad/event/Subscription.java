@@ -0,0 +1,60 @@
+package com.github.an0nn30.jpad.event;
+
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A listener's subscription to an event on the {@link EventBus}, which can be ended from any thread.
+ * <p>
+ * The bus holds its listeners strongly, together with everything they capture, so a listener of a window or
+ * component must be unsubscribed when its owner goes away: explicitly, by {@link #bindTo binding} the subscription
+ * to the owner's window, or by subscribing {@link EventBus#subscribeWeakly weakly}.
+ * </p>
+ */
+public final class Subscription {
+
+    private final Runnable remover;
+    private final AtomicBoolean active = new AtomicBoolean(true);
+
+    Subscription(Runnable remover) {
+        this.remover = remover;
+    }
+
+    /**
+     * Removes the listener from the bus. Events it has not been called for yet are dropped. Calling this again has
+     * no effect.
+     */
+    public void unsubscribe() {
+        if (active.compareAndSet(true, false)) {
+            remover.run();
+        }
+    }
+
+    /**
+     * Returns whether the listener is still subscribed.
+     *
+     * @return true until {@link #unsubscribe()} is called.
+     */
+    public boolean isActive() {
+        return active.get();
+    }
+
+    /**
+     * Ends the subscription when a window is disposed.
+     *
+     * @param window the window that owns the listener.
+     * @return this subscription.
+     */
+    public Subscription bindTo(Window window) {
+        window.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                window.removeWindowListener(this);
+                unsubscribe();
+            }
+        });
+        return this;
+    }
+}
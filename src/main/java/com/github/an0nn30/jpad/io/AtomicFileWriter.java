@@ -0,0 +1,109 @@
+package com.github.an0nn30.jpad.io;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes text to a file so that the file always holds either its old or its new contents, never a mix.
+ * <p>
+ * The text is written to a temporary file in the target's directory, forced to disk, and then moved
+ * over the target. The move is atomic where the file system supports it. If anything fails before the
+ * move, the target is left untouched and the temporary file is deleted. The {@link FileChangeWatcher} does
+ * not check the target while it is written, so the write is not reported as a change by another program.
+ * </p>
+ */
+public class AtomicFileWriter {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private AtomicFileWriter() {
+    }
+
+    /**
+     * Writes the text to the target file.
+     *
+     * @param target        the file to write; a symbolic link is followed so the link itself is kept.
+     * @param text          the text to write, with lines separated by '\n'.
+     * @param encoding      the charset and byte order mark to write the text with.
+     * @param lineSeparator the separator each '\n' is written as.
+     * @throws IOException if the file cannot be written; the target is unchanged in that case.
+     */
+    public static void write(Path target, CharSequence text, FileEncoding encoding, String lineSeparator)
+            throws IOException {
+        FileChangeWatcher.beginWrite(target);
+        try {
+            writeAtomically(target, text, encoding, lineSeparator);
+        } finally {
+            FileChangeWatcher.endWrite(target);
+        }
+    }
+
+    private static void writeAtomically(Path target, CharSequence text, FileEncoding encoding, String lineSeparator)
+            throws IOException {
+        if (Files.exists(target)) {
+            target = target.toRealPath();
+        }
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, "." + target.getFileName(), ".tmp");
+        try {
+            copyPermissions(target, temp);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                OutputStream out = Channels.newOutputStream(channel);
+                out.write(encoding.bomBytes());
+                Writer writer = new BufferedWriter(Channels.newWriter(channel, encoding.charset()), 64 * 1024);
+                writeLines(writer, text, lineSeparator);
+                writer.flush();
+                channel.force(true);
+            }
+            move(temp, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private static void writeLines(Writer writer, CharSequence text, String lineSeparator) throws IOException {
+        int start = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) == '\n') {
+                writer.append(text, start, i);
+                writer.write(lineSeparator);
+                start = i + 1;
+            }
+        }
+        writer.append(text, start, length);
+    }
+
+    /**
+     * Gives the temporary file the target's permissions, since temporary files are created owner-only.
+     */
+    private static void copyPermissions(Path target, Path temp) throws IOException {
+        if (!Files.exists(target)) {
+            return;
+        }
+        try {
+            Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system; the default permissions apply.
+        }
+    }
+
+    private static void move(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.github.an0nn30.jpad.io;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracks whether a document differs from the text last saved to (or loaded from) its file.
+ * <p>
+ * A save records the document's position in its {@link UndoHistory}. Each edit only increments a modification
+ * counter and, on the first edit after a save, flips the document to dirty and notifies the listeners; whenever
+ * the history moves, the document is clean exactly if the history is back at the saved position, so undoing
+ * back to the saved text is noticed without ever reading the text. All methods must be called on the EDT.
+ * </p>
+ */
+public class DirtyTracker {
+
+    /**
+     * The document property under which a document's tracker is stored.
+     */
+    public static final String PROPERTY = "dirtyTracker";
+
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final Listener listener = new Listener();
+    private final Runnable historyListener = this::historyChanged;
+    private Document document;
+    private UndoHistory history;
+    private long modificationCount;
+    // The history position of the saved text; an object the history never reaches if that text is unknown.
+    private Object savedPosition;
+    private boolean dirty;
+
+    /**
+     * The state of a document when a save's text was captured, to be passed to {@link #markSaved(SavePoint)}
+     * once the text is written.
+     *
+     * @param modificationCount the value of {@link #getModificationCount()} when the text was captured.
+     * @param position          the document's position in its undo history.
+     */
+    public record SavePoint(long modificationCount, Object position) {
+    }
+
+    private DirtyTracker(Document document) {
+        install(document);
+        savedPosition = history.mark();
+    }
+
+    /**
+     * Returns the tracker of the given document, creating one that takes the current text as saved
+     * if it has none.
+     *
+     * @param document the document.
+     * @return the document's tracker.
+     */
+    public static DirtyTracker attach(Document document) {
+        DirtyTracker tracker = of(document);
+        return tracker != null ? tracker : new DirtyTracker(document);
+    }
+
+    /**
+     * Returns the tracker attached to the given document.
+     *
+     * @param document the document.
+     * @return the document's tracker, or null if it has none.
+     */
+    public static DirtyTracker of(Document document) {
+        Object tracker = document.getProperty(PROPERTY);
+        return tracker instanceof DirtyTracker dirtyTracker ? dirtyTracker : null;
+    }
+
+    /**
+     * Returns whether the given document has unsaved changes.
+     *
+     * @param document the document.
+     * @return true if the document has a tracker that reports it as dirty.
+     */
+    public static boolean isDirty(Document document) {
+        DirtyTracker tracker = of(document);
+        return tracker != null && tracker.isDirty();
+    }
+
+    /**
+     * Moves this tracker, with its saved state, to a new document that holds the same text,
+     * e.g. when a hibernated tab is restored.
+     *
+     * @param newDocument the replacement document.
+     */
+    public void reattach(Document newDocument) {
+        document.removeDocumentListener(listener);
+        history.removeChangeListener(historyListener);
+        install(newDocument);
+        // The new document starts with an empty history.
+        savedPosition = dirty ? new Object() : history.mark();
+    }
+
+    private void install(Document newDocument) {
+        document = newDocument;
+        history = UndoHistory.attach(newDocument);
+        document.addDocumentListener(listener);
+        history.addChangeListener(historyListener);
+        document.putProperty(PROPERTY, this);
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Returns the number of edits made so far.
+     *
+     * @return the modification count.
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Captures the document's current state. Call this when a save's text is captured and pass the result to
+     * {@link #markSaved(SavePoint)} once the text is written.
+     *
+     * @return the save point.
+     */
+    public SavePoint savePoint() {
+        return new SavePoint(modificationCount, history.mark());
+    }
+
+    /**
+     * Records that the document's text, as it was at the given save point, was written to its file. If the
+     * document was edited since, it stays dirty until those edits are undone.
+     *
+     * @param savePoint the save point captured with the saved text.
+     */
+    public void markSaved(SavePoint savePoint) {
+        savedPosition = savePoint.position();
+        setDirty(history.position() != savedPosition);
+    }
+
+    /**
+     * Marks the document as dirty until it is next saved, e.g. for a buffer recovered from a journal,
+     * whose text was never saved.
+     */
+    public void markUnsaved() {
+        savedPosition = new Object();
+        setDirty(true);
+    }
+
+    /**
+     * Adds a listener that is called whenever the document becomes dirty or clean.
+     *
+     * @param changeListener the listener.
+     */
+    public void addChangeListener(Runnable changeListener) {
+        listeners.add(changeListener);
+    }
+
+    public void removeChangeListener(Runnable changeListener) {
+        listeners.remove(changeListener);
+    }
+
+    private void setDirty(boolean dirty) {
+        if (this.dirty != dirty) {
+            this.dirty = dirty;
+            listeners.forEach(Runnable::run);
+        }
+    }
+
+    private void historyChanged() {
+        setDirty(history.position() != savedPosition);
+    }
+
+    private class Listener implements DocumentListener {
+        @Override
+        public void insertUpdate(DocumentEvent e) {
+            changed();
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            changed();
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+            // Attribute changes are not part of the text.
+        }
+
+        private void changed() {
+            // An undo or redo is settled by historyChanged() once it has completed.
+            modificationCount++;
+            setDirty(true);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.github.an0nn30.jpad.io;
+
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
+import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultEditorKit;
+import javax.swing.text.Document;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.function.LongConsumer;
+
+/**
+ * Streams bytes from a channel into a new, detached {@link RSyntaxDocument}.
+ * <p>
+ * Bytes are decoded chunk by chunk with a {@link CharsetDecoder}, line separators are normalized to '\n'
+ * (as {@link DefaultEditorKit#read} does) and each chunk is appended to the document. Because the document
+ * is not yet attached to a text component, loading can safely run off the EDT; the caller installs the
+ * finished document in one step.
+ * </p>
+ * <p>
+ * Input that is not valid in the charset is replaced with U+FFFD and flagged with {@link #REPLACED_PROPERTY},
+ * because saving such a document would write the replacement characters in place of the original bytes.
+ * </p>
+ */
+public class DocumentLoader {
+
+    /**
+     * The document property set to {@link Boolean#TRUE} when malformed or unmappable input was replaced while
+     * loading.
+     */
+    public static final String REPLACED_PROPERTY = "replacedInput";
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private DocumentLoader() {
+    }
+
+    /**
+     * Detects the encoding of a file with {@link EncodingDetector}, skips its byte order mark and loads the
+     * rest of it as a document. The detected {@link FileEncoding} is stored on the document so that saving
+     * writes the file back in the same encoding.
+     * <p>
+     * The detector only samples the start of the file, so a file guessed to be UTF-8 may still turn out to be
+     * invalid further on. Such a file is read again as ISO-8859-1, which maps every byte to a character and so
+     * saves it back unchanged.
+     * </p>
+     *
+     * @param channel  an open channel on the file, positioned at its start.
+     * @param progress receives the total number of bytes read after each chunk (may be null).
+     * @return the loaded document.
+     * @throws IOException if reading fails or the load was interrupted.
+     */
+    public static RSyntaxDocument load(FileChannel channel, LongConsumer progress) throws IOException {
+        FileEncoding encoding = EncodingDetector.detect(channel);
+        channel.position(encoding.bomBytes().length);
+        RSyntaxDocument document = load(channel, encoding.charset(), progress);
+        if (hasReplacedInput(document) && encoding.equals(FileEncoding.DEFAULT)) {
+            encoding = new FileEncoding(StandardCharsets.ISO_8859_1, false);
+            channel.position(0);
+            document = load(channel, encoding.charset(), progress);
+        }
+        document.putProperty(FileEncoding.PROPERTY, encoding);
+        return document;
+    }
+
+    /**
+     * Reads the channel to the end and returns its contents as a document.
+     * The first line separator found in the input is stored in the document's
+     * {@link DefaultEditorKit#EndOfLineStringProperty} so that it is used again when the document is written.
+     * Loading stops with an {@link InterruptedIOException} if the calling thread is interrupted.
+     *
+     * @param channel  the channel to read from.
+     * @param charset  the charset to decode with; malformed input is replaced and flagged with
+     *                 {@link #REPLACED_PROPERTY} rather than rejected.
+     * @param progress receives the total number of bytes read after each chunk (may be null).
+     * @return the loaded document.
+     * @throws IOException if reading fails or the load was interrupted.
+     */
+    public static RSyntaxDocument load(ReadableByteChannel channel, Charset charset, LongConsumer progress)
+            throws IOException {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        RSyntaxDocument document = new RSyntaxDocument(SyntaxConstants.SYNTAX_STYLE_NONE);
+        ByteBuffer in = ByteBuffer.allocate(CHUNK_SIZE);
+        CharBuffer out = CharBuffer.allocate(CHUNK_SIZE);
+        LineNormalizer normalizer = new LineNormalizer();
+        long bytesRead = 0;
+        boolean eof = false;
+        boolean replaced = false;
+
+        while (!eof) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Loading cancelled");
+            }
+            int read = channel.read(in);
+            eof = read < 0;
+            if (read > 0) {
+                bytesRead += read;
+            }
+            in.flip();
+            CoderResult result;
+            do {
+                result = decoder.decode(in, out, eof);
+                if (result.isError()) {
+                    // Replace the bad input ourselves, as CodingErrorAction.REPLACE would, but remember it.
+                    in.position(in.position() + result.length());
+                    if (!out.hasRemaining()) {
+                        append(document, normalizer, out);
+                    }
+                    out.put(decoder.replacement());
+                    replaced = true;
+                }
+                append(document, normalizer, out);
+            } while (result.isOverflow() || result.isError());
+            in.compact();
+            if (progress != null) {
+                progress.accept(bytesRead);
+            }
+        }
+        while (decoder.flush(out).isOverflow()) {
+            append(document, normalizer, out);
+        }
+        append(document, normalizer, out);
+        document.putProperty(DefaultEditorKit.EndOfLineStringProperty, normalizer.getLineSeparator());
+        if (replaced) {
+            document.putProperty(REPLACED_PROPERTY, Boolean.TRUE);
+        }
+        return document;
+    }
+
+    /**
+     * Returns whether input was replaced while loading the given document, so that saving it would not write
+     * back the bytes that were read.
+     *
+     * @param document the document.
+     * @return true if the document holds replacement characters for invalid input.
+     */
+    public static boolean hasReplacedInput(Document document) {
+        return Boolean.TRUE.equals(document.getProperty(REPLACED_PROPERTY));
+    }
+
+    private static void append(RSyntaxDocument document, LineNormalizer normalizer, CharBuffer out)
+            throws IOException {
+        out.flip();
+        String text = normalizer.normalize(out);
+        out.clear();
+        if (text.isEmpty()) {
+            return;
+        }
+        try {
+            document.insertString(document.getLength(), text, null);
+        } catch (BadLocationException e) {
+            throw new IOException("Could not append to document", e);
+        }
+    }
+
+    /**
+     * Converts "\r\n" and lone '\r' to '\n', remembering the first separator seen.
+     * A '\r' at the end of one chunk is matched against a '\n' at the start of the next.
+     */
+    static class LineNormalizer {
+        private boolean pendingCarriageReturn;
+        private String lineSeparator;
+
+        String normalize(CharBuffer chars) {
+            StringBuilder builder = new StringBuilder(chars.remaining());
+            while (chars.hasRemaining()) {
+                char c = chars.get();
+                if (pendingCarriageReturn) {
+                    pendingCarriageReturn = false;
+                    if (c == '\n') {
+                        remember("\r\n");
+                        continue;
+                    }
+                    remember("\r");
+                }
+                if (c == '\r') {
+                    pendingCarriageReturn = true;
+                    builder.append('\n');
+                } else {
+                    if (c == '\n') {
+                        remember("\n");
+                    }
+                    builder.append(c);
+                }
+            }
+            return builder.toString();
+        }
+
+        private void remember(String separator) {
+            if (lineSeparator == null) {
+                lineSeparator = separator;
+            }
+        }
+
+        String getLineSeparator() {
+            if (pendingCarriageReturn) {
+                remember("\r");
+            }
+            return lineSeparator != null ? lineSeparator : System.lineSeparator();
+        }
+    }
+}
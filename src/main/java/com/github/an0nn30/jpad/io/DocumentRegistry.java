@@ -0,0 +1,163 @@
+package com.github.an0nn30.jpad.io;
+
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
+
+import javax.swing.text.Document;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Keeps one document per open file, shared by every tab and window showing that file.
+ * <p>
+ * Views share the text, the token cache and the {@link UndoHistory} of the document, so an edit in one view
+ * appears in all others and can be undone from any of them. Each view holds a reference; the document is
+ * dropped from the registry when the last view releases it. Files are identified by their canonical path, and
+ * registered files are watched for changes by other programs with the {@link FileChangeWatcher}. All methods
+ * must be called on the EDT.
+ * </p>
+ */
+public final class DocumentRegistry {
+
+    private static final Map<String, Entry> entries = new HashMap<>();
+    private static final Map<Document, Entry> documents = new IdentityHashMap<>();
+
+    private static final class Entry {
+        private final RSyntaxDocument document;
+        // Null once the document was saved over a file that another shared document already had.
+        private String key;
+        private int references = 1;
+
+        private Entry(String key, RSyntaxDocument document) {
+            this.key = key;
+            this.document = document;
+        }
+    }
+
+    private DocumentRegistry() {
+    }
+
+    /**
+     * Returns the document already open for a file and adds a reference to it.
+     *
+     * @param file the file.
+     * @return the shared document, or null if no view has the file open.
+     */
+    public static RSyntaxDocument acquire(File file) {
+        Entry entry = entries.get(keyOf(file));
+        if (entry == null) {
+            return null;
+        }
+        entry.references++;
+        return entry.document;
+    }
+
+    /**
+     * Returns the document open for a file without adding a reference.
+     *
+     * @param file the file.
+     * @return the shared document, or null if no view has the file open.
+     */
+    public static RSyntaxDocument get(File file) {
+        Entry entry = entries.get(keyOf(file));
+        return entry != null ? entry.document : null;
+    }
+
+    /**
+     * Registers a newly loaded document as the shared document of a file, with one reference.
+     * Nothing is registered if the file already has a document or the document is registered for another file;
+     * the document then stays private to its view.
+     *
+     * @param file     the file the document was loaded from.
+     * @param document the document.
+     * @return true if the document was registered.
+     */
+    public static boolean register(File file, RSyntaxDocument document) {
+        String key = keyOf(file);
+        if (entries.containsKey(key) || documents.containsKey(document)) {
+            return false;
+        }
+        Entry entry = new Entry(key, document);
+        entries.put(key, entry);
+        documents.put(document, entry);
+        FileChangeWatcher.watch(new File(key));
+        return true;
+    }
+
+    /**
+     * Releases one reference to a document. Documents that are not registered are ignored.
+     *
+     * @param document the document a view no longer shows.
+     * @return the number of views still showing the document; 0 if this was the last one or it is not registered.
+     */
+    public static int release(Document document) {
+        Entry entry = documents.get(document);
+        if (entry == null) {
+            return 0;
+        }
+        if (--entry.references > 0) {
+            return entry.references;
+        }
+        documents.remove(document);
+        unlink(entry);
+        return 0;
+    }
+
+    /**
+     * Returns the number of views showing a document.
+     *
+     * @param document the document.
+     * @return the reference count, or 1 if the document is not registered and so has a single view.
+     */
+    public static int getReferenceCount(Document document) {
+        Entry entry = documents.get(document);
+        return entry != null ? entry.references : 1;
+    }
+
+    /**
+     * Moves a registered document to a new file after it has been saved under another name. Documents that are
+     * not registered, such as untitled ones or those whose views were all closed while the save was running,
+     * are ignored. If the new file already has a different shared document, the renamed document keeps its
+     * views and their references but is neither handed out to views opened later nor watched under that file.
+     *
+     * @param document the saved document.
+     * @param file     the file it was saved to.
+     */
+    public static void rename(RSyntaxDocument document, File file) {
+        Entry entry = documents.get(document);
+        if (entry == null) {
+            return;
+        }
+        String newKey = keyOf(file);
+        if (newKey.equals(entry.key)) {
+            return;
+        }
+        unlink(entry);
+        if (entries.putIfAbsent(newKey, entry) == null) {
+            entry.key = newKey;
+            FileChangeWatcher.watch(file);
+        } else {
+            entry.key = null;
+        }
+    }
+
+    /**
+     * Removes an entry from the file map and stops watching its file.
+     */
+    private static void unlink(Entry entry) {
+        if (entry.key != null) {
+            entries.remove(entry.key, entry);
+            FileChangeWatcher.unwatch(new File(entry.key));
+        }
+    }
+
+    private static String keyOf(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+}
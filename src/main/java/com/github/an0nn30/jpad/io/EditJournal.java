@@ -0,0 +1,511 @@
+package com.github.an0nn30.jpad.io;
+
+import com.github.an0nn30.jpad.logging.Logger;
+import com.github.an0nn30.jpad.settings.Settings;
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
+import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * An append-only log of the edits made to one document, used to recover unsaved changes after a crash.
+ * <p>
+ * A journal file starts with a base record naming the file the edits apply to (or none, for an untitled
+ * buffer), followed by one insert or remove record per document change. Records are queued by a
+ * {@link DocumentListener} on the EDT and written in batches on the {@link IoExecutors#journal() journal thread},
+ * with one fsync per batch, so typing never waits for the disk. When the document is saved the journal is
+ * compacted down to the edits made after the save; when its tab is closed the journal is deleted.
+ * </p>
+ * <p>
+ * Any journal left behind at startup belongs to a buffer that was never saved or closed.
+ * {@link #findRecoverable()} reads those back so the buffers can be rebuilt.
+ * </p>
+ */
+public class EditJournal {
+
+    /**
+     * The document property under which a document's journal is stored.
+     */
+    public static final String PROPERTY = "editJournal";
+
+    /**
+     * How long edits are collected before they are written together.
+     */
+    static final long GROUP_COMMIT_DELAY_MS = 500;
+
+    private static final String EXTENSION = ".journal";
+    private static final int MAGIC = 0x524A4E4C;
+    private static final byte BASE = 0;
+    private static final byte INSERT = 1;
+    private static final byte REMOVE = 2;
+
+    private final Path path;
+    private final Queue<Op> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile File file;
+    private volatile boolean closed;
+    // Only touched on the EDT.
+    private long sequence;
+    // Only touched on the journal thread.
+    private FileChannel channel;
+    private boolean discarded;
+
+    private EditJournal(Path path, File file, long sequence) {
+        this.path = path;
+        this.file = file;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Returns the journal of the given document, creating and attaching a new one if it has none.
+     * No journal file is written until the first edit.
+     *
+     * @param document the document to record.
+     * @param file     the file the document was loaded from, or null for an untitled buffer.
+     * @return the document's journal.
+     */
+    public static EditJournal attach(Document document, File file) {
+        EditJournal journal = of(document);
+        if (journal == null) {
+            journal = new EditJournal(getJournalDirectory().resolve(UUID.randomUUID() + EXTENSION), file, 0);
+            journal.install(document);
+        }
+        return journal;
+    }
+
+    /**
+     * Returns the journal attached to the given document.
+     *
+     * @param document the document.
+     * @return the document's journal, or null if it has none.
+     */
+    public static EditJournal of(Document document) {
+        Object journal = document.getProperty(PROPERTY);
+        return journal instanceof EditJournal editJournal ? editJournal : null;
+    }
+
+    /**
+     * Moves this journal to a new document that holds the same text as the one it was recording,
+     * e.g. when a hibernated tab is restored.
+     *
+     * @param document the replacement document.
+     */
+    public void reattach(Document document) {
+        install(document);
+    }
+
+    private void install(Document document) {
+        document.addDocumentListener(new Recorder());
+        document.putProperty(PROPERTY, this);
+    }
+
+    private static Path getJournalDirectory() {
+        return Settings.getSettingsFilePath("journal");
+    }
+
+    /**
+     * Returns the number of edits recorded so far. Must be called on the EDT.
+     * Pass the value read when a save's text was captured to {@link #checkpoint(File, long)}.
+     *
+     * @return the sequence number of the latest edit.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Compacts the journal after a successful save: the saved file becomes the new base, and only the edits
+     * made after the saved text was captured are kept.
+     *
+     * @param savedFile      the file that was written.
+     * @param savedSequence  the value of {@link #getSequence()} when the saved text was captured.
+     */
+    public void checkpoint(File savedFile, long savedSequence) {
+        file = savedFile;
+        IoExecutors.journal().execute(() -> {
+            if (discarded) {
+                return;
+            }
+            try {
+                writePending();
+                List<Op> remaining = new ArrayList<>();
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
+                    for (Op op : read(path).ops) {
+                        if (op.sequence() > savedSequence) {
+                            remaining.add(op);
+                        }
+                    }
+                }
+                if (remaining.isEmpty()) {
+                    Files.deleteIfExists(path);
+                } else {
+                    rewrite(remaining);
+                }
+            } catch (IOException e) {
+                Logger.getInstance().error(EditJournal.class, "Error compacting journal " + path + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Stops recording and deletes the journal file, e.g. because the tab was closed.
+     */
+    public void discard() {
+        closed = true;
+        IoExecutors.journal().execute(() -> {
+            discarded = true;
+            pending.clear();
+            try {
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
+                }
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                Logger.getInstance().error(EditJournal.class, "Error deleting journal " + path + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private void record(Op op) {
+        pending.add(op);
+        if (flushScheduled.compareAndSet(false, true)) {
+            IoExecutors.journal().schedule(this::flush, GROUP_COMMIT_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        if (discarded) {
+            pending.clear();
+            return;
+        }
+        try {
+            writePending();
+        } catch (IOException e) {
+            Logger.getInstance().error(EditJournal.class, "Error writing journal " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes every queued edit in one batch and forces it to disk.
+     */
+    private void writePending() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (channel == null) {
+            Files.createDirectories(path.getParent());
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            if (channel.size() == 0) {
+                writeHeader(out, file);
+            }
+        }
+        Op op;
+        while ((op = pending.poll()) != null) {
+            writeOp(out, op);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Replaces the journal file with a new base and the given edits, via a temporary file so that a crash
+     * during compaction leaves the old journal intact.
+     */
+    private void rewrite(List<Op> ops) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out, file);
+        for (Op op : ops) {
+            writeOp(out, op);
+        }
+        Path temp = Files.createTempFile(path.getParent(), "journal", ".tmp");
+        try (FileChannel tempChannel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                tempChannel.write(buffer);
+            }
+            tempChannel.force(false);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, File base) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(BASE);
+        writeString(out, base != null ? base.getAbsolutePath() : "");
+        // The base file's size and modification time, to tell at recovery whether it changed since.
+        out.writeLong(base != null && base.isFile() ? base.length() : -1);
+        out.writeLong(base != null && base.isFile() ? base.lastModified() : -1);
+    }
+
+    private static void writeOp(DataOutputStream out, Op op) throws IOException {
+        out.writeByte(op.type());
+        out.writeLong(op.sequence());
+        out.writeInt(op.offset());
+        if (op.type() == INSERT) {
+            writeString(out, op.text());
+        } else {
+            out.writeInt(op.length());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(in.readNBytes(checkedLength(in.readInt())), StandardCharsets.UTF_8);
+    }
+
+    private static int checkedLength(int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Corrupt journal record");
+        }
+        return length;
+    }
+
+    /**
+     * Reads all journals left in the journal directory. Journals without any edits are deleted.
+     * This does blocking I/O and must not be called on the EDT.
+     *
+     * @return the journals that hold unsaved edits.
+     */
+    public static List<Recovery> findRecoverable() {
+        List<Recovery> recoveries = new ArrayList<>();
+        Path directory = getJournalDirectory();
+        if (!Files.isDirectory(directory)) {
+            return recoveries;
+        }
+        try (Stream<Path> journals = Files.list(directory)) {
+            for (Path journal : (Iterable<Path>) journals::iterator) {
+                if (!journal.getFileName().toString().endsWith(EXTENSION)) {
+                    continue;
+                }
+                try {
+                    Recovery recovery = read(journal);
+                    if (recovery.ops.isEmpty()) {
+                        Files.deleteIfExists(journal);
+                    } else {
+                        recoveries.add(recovery);
+                    }
+                } catch (IOException e) {
+                    Logger.getInstance().error(EditJournal.class, "Unreadable journal " + journal + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            Logger.getInstance().error(EditJournal.class, "Error listing journals: " + e.getMessage());
+        }
+        return recoveries;
+    }
+
+    /**
+     * Reads a journal file. A record cut short by a crash ends the journal; everything before it is kept.
+     */
+    private static Recovery read(Path journal) throws IOException {
+        List<Op> ops = new ArrayList<>();
+        try (InputStream stream = Files.newInputStream(journal);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            if (in.readInt() != MAGIC || in.readByte() != BASE) {
+                throw new IOException("Not a journal file");
+            }
+            String basePath = readString(in);
+            long baseSize = in.readLong();
+            long baseModified = in.readLong();
+            File base = basePath.isEmpty() ? null : new File(basePath);
+            try {
+                while (true) {
+                    byte type = in.readByte();
+                    long sequence = in.readLong();
+                    int offset = in.readInt();
+                    if (type == INSERT) {
+                        ops.add(new Op(INSERT, sequence, offset, readString(in), 0));
+                    } else if (type == REMOVE) {
+                        ops.add(new Op(REMOVE, sequence, offset, null, checkedLength(in.readInt())));
+                    } else {
+                        throw new IOException("Unknown journal record " + type);
+                    }
+                }
+            } catch (EOFException e) {
+                // End of the journal, or a partially written last batch.
+            }
+            return new Recovery(journal, base, baseSize, baseModified, ops);
+        }
+    }
+
+    /**
+     * A single recorded edit.
+     */
+    private record Op(byte type, long sequence, int offset, String text, int length) {
+    }
+
+    /**
+     * Records document changes on the EDT and queues them for the journal thread.
+     */
+    private class Recorder implements DocumentListener {
+        @Override
+        public void insertUpdate(DocumentEvent e) {
+            if (closed) {
+                return;
+            }
+            try {
+                String text = e.getDocument().getText(e.getOffset(), e.getLength());
+                record(new Op(INSERT, ++sequence, e.getOffset(), text, 0));
+            } catch (BadLocationException ex) {
+                Logger.getInstance().error(EditJournal.class, "Could not journal insert: " + ex.getMessage());
+            }
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            if (!closed) {
+                record(new Op(REMOVE, ++sequence, e.getOffset(), null, e.getLength()));
+            }
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+            // Attribute changes are not part of the text.
+        }
+    }
+
+    /**
+     * The unsaved edits of a buffer found in a journal at startup.
+     */
+    public static class Recovery {
+        private final Path journal;
+        private final File file;
+        private final long baseSize;
+        private final long baseModified;
+        private final List<Op> ops;
+
+        private Recovery(Path journal, File file, long baseSize, long baseModified, List<Op> ops) {
+            this.journal = journal;
+            this.file = file;
+            this.baseSize = baseSize;
+            this.baseModified = baseModified;
+            this.ops = ops;
+        }
+
+        /**
+         * Returns the file the edits apply to.
+         *
+         * @return the file, or null if the buffer was untitled.
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Returns whether the file on disk changed after the journal was started, in which case the
+         * rebuilt buffer may not match what was being edited.
+         *
+         * @return true if the base file's size or modification time differs from the journal's record.
+         */
+        public boolean isBaseChanged() {
+            if (file == null) {
+                return false;
+            }
+            return file.isFile() ? file.length() != baseSize || file.lastModified() != baseModified : baseSize >= 0;
+        }
+
+        /**
+         * Loads the base file (or an empty document for an untitled buffer) and replays the edits onto it.
+         * The document is detached, so this can run off the EDT.
+         *
+         * @return the rebuilt document.
+         * @throws IOException if the base file cannot be read.
+         */
+        public RSyntaxDocument rebuild() throws IOException {
+            RSyntaxDocument document;
+            if (file != null && file.isFile()) {
+                try (FileChannel fileChannel = FileChannel.open(file.toPath())) {
+                    document = DocumentLoader.load(fileChannel, null);
+                }
+            } else {
+                document = new RSyntaxDocument(SyntaxConstants.SYNTAX_STYLE_NONE);
+            }
+            try {
+                for (Op op : ops) {
+                    // Offsets are clamped in case the base file changed underneath the journal.
+                    int offset = Math.min(Math.max(0, op.offset()), document.getLength());
+                    if (op.type() == INSERT) {
+                        document.insertString(offset, op.text(), null);
+                    } else {
+                        document.remove(offset, Math.min(op.length(), document.getLength() - offset));
+                    }
+                }
+            } catch (BadLocationException e) {
+                throw new IOException("Could not replay journal " + journal, e);
+            }
+            return document;
+        }
+
+        /**
+         * Attaches this journal to the rebuilt document so that further edits are appended to it.
+         *
+         * @param document the document returned by {@link #rebuild()}.
+         * @return the resumed journal.
+         */
+        public EditJournal resume(Document document) {
+            EditJournal resumed = new EditJournal(journal, file, ops.get(ops.size() - 1).sequence());
+            resumed.install(document);
+            return resumed;
+        }
+
+        /**
+         * Deletes the journal without recovering it.
+         */
+        public void discard() {
+            IoExecutors.journal().execute(() -> {
+                try {
+                    Files.deleteIfExists(journal);
+                } catch (IOException e) {
+                    Logger.getInstance().error(EditJournal.class, "Error deleting journal " + journal + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.github.an0nn30.jpad.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Guesses the charset of a file from its first few kilobytes.
+ * <p>
+ * The prefix is read with a positional read into a direct buffer that is allocated once per thread and
+ * inspected in place, so detection costs a single small read and no copying. The channel's position is not
+ * changed. Detection checks, in order:
+ * </p>
+ * <ol>
+ *     <li>a byte order mark (UTF-8, UTF-16 or UTF-32);</li>
+ *     <li>the zero-byte pattern that ASCII text has in BOM-less UTF-16;</li>
+ *     <li>whether the prefix is valid UTF-8.</li>
+ * </ol>
+ * <p>
+ * Anything that is not valid UTF-8 is treated as ISO-8859-1, which maps every byte to a character and so
+ * survives a load/save round trip unchanged.
+ * </p>
+ */
+public class EncodingDetector {
+
+    /**
+     * The number of bytes inspected at the start of the file.
+     */
+    static final int SNIFF_SIZE = 8 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(SNIFF_SIZE));
+
+    private static final Charset UTF_32BE = Charset.forName("UTF-32BE");
+    private static final Charset UTF_32LE = Charset.forName("UTF-32LE");
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private EncodingDetector() {
+    }
+
+    /**
+     * Detects the encoding of the file behind the given channel.
+     *
+     * @param channel an open channel positioned anywhere; its position is left unchanged.
+     * @return the detected encoding.
+     * @throws IOException if the prefix cannot be read.
+     */
+    public static FileEncoding detect(FileChannel channel) throws IOException {
+        ByteBuffer buffer = readPrefix(channel);
+        return detect(buffer, buffer.limit() < channel.size());
+    }
+
+    /**
+     * Returns whether the file behind the given channel holds binary data rather than text: its prefix has
+     * no byte order mark and is not UTF-16, but contains a zero byte, which text in any other supported
+     * encoding never does.
+     *
+     * @param channel an open channel positioned anywhere; its position is left unchanged.
+     * @return true if the file should not be decoded as text.
+     * @throws IOException if the prefix cannot be read.
+     */
+    public static boolean isBinary(FileChannel channel) throws IOException {
+        ByteBuffer buffer = readPrefix(channel);
+        if (detectBom(buffer) != null || detectUtf16(buffer) != null) {
+            return false;
+        }
+        for (int i = 0; i < buffer.limit(); i++) {
+            if (buffer.get(i) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads up to {@link #SNIFF_SIZE} bytes from the start of the file into this thread's buffer.
+     */
+    private static ByteBuffer readPrefix(FileChannel channel) throws IOException {
+        ByteBuffer buffer = BUFFER.get();
+        buffer.clear();
+        long position = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Detects the encoding of the given bytes.
+     *
+     * @param bytes     the prefix of the file, from position 0 to the limit.
+     * @param truncated whether the file continues past the prefix, in which case a multi-byte sequence cut
+     *                  off at the end of the prefix is not counted as malformed.
+     * @return the detected encoding.
+     */
+    static FileEncoding detect(ByteBuffer bytes, boolean truncated) {
+        FileEncoding bom = detectBom(bytes);
+        if (bom != null) {
+            return bom;
+        }
+        Charset utf16 = detectUtf16(bytes);
+        if (utf16 != null) {
+            return new FileEncoding(utf16, false);
+        }
+        if (isValidUtf8(bytes, truncated)) {
+            return FileEncoding.DEFAULT;
+        }
+        return new FileEncoding(StandardCharsets.ISO_8859_1, false);
+    }
+
+    private static FileEncoding detectBom(ByteBuffer bytes) {
+        int length = bytes.limit();
+        int b0 = length > 0 ? bytes.get(0) & 0xFF : -1;
+        int b1 = length > 1 ? bytes.get(1) & 0xFF : -1;
+        int b2 = length > 2 ? bytes.get(2) & 0xFF : -1;
+        int b3 = length > 3 ? bytes.get(3) & 0xFF : -1;
+
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF) {
+            return new FileEncoding(StandardCharsets.UTF_8, true);
+        }
+        // UTF-32 first: its little-endian BOM starts with the UTF-16LE one.
+        if (b0 == 0xFF && b1 == 0xFE && b2 == 0 && b3 == 0) {
+            return new FileEncoding(UTF_32LE, true);
+        }
+        if (b0 == 0 && b1 == 0 && b2 == 0xFE && b3 == 0xFF) {
+            return new FileEncoding(UTF_32BE, true);
+        }
+        if (b0 == 0xFF && b1 == 0xFE) {
+            return new FileEncoding(StandardCharsets.UTF_16LE, true);
+        }
+        if (b0 == 0xFE && b1 == 0xFF) {
+            return new FileEncoding(StandardCharsets.UTF_16BE, true);
+        }
+        return null;
+    }
+
+    /**
+     * Recognizes BOM-less UTF-16 by its zero bytes: mostly-ASCII text has a zero in every other byte,
+     * at even offsets for big-endian and at odd offsets for little-endian.
+     */
+    private static Charset detectUtf16(ByteBuffer bytes) {
+        int pairs = bytes.limit() / 2;
+        if (pairs < 2) {
+            return null;
+        }
+        int evenZeros = 0;
+        int oddZeros = 0;
+        for (int i = 0; i < pairs * 2; i += 2) {
+            if (bytes.get(i) == 0) {
+                evenZeros++;
+            }
+            if (bytes.get(i + 1) == 0) {
+                oddZeros++;
+            }
+        }
+        if (evenZeros * 10 >= pairs * 3 && oddZeros * 20 < pairs) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (oddZeros * 10 >= pairs * 3 && evenZeros * 20 < pairs) {
+            return StandardCharsets.UTF_16LE;
+        }
+        return null;
+    }
+
+    private static boolean isValidUtf8(ByteBuffer bytes, boolean truncated) {
+        int length = bytes.limit();
+        int i = 0;
+        while (i < length) {
+            int b = bytes.get(i) & 0xFF;
+            if (b < 0x80) {
+                i++;
+                continue;
+            }
+            int continuation;
+            int min;
+            if (b >= 0xC2 && b <= 0xDF) {
+                continuation = 1;
+                min = 0x80;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                continuation = 2;
+                min = 0x800;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                continuation = 3;
+                min = 0x10000;
+            } else {
+                return false;
+            }
+            if (i + continuation >= length) {
+                // A sequence cut off by the end of the prefix is only malformed if the file ends there too.
+                return truncated && hasContinuationBytes(bytes, i + 1, length);
+            }
+            int codePoint = b & (0x3F >> continuation);
+            for (int j = 1; j <= continuation; j++) {
+                int next = bytes.get(i + j) & 0xFF;
+                if ((next & 0xC0) != 0x80) {
+                    return false;
+                }
+                codePoint = (codePoint << 6) | (next & 0x3F);
+            }
+            if (codePoint < min || codePoint > 0x10FFFF || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) {
+                return false;
+            }
+            i += continuation + 1;
+        }
+        return true;
+    }
+
+    private static boolean hasContinuationBytes(ByteBuffer bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if ((bytes.get(i) & 0xC0) != 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
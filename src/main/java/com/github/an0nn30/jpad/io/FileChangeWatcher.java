@@ -0,0 +1,151 @@
+package com.github.an0nn30.jpad.io;
+
+import com.github.an0nn30.jpad.logging.Logger;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Notices when open files are changed by other programs, e.g. a git checkout, a formatter or a build.
+ * <p>
+ * Every {@value #POLL_INTERVAL_MS} ms the watch thread reads the size, modification time and file key of
+ * each watched file in one batch and compares them with the last values it saw. Polling a handful of stats
+ * costs next to nothing, works the same on every platform and file system, and also catches files that are
+ * replaced rather than rewritten, which a {@link java.nio.file.WatchService} on the parent directory would
+ * need extra bookkeeping for. The last values seen are updated directly by the threads that watch, unwatch
+ * or acknowledge a file. While {@link AtomicFileWriter} writes a file, the file is not checked at all, and its
+ * new state is taken as unchanged before the check resumes, so the editor's own writes are never reported.
+ * </p>
+ */
+public final class FileChangeWatcher {
+
+    private static final long POLL_INTERVAL_MS = 2000;
+    private static final AtomicBoolean STARTED = new AtomicBoolean();
+    private static final Map<Path, Stamp> stamps = new ConcurrentHashMap<>();
+    // The number of writes in progress per file.
+    private static final Map<Path, Integer> writing = new ConcurrentHashMap<>();
+    private static final List<Consumer<File>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The attributes of a file that change when it is written or replaced.
+     */
+    private record Stamp(long size, long modified, Object fileKey) {
+        private static final Stamp MISSING = new Stamp(-1, -1, null);
+
+        private static Stamp of(Path path) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                return new Stamp(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                        attributes.fileKey());
+            } catch (IOException e) {
+                return MISSING;
+            }
+        }
+    }
+
+    private FileChangeWatcher() {
+    }
+
+    /**
+     * Adds a listener that is called on the EDT with each watched file that was changed on disk.
+     * Files that are deleted are not reported until they reappear.
+     *
+     * @param listener the listener.
+     */
+    public static void addListener(Consumer<File> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Starts watching a file, taking its current state as unchanged.
+     *
+     * @param file the file.
+     */
+    public static void watch(File file) {
+        Path path = pathOf(file);
+        stamps.put(path, Stamp.of(path));
+        if (STARTED.compareAndSet(false, true)) {
+            IoExecutors.watch().scheduleWithFixedDelay(FileChangeWatcher::poll,
+                    POLL_INTERVAL_MS, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops watching a file.
+     *
+     * @param file the file.
+     */
+    public static void unwatch(File file) {
+        stamps.remove(pathOf(file));
+    }
+
+    /**
+     * Takes the current state of a watched file as unchanged, e.g. after a reload read it, so that the change
+     * is not reported again. Files written with {@link AtomicFileWriter} are acknowledged by the writer.
+     *
+     * @param file the file.
+     */
+    public static void acknowledge(File file) {
+        stamps.computeIfPresent(pathOf(file), (path, stamp) -> Stamp.of(path));
+    }
+
+    /**
+     * Stops checking a file for changes while the editor writes it. Must be followed by {@link #endWrite}.
+     *
+     * @param path the file about to be written.
+     */
+    static void beginWrite(Path path) {
+        writing.merge(pathOf(path), 1, Integer::sum);
+    }
+
+    /**
+     * Takes the state of a file that the editor finished writing as unchanged, then checks it again.
+     *
+     * @param path the file that was written, as passed to {@link #beginWrite}.
+     */
+    static void endWrite(Path path) {
+        Path key = pathOf(path);
+        stamps.computeIfPresent(key, (p, stamp) -> Stamp.of(p));
+        writing.computeIfPresent(key, (p, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private static void poll() {
+        try {
+            for (Map.Entry<Path, Stamp> entry : stamps.entrySet()) {
+                Path path = entry.getKey();
+                Stamp seen = entry.getValue();
+                Stamp current = Stamp.of(path);
+                // A file being written, or acknowledged or unwatched since it was read here, is left alone.
+                if (current.equals(seen) || writing.containsKey(path) || !stamps.replace(path, seen, current)) {
+                    continue;
+                }
+                if (!current.equals(Stamp.MISSING)) {
+                    File file = path.toFile();
+                    SwingUtilities.invokeLater(() -> listeners.forEach(listener -> listener.accept(file)));
+                }
+            }
+        } catch (RuntimeException e) {
+            // An exception would cancel the periodic task.
+            Logger.getInstance().error(FileChangeWatcher.class, "Error checking files for changes: " + e.getMessage());
+        }
+    }
+
+    private static Path pathOf(File file) {
+        return pathOf(file.toPath());
+    }
+
+    private static Path pathOf(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.an0nn30.jpad.io;
+
+import javax.swing.text.DefaultEditorKit;
+import javax.swing.text.Document;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The on-disk encoding of a document: its charset and whether the file starts with a byte order mark.
+ * <p>
+ * The encoding is stored as a property of the {@link Document} it was detected for, next to the
+ * {@link DefaultEditorKit#EndOfLineStringProperty} line separator, so that saving writes the file back
+ * the way it was read.
+ * </p>
+ *
+ * @param charset the charset used to decode and encode the file.
+ * @param bom     whether the file starts with a byte order mark.
+ */
+public record FileEncoding(Charset charset, boolean bom) {
+
+    /**
+     * The document property under which the encoding is stored.
+     */
+    public static final String PROPERTY = "fileEncoding";
+
+    /**
+     * The encoding used for new files: UTF-8 without a byte order mark.
+     */
+    public static final FileEncoding DEFAULT = new FileEncoding(StandardCharsets.UTF_8, false);
+
+    /**
+     * Returns the byte order mark for this encoding, or an empty array if the file has none.
+     *
+     * @return the BOM bytes.
+     */
+    public byte[] bomBytes() {
+        if (!bom) {
+            return new byte[0];
+        }
+        // Encoding U+FEFF produces the BOM in the charset's own byte order.
+        return "\uFEFF".getBytes(charset);
+    }
+
+    /**
+     * Returns whether this charset stores '\n' as the single byte 0x0A, so that lines can be found by
+     * scanning raw bytes. True for UTF-8 and the single-byte charsets, false for UTF-16 and UTF-32.
+     *
+     * @return true if line breaks can be located without decoding.
+     */
+    public boolean isAsciiCompatible() {
+        byte[] lineFeed = "\n".getBytes(charset);
+        return lineFeed.length == 1 && lineFeed[0] == '\n';
+    }
+
+    /**
+     * Returns a short, human-readable name for the status bar, e.g. "UTF-8" or "UTF-16LE BOM".
+     *
+     * @return the display name.
+     */
+    public String displayName() {
+        return bom ? charset.name() + " BOM" : charset.name();
+    }
+
+    /**
+     * Returns the encoding stored on the given document, or {@link #DEFAULT} if none was stored.
+     *
+     * @param document the document.
+     * @return the document's encoding.
+     */
+    public static FileEncoding of(Document document) {
+        Object encoding = document.getProperty(PROPERTY);
+        return encoding instanceof FileEncoding fileEncoding ? fileEncoding : DEFAULT;
+    }
+
+    /**
+     * Returns a short name for the line separator stored on the given document: "LF", "CRLF" or "CR".
+     *
+     * @param document the document.
+     * @return the line separator name.
+     */
+    public static String lineSeparatorName(Document document) {
+        Object separator = document.getProperty(DefaultEditorKit.EndOfLineStringProperty);
+        if ("\r\n".equals(separator)) {
+            return "CRLF";
+        }
+        if ("\r".equals(separator)) {
+            return "CR";
+        }
+        return "LF";
+    }
+}
@@ -0,0 +1,222 @@
+package com.github.an0nn30.jpad.io;
+
+import com.github.an0nn30.jpad.logging.Logger;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows a growing file, such as a log, and reports the text appended to it.
+ * <p>
+ * Every {@value #POLL_INTERVAL_MS} ms the {@link IoExecutors#watch() watch thread} reads the file's size and
+ * file key; only when the size has grown are the new bytes read from the last position and decoded, so an idle
+ * file costs one stat call per interval. A file that shrinks or whose file key changes has been truncated or
+ * rotated, and is read again from its start after the listener has been told to {@link Listener#reset() reset}.
+ * Line separators are converted to {@code \n}, as in documents loaded by {@link DocumentLoader}.
+ * </p>
+ */
+public class FileTailer {
+
+    private static final long POLL_INTERVAL_MS = 500;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // The most bytes read per poll, so that a burst of output is delivered in pieces.
+    private static final int MAX_READ_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Receives the followed text. Called on the EDT.
+     */
+    public interface Listener {
+        /**
+         * Called with text appended to the file.
+         *
+         * @param text the new text, with {@code \n} line separators.
+         */
+        void appended(String text);
+
+        /**
+         * Called when the file was truncated or replaced; the text that follows starts at the top of the file.
+         */
+        void reset();
+    }
+
+    private final Path path;
+    private final FileEncoding encoding;
+    private final Listener listener;
+    private volatile ScheduledFuture<?> task;
+    private volatile boolean stopped;
+    // Only touched on the watch thread.
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private final CharsetDecoder decoder;
+    private FileChannel channel;
+    private Object fileKey;
+    private long position;
+    private boolean pendingCarriageReturn;
+    private boolean skipToNextLine;
+
+    /**
+     * Creates a tailer for a file. Nothing is read until {@link #start(long)} is called.
+     *
+     * @param file     the file to follow.
+     * @param encoding the file's encoding.
+     * @param listener the listener for the followed text.
+     */
+    public FileTailer(File file, FileEncoding encoding, Listener listener) {
+        this.path = file.toPath();
+        this.encoding = encoding;
+        this.listener = listener;
+        this.decoder = encoding.charset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Starts following the file.
+     *
+     * @param initialBytes how many bytes before the current end of the file to report first. Reading starts at
+     *                     the line following that point, so partial lines and characters are skipped. Files in
+     *                     encodings that are not ASCII compatible are always read from the start.
+     */
+    public void start(long initialBytes) {
+        IoExecutors.watch().execute(() -> open(encoding.isAsciiCompatible() ? initialBytes : Long.MAX_VALUE));
+        task = IoExecutors.watch().scheduleWithFixedDelay(this::poll, 0, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops following the file and closes it. No listener calls are made after this returns.
+     */
+    public void stop() {
+        stopped = true;
+        ScheduledFuture<?> scheduled = task;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        IoExecutors.watch().execute(this::close);
+    }
+
+    private void open(long initialBytes) {
+        try {
+            channel = FileChannel.open(path);
+            fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            long size = channel.size();
+            long bomLength = encoding.bom() ? encoding.bomBytes().length : 0;
+            position = initialBytes >= size - bomLength ? bomLength : size - initialBytes;
+            skipToNextLine = position > bomLength;
+            decoder.reset();
+            bytes.clear();
+            pendingCarriageReturn = false;
+        } catch (IOException e) {
+            // The file may not exist yet, e.g. between rotations; the next poll tries again.
+            close();
+        }
+    }
+
+    private void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing left to release.
+            }
+            channel = null;
+        }
+    }
+
+    private void poll() {
+        if (stopped) {
+            return;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            boolean replaced = attributes.fileKey() != null && !Objects.equals(attributes.fileKey(), fileKey);
+            if (channel == null || replaced || attributes.size() < position) {
+                boolean wasOpen = channel != null;
+                close();
+                // A new or replaced file is read from its start.
+                open(Long.MAX_VALUE);
+                if (wasOpen) {
+                    deliverReset();
+                }
+                if (channel == null) {
+                    return;
+                }
+            }
+            if (channel.size() > position) {
+                readAppended();
+            }
+        } catch (NoSuchFileException e) {
+            // Rotated away; wait for the new file to appear.
+        } catch (IOException | RuntimeException e) {
+            // Also catch runtime exceptions, which would cancel the periodic task.
+            Logger.getInstance().error(FileTailer.class, "Error following " + path + ": " + e.getMessage());
+        }
+    }
+
+    private void readAppended() throws IOException {
+        StringBuilder text = new StringBuilder();
+        long limit = position + MAX_READ_BYTES;
+        while (position < limit) {
+            int read = channel.read(bytes, position);
+            if (read <= 0) {
+                break;
+            }
+            position += read;
+            bytes.flip();
+            decoder.decode(bytes, chars, false);
+            // Keep an incomplete multi-byte sequence for the next read.
+            bytes.compact();
+            chars.flip();
+            appendNormalized(chars, text);
+            chars.clear();
+        }
+        if (!text.isEmpty()) {
+            String appended = text.toString();
+            SwingUtilities.invokeLater(() -> {
+                if (!stopped) {
+                    listener.appended(appended);
+                }
+            });
+        }
+    }
+
+    private void appendNormalized(CharBuffer input, StringBuilder output) {
+        while (input.hasRemaining()) {
+            char c = input.get();
+            if (skipToNextLine) {
+                skipToNextLine = c != '\n' && c != '\r';
+                pendingCarriageReturn = c == '\r';
+                continue;
+            }
+            if (c == '\r') {
+                output.append('\n');
+                pendingCarriageReturn = true;
+            } else {
+                if (c != '\n' || !pendingCarriageReturn) {
+                    output.append(c);
+                }
+                pendingCarriageReturn = false;
+            }
+        }
+    }
+
+    private void deliverReset() {
+        SwingUtilities.invokeLater(() -> {
+            if (!stopped) {
+                listener.reset();
+            }
+        });
+    }
+}
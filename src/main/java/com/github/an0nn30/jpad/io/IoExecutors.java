@@ -0,0 +1,136 @@
+package com.github.an0nn30.jpad.io;
+
+import com.github.an0nn30.jpad.logging.Logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared background executors for file I/O.
+ * All threads are daemon threads so that pending work never keeps the application alive; writes that must not
+ * be lost are waited for with {@link #finishWrites(long)} when the application closes.
+ */
+public class IoExecutors {
+
+    private static final ExecutorService SAVE_EXECUTOR =
+            Executors.newSingleThreadExecutor(daemonThreadFactory("retroedit-save"));
+    private static final ScheduledExecutorService JOURNAL_EXECUTOR =
+            Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("retroedit-journal"));
+    private static final ExecutorService SPILL_EXECUTOR =
+            Executors.newSingleThreadExecutor(daemonThreadFactory("retroedit-spill"));
+    private static final ScheduledExecutorService WATCH_EXECUTOR =
+            Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("retroedit-watch"));
+    private static final ExecutorService READ_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())),
+            daemonThreadFactory("retroedit-read"));
+    private static final ExecutorService SEARCH_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors() - 1),
+            daemonThreadFactory("retroedit-search"));
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private IoExecutors() {
+    }
+
+    /**
+     * Returns the executor that writes files to disk. It runs one task at a time, so saves complete
+     * in the order they were requested.
+     *
+     * @return the save executor.
+     */
+    public static ExecutorService save() {
+        return SAVE_EXECUTOR;
+    }
+
+    /**
+     * Returns the executor that writes edit journals. All journal I/O runs on its single thread,
+     * so journal files never need locking.
+     *
+     * @return the journal executor.
+     */
+    public static ScheduledExecutorService journal() {
+        return JOURNAL_EXECUTOR;
+    }
+
+    /**
+     * Returns the executor that writes and deletes the spill files of hibernated tabs.
+     *
+     * @return the spill executor.
+     */
+    public static ExecutorService spill() {
+        return SPILL_EXECUTOR;
+    }
+
+    /**
+     * Returns the executor that polls open files for changes made by other programs and reads the lines
+     * appended to followed files.
+     *
+     * @return the watch executor.
+     */
+    public static ScheduledExecutorService watch() {
+        return WATCH_EXECUTOR;
+    }
+
+    /**
+     * Returns the executor that reads and decodes files when several are opened at once, and writes the files
+     * changed by a replace in files. It runs a few tasks in parallel, so that encoding or decoding one file
+     * overlaps with waiting for the disk on another.
+     *
+     * @return the read executor.
+     */
+    public static ExecutorService read() {
+        return READ_EXECUTOR;
+    }
+
+    /**
+     * Returns the executor that searches the files of a project. It has one thread per core but one, so that
+     * a search uses the machine without starving the EDT.
+     *
+     * @return the search executor.
+     */
+    public static ExecutorService search() {
+        return SEARCH_EXECUTOR;
+    }
+
+    /**
+     * Waits for the saves and journal writes already requested to finish, and refuses new ones. Called when the
+     * last window has closed, since the application would otherwise exit in the middle of a write.
+     * Saves are finished first, as a save records its checkpoint in the journal.
+     *
+     * @param timeoutMillis how long to wait for each of the two executors.
+     */
+    public static void finishWrites(long timeoutMillis) {
+        try {
+            SAVE_EXECUTOR.shutdown();
+            boolean finished = SAVE_EXECUTOR.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+            // Journal flushes that are still scheduled run on shutdown rather than being dropped.
+            JOURNAL_EXECUTOR.shutdown();
+            finished &= JOURNAL_EXECUTOR.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (!finished) {
+                Logger.getInstance().error(IoExecutors.class, "Gave up waiting for pending writes to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates a thread factory for named daemon threads.
+     *
+     * @param name the thread name prefix.
+     * @return the thread factory.
+     */
+    static ThreadFactory daemonThreadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,401 @@
+package com.github.an0nn30.jpad.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A read-only, memory-mapped view of a (potentially multi-gigabyte) file with a line-offset index.
+ * <p>
+ * The file is mapped through a {@link SegmentedMapping}, so files larger than {@code Integer.MAX_VALUE} bytes
+ * are supported. The index is sparse: only the start offset of every
+ * {@link #CHECKPOINT_INTERVAL}th line is stored, and the exact start of any other line is found by
+ * scanning forward from the nearest checkpoint. This keeps the index small enough for files with
+ * hundreds of millions of lines.
+ * </p>
+ * <p>
+ * {@link #buildIndex(IntConsumer)} is meant to run on a background thread while the UI reads from the
+ * index; lines become available as soon as they have been scanned.
+ * </p>
+ */
+public class LargeFileIndex implements Closeable {
+
+    /**
+     * The number of lines between two stored line-start offsets.
+     */
+    static final int CHECKPOINT_INTERVAL = 64;
+
+    /**
+     * The number of bytes scanned between two progress reports and checks for cancellation.
+     */
+    static final int PROGRESS_INTERVAL = 16 * 1024 * 1024;
+
+    private final File file;
+    private final FileChannel channel;
+    private final long size;
+    private final SegmentedMapping mapping;
+    private final FileEncoding encoding;
+    private final Charset charset;
+    private final boolean utf8;
+
+    // Checkpoints are published by writing the array first and the count last, so readers that
+    // read the count before the array always see every checkpoint below that count.
+    private volatile long[] checkpoints = new long[1024];
+    private volatile int checkpointCount;
+    private volatile int lineCount;
+    private volatile long indexedBytes;
+    private volatile boolean complete;
+    private volatile boolean cancelled;
+
+    /**
+     * Opens and maps the given file, detecting its encoding with {@link EncodingDetector}.
+     * The line index is empty until {@link #buildIndex(IntConsumer)} runs.
+     * Callers should check {@link FileEncoding#isAsciiCompatible()} on {@link #getEncoding()}, since lines
+     * can only be indexed in encodings that store '\n' as a single byte.
+     *
+     * @param file the file to map.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public LargeFileIndex(File file) throws IOException {
+        this(file, (FileEncoding) null);
+    }
+
+    /**
+     * Opens and maps the given file, decoding lines with the given charset.
+     * The charset must encode '\n' as the single byte 0x0A (UTF-8 and the single-byte charsets do).
+     *
+     * @param file    the file to map.
+     * @param charset the charset used to decode lines.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public LargeFileIndex(File file, Charset charset) throws IOException {
+        this(file, new FileEncoding(charset, false));
+    }
+
+    private LargeFileIndex(File file, FileEncoding encoding) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            this.encoding = encoding != null ? encoding : EncodingDetector.detect(channel);
+            this.charset = this.encoding.charset();
+            this.utf8 = charset.equals(StandardCharsets.UTF_8);
+            this.mapping = new SegmentedMapping(channel);
+            this.size = mapping.size();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        // The first line starts after the byte order mark, if there is one.
+        checkpoints[0] = this.encoding.bomBytes().length;
+        checkpointCount = 1;
+    }
+
+    /**
+     * Scans the whole file for line breaks. Intended to be called once, off the EDT.
+     *
+     * @param progress receives the number of lines indexed so far after every {@link #PROGRESS_INTERVAL} bytes
+     *                 (may be null).
+     */
+    public void buildIndex(IntConsumer progress) {
+        int lines = 0;
+        long offset = 0;
+        for (int segment = 0; segment < mapping.segmentCount(); segment++) {
+            ByteBuffer buffer = mapping.segment(segment).duplicate();
+            int limit = buffer.limit();
+            // Report per block of bytes rather than per lines, so that a file with few line breaks can
+            // still be cancelled and shows progress.
+            for (int blockStart = 0; blockStart < limit; blockStart += PROGRESS_INTERVAL) {
+                if (cancelled) {
+                    return;
+                }
+                int blockEnd = (int) Math.min(limit, (long) blockStart + PROGRESS_INTERVAL);
+                for (int i = blockStart; i < blockEnd; i++) {
+                    if (buffer.get(i) == '\n') {
+                        lines++;
+                        if (lines % CHECKPOINT_INTERVAL == 0) {
+                            addCheckpoint(offset + i + 1);
+                        }
+                    }
+                }
+                lineCount = lines;
+                indexedBytes = offset + blockEnd;
+                if (progress != null) {
+                    progress.accept(lines);
+                }
+            }
+            offset += limit;
+        }
+        // The last line is counted even when the file does not end with a line break.
+        lineCount = lines + 1;
+        indexedBytes = size;
+        complete = true;
+        if (progress != null) {
+            progress.accept(lineCount);
+        }
+    }
+
+    private void addCheckpoint(long lineStart) {
+        long[] current = checkpoints;
+        int count = checkpointCount;
+        if (count == current.length) {
+            current = Arrays.copyOf(current, count * 2);
+            checkpoints = current;
+        }
+        current[count] = lineStart;
+        checkpointCount = count + 1;
+    }
+
+    /**
+     * Returns the number of lines indexed so far. Once indexing is complete this is the total line count.
+     *
+     * @return the number of known lines (at least 1).
+     */
+    public int getLineCount() {
+        return Math.max(1, lineCount);
+    }
+
+    /**
+     * Returns the number of bytes scanned for line breaks so far.
+     *
+     * @return the number of indexed bytes; the file size once indexing is complete.
+     */
+    public long getIndexedBytes() {
+        return indexedBytes;
+    }
+
+    /**
+     * Returns whether the line index has been fully built.
+     *
+     * @return true if indexing is complete.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns the byte offset at which the given (0-based) line starts.
+     *
+     * @param line the 0-based line number.
+     * @return the byte offset of the start of the line, or the file size if the line is past the end.
+     */
+    public long getLineStartOffset(int line) {
+        int count = checkpointCount;
+        long[] known = checkpoints;
+        int checkpoint = Math.min(line / CHECKPOINT_INTERVAL, count - 1);
+        long offset = known[checkpoint];
+        int remaining = line - checkpoint * CHECKPOINT_INTERVAL;
+        while (remaining > 0 && offset < size) {
+            if (byteAt(offset++) == '\n') {
+                remaining--;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the 0-based line containing the given byte offset.
+     *
+     * @param offset the byte offset.
+     * @return the line number containing the offset.
+     */
+    public int getLineOfOffset(long offset) {
+        int count = checkpointCount;
+        long[] known = checkpoints;
+        int index = Arrays.binarySearch(known, 0, count, offset);
+        if (index < 0) {
+            index = Math.max(0, -index - 2);
+        }
+        int line = index * CHECKPOINT_INTERVAL;
+        for (long position = known[index]; position < offset && position < size; position++) {
+            if (byteAt(position) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Decodes a block of lines into a string.
+     * The block is cut short once {@code maxBytes} bytes have been read, always at a line boundary
+     * unless the very first line is longer than that on its own.
+     *
+     * @param firstLine the 0-based first line to read.
+     * @param lineCount the maximum number of lines to read.
+     * @param maxBytes  the maximum number of bytes to decode.
+     * @return the decoded lines, separated by '\n'; the '\r' of CRLF line breaks is left out.
+     */
+    public String readLines(int firstLine, int lineCount, int maxBytes) {
+        long start = getLineStartOffset(firstLine);
+        long end = start;
+        int lines = 0;
+        while (end < size && lines < lineCount && end - start < maxBytes) {
+            if (byteAt(end++) == '\n') {
+                lines++;
+            }
+        }
+        // Drop the break after the last line unless it is the final line break of the file.
+        if (end < size && end > start && byteAt(end - 1) == '\n') {
+            end--;
+            if (end > start && byteAt(end - 1) == '\r') {
+                end--;
+            }
+        }
+        String text = readRange(start, (int) Math.min(end - start, maxBytes));
+        return text.indexOf('\r') >= 0 ? text.replace("\r\n", "\n") : text;
+    }
+
+    /**
+     * Returns the offset just past the first line break at or after the given offset.
+     *
+     * @param offset the byte offset to start scanning from.
+     * @return the offset of the start of the following line, or the file size if there is none.
+     */
+    public long findLineEnd(long offset) {
+        while (offset < size) {
+            if (byteAt(offset++) == '\n') {
+                return offset;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Moves an offset back to the start of the character it falls in, so that a range starting or ending there
+     * does not split a multi-byte UTF-8 sequence. Offsets in single-byte charsets are returned unchanged.
+     *
+     * @param offset the byte offset.
+     * @return the offset of the first byte of the character.
+     */
+    public long alignToCharacter(long offset) {
+        if (!utf8) {
+            return offset;
+        }
+        // A UTF-8 sequence has at most three continuation bytes.
+        for (int i = 0; i < 3 && offset > 0 && offset < size && isContinuation(byteAt(offset)); i++) {
+            offset--;
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the number of characters (UTF-16 code units, as in a {@link String}) that the bytes in the given
+     * range decode to, without decoding them.
+     *
+     * @param start the byte offset of the first character.
+     * @param end   the byte offset just past the range.
+     * @return the number of characters.
+     */
+    public long countCharacters(long start, long end) {
+        if (!utf8) {
+            return end - start;
+        }
+        long count = 0;
+        for (long position = start; position < end; position++) {
+            count += charactersStartingWith(byteAt(position));
+        }
+        return count;
+    }
+
+    /**
+     * Returns the byte offset of a column within a line, or of the end of the line if it is shorter.
+     *
+     * @param lineStart the byte offset at which the line starts.
+     * @param column    the column, counted in characters.
+     * @return the offset of the character at that column, or of the line break (or end of file) ending the line.
+     */
+    public long getOffsetOfColumn(long lineStart, long column) {
+        long offset = lineStart;
+        long characters = 0;
+        while (offset < size && byteAt(offset) != '\n') {
+            characters += utf8 ? charactersStartingWith(byteAt(offset)) : 1;
+            if (characters > column) {
+                break;
+            }
+            offset++;
+        }
+        return offset;
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    /**
+     * Returns how many UTF-16 code units the UTF-8 sequence starting with the given byte decodes to: none for a
+     * continuation byte, two for a four-byte sequence and one otherwise.
+     */
+    private static int charactersStartingWith(byte b) {
+        if (isContinuation(b)) {
+            return 0;
+        }
+        return (b & 0xF8) == 0xF0 ? 2 : 1;
+    }
+
+    /**
+     * Decodes the bytes in the given range.
+     *
+     * @param start  the byte offset to start at.
+     * @param length the number of bytes to decode.
+     * @return the decoded text.
+     */
+    public String readRange(long start, int length) {
+        byte[] bytes = new byte[length];
+        read(start, bytes, 0, length);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Copies bytes from the mapped file into the given array, crossing segment boundaries as needed.
+     *
+     * @param position the file offset to read from.
+     * @param dst      the destination array.
+     * @param offset   the offset in the destination array.
+     * @param length   the number of bytes to copy.
+     */
+    public void read(long position, byte[] dst, int offset, int length) {
+        mapping.read(position, dst, offset, length);
+    }
+
+    /**
+     * Returns the byte at the given file offset.
+     *
+     * @param position the file offset.
+     * @return the byte at that offset.
+     */
+    public byte byteAt(long position) {
+        return mapping.byteAt(position);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public FileEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Stops a running {@link #buildIndex(IntConsumer)} and closes the underlying channel.
+     * The mappings themselves are released once they are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        cancelled = true;
+        channel.close();
+    }
+}
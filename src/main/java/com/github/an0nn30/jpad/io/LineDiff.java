@@ -0,0 +1,219 @@
+package com.github.an0nn30.jpad.io;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the lines that differ between two texts, so that only those lines need to be replaced in a document.
+ * <p>
+ * Reloading a document this way keeps the caret, folds and bookmarks of unchanged regions where they were,
+ * and adds a small undoable edit instead of replacing all the text. Lines are compared with Myers' O(ND)
+ * algorithm after the common leading and trailing lines have been stripped. If the texts differ in more than
+ * {@value #MAX_EDIT_DISTANCE} lines, the differing middle section is replaced as a whole. The edits can be
+ * computed on any thread and applied on the EDT.
+ * </p>
+ */
+public final class LineDiff {
+
+    private static final int MAX_EDIT_DISTANCE = 1000;
+
+    /**
+     * A replacement of part of the old text.
+     *
+     * @param offset the offset of the replaced text.
+     * @param length the length of the replaced text.
+     * @param text   the replacement text.
+     */
+    public record Edit(int offset, int length, String text) {
+    }
+
+    /**
+     * A range of lines that was replaced: lines {@code [oldStart, oldEnd)} of the old text became lines
+     * {@code [newStart, newEnd)} of the new text. Either range may be empty.
+     */
+    record Hunk(int oldStart, int oldEnd, int newStart, int newEnd) {
+    }
+
+    private LineDiff() {
+    }
+
+    /**
+     * Computes the edits that turn one text into another, replacing whole lines.
+     *
+     * @param oldText the old text, with {@code \n} line separators.
+     * @param newText the new text, with {@code \n} line separators.
+     * @return the edits, from the end of the text to its start so that they can be applied in order;
+     *         empty if the texts are equal.
+     */
+    public static List<Edit> compute(String oldText, String newText) {
+        List<String> oldLines = splitLines(oldText);
+        List<String> newLines = splitLines(newText);
+        List<Hunk> hunks = diff(oldLines, newLines);
+        int[] oldOffsets = lineOffsets(oldLines);
+        List<Edit> edits = new ArrayList<>(hunks.size());
+        for (int i = hunks.size() - 1; i >= 0; i--) {
+            Hunk hunk = hunks.get(i);
+            int start = oldOffsets[hunk.oldStart()];
+            int end = oldOffsets[hunk.oldEnd()];
+            StringBuilder replacement = new StringBuilder();
+            for (int line = hunk.newStart(); line < hunk.newEnd(); line++) {
+                replacement.append(newLines.get(line));
+            }
+            edits.add(new Edit(start, end - start, replacement.toString()));
+        }
+        return edits;
+    }
+
+    /**
+     * Applies edits from {@link #compute} to a document that still holds the old text. Must be called on the EDT.
+     *
+     * @param document the document to update.
+     * @param edits    the edits.
+     * @throws BadLocationException if the document no longer holds the text the edits were computed for.
+     */
+    public static void apply(AbstractDocument document, List<Edit> edits) throws BadLocationException {
+        for (Edit edit : edits) {
+            document.replace(edit.offset(), edit.length(), edit.text(), null);
+        }
+    }
+
+    /**
+     * Computes the ranges of lines that differ between two lists of lines.
+     *
+     * @param oldLines the old lines.
+     * @param newLines the new lines.
+     * @return the replaced ranges, in ascending order.
+     */
+    static List<Hunk> diff(List<String> oldLines, List<String> newLines) {
+        int prefix = 0;
+        int maxPrefix = Math.min(oldLines.size(), newLines.size());
+        while (prefix < maxPrefix && oldLines.get(prefix).equals(newLines.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < maxPrefix - prefix
+                && oldLines.get(oldLines.size() - 1 - suffix).equals(newLines.get(newLines.size() - 1 - suffix))) {
+            suffix++;
+        }
+        int oldEnd = oldLines.size() - suffix;
+        int newEnd = newLines.size() - suffix;
+        if (prefix == oldEnd && prefix == newEnd) {
+            return Collections.emptyList();
+        }
+
+        // Compare interned line ids instead of strings.
+        Map<String, Integer> ids = new HashMap<>();
+        int[] a = new int[oldEnd - prefix];
+        int[] b = new int[newEnd - prefix];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = ids.computeIfAbsent(oldLines.get(prefix + i), line -> ids.size());
+        }
+        for (int i = 0; i < b.length; i++) {
+            b[i] = ids.computeIfAbsent(newLines.get(prefix + i), line -> ids.size());
+        }
+
+        List<Hunk> hunks = new ArrayList<>();
+        List<int[]> matches = matchLines(a, b);
+        if (matches == null) {
+            hunks.add(new Hunk(prefix, oldEnd, prefix, newEnd));
+            return hunks;
+        }
+        int oldLine = 0;
+        int newLine = 0;
+        for (int[] match : matches) {
+            if (match[0] > oldLine || match[1] > newLine) {
+                hunks.add(new Hunk(prefix + oldLine, prefix + match[0], prefix + newLine, prefix + match[1]));
+            }
+            oldLine = match[0] + 1;
+            newLine = match[1] + 1;
+        }
+        if (oldLine < a.length || newLine < b.length) {
+            hunks.add(new Hunk(prefix + oldLine, prefix + a.length, prefix + newLine, prefix + b.length));
+        }
+        return hunks;
+    }
+
+    /**
+     * Finds a longest common subsequence of two sequences with Myers' algorithm.
+     *
+     * @return the matched index pairs in ascending order, or null if the edit distance exceeds the limit.
+     */
+    private static List<int[]> matchLines(int[] a, int[] b) {
+        int n = a.length;
+        int m = b.length;
+        int maxDistance = Math.min(n + m, MAX_EDIT_DISTANCE);
+        int offset = maxDistance + 1;
+        int[] v = new int[2 * offset + 1];
+        List<int[]> trace = new ArrayList<>();
+        for (int d = 0; d <= maxDistance; d++) {
+            trace.add(v.clone());
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])
+                        ? v[offset + k + 1] : v[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[x] == b[y]) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    return backtrack(trace, offset, n, m);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<int[]> backtrack(List<int[]> trace, int offset, int n, int m) {
+        List<int[]> matches = new ArrayList<>();
+        int x = n;
+        int y = m;
+        for (int d = trace.size() - 1; d >= 0; d--) {
+            int[] v = trace.get(d);
+            int k = x - y;
+            int previousK = k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]) ? k + 1 : k - 1;
+            int previousX = d == 0 ? 0 : v[offset + previousK];
+            int previousY = d == 0 ? 0 : previousX - previousK;
+            while (x > previousX && y > previousY) {
+                x--;
+                y--;
+                matches.add(new int[]{x, y});
+            }
+            x = previousX;
+            y = previousY;
+        }
+        Collections.reverse(matches);
+        return matches;
+    }
+
+    /**
+     * Splits text into lines that keep their trailing {@code \n}; the last line has none if the text
+     * does not end with a newline.
+     */
+    private static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        int newline;
+        while ((newline = text.indexOf('\n', start)) >= 0) {
+            lines.add(text.substring(start, newline + 1));
+            start = newline + 1;
+        }
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    private static int[] lineOffsets(List<String> lines) {
+        int[] offsets = new int[lines.size() + 1];
+        for (int i = 0; i < lines.size(); i++) {
+            offsets[i + 1] = offsets[i] + lines.get(i).length();
+        }
+        return offsets;
+    }
+}
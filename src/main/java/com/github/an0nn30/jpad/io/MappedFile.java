@@ -0,0 +1,129 @@
+package com.github.an0nn30.jpad.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * A read-only, memory-mapped file of any size, read as raw bytes.
+ * <p>
+ * Like {@link LargeFileIndex}, the file is mapped through a {@link SegmentedMapping}, so the heap cost is independent of the file size and pages are only read from disk when touched.
+ * </p>
+ */
+public class MappedFile implements Closeable {
+
+    // How many bytes a search scans between checks for cancellation.
+    private static final int SEARCH_CHECK_INTERVAL = 1 << 20;
+
+    private final File file;
+    private final FileChannel channel;
+    private final long size;
+    private final SegmentedMapping mapping;
+
+    /**
+     * Opens and maps the given file.
+     *
+     * @param file the file to map.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public MappedFile(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            this.mapping = new SegmentedMapping(channel);
+            this.size = mapping.size();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Copies bytes from the mapped file into the given array, crossing segment boundaries as needed.
+     *
+     * @param position the file offset to read from.
+     * @param dst      the destination array.
+     * @param offset   the offset in the destination array.
+     * @param length   the number of bytes to copy.
+     */
+    public void read(long position, byte[] dst, int offset, int length) {
+        mapping.read(position, dst, offset, length);
+    }
+
+    /**
+     * Returns the byte at the given file offset.
+     *
+     * @param position the file offset.
+     * @return the byte at that offset.
+     */
+    public byte byteAt(long position) {
+        return mapping.byteAt(position);
+    }
+
+    /**
+     * Finds the next occurrence of a byte sequence. Intended to be called off the EDT.
+     *
+     * @param pattern   the bytes to find; must not be empty.
+     * @param from      the offset to start searching at.
+     * @param to        the offset at which the search stops; a match must start before it.
+     * @param cancelled checked regularly; the search gives up when it returns true.
+     * @param progress  receives the offset reached, roughly every megabyte (may be null).
+     * @return the offset of the match, or -1 if there is none or the search was cancelled.
+     */
+    public long indexOf(byte[] pattern, long from, long to, BooleanSupplier cancelled, LongConsumer progress) {
+        long end = Math.min(to, size - pattern.length + 1);
+        byte first = pattern[0];
+        long position = Math.max(0, from);
+        while (position < end) {
+            int segment = (int) (position / SegmentedMapping.SEGMENT_SIZE);
+            long segmentStart = segment * SegmentedMapping.SEGMENT_SIZE;
+            MappedByteBuffer buffer = mapping.segment(segment);
+            int limit = (int) Math.min(buffer.limit(), end - segmentStart);
+            for (int i = (int) (position - segmentStart); i < limit; i++) {
+                if (buffer.get(i) == first && matchesAt(pattern, segmentStart + i)) {
+                    return segmentStart + i;
+                }
+                if (i % SEARCH_CHECK_INTERVAL == 0) {
+                    if (cancelled.getAsBoolean()) {
+                        return -1;
+                    }
+                    if (progress != null) {
+                        progress.accept(segmentStart + i);
+                    }
+                }
+            }
+            position = segmentStart + limit;
+        }
+        return -1;
+    }
+
+    private boolean matchesAt(byte[] pattern, long position) {
+        for (int i = 1; i < pattern.length; i++) {
+            if (byteAt(position + i) != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Closes the underlying channel. The mappings themselves are released once they are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
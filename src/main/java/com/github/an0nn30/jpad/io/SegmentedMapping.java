@@ -0,0 +1,88 @@
+package com.github.an0nn30.jpad.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only memory mapping of a whole file, split into segments of at most {@link #SEGMENT_SIZE} bytes so
+ * that files larger than {@code Integer.MAX_VALUE} bytes can be mapped. Shared by {@link LargeFileIndex} and
+ * {@link MappedFile}; it may be read from any thread.
+ */
+final class SegmentedMapping {
+
+    /**
+     * The maximum size of a single mapped segment.
+     */
+    static final long SEGMENT_SIZE = 1L << 30;
+
+    private final long size;
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Maps the whole file behind the given channel. The mappings stay valid after the channel is closed.
+     *
+     * @param channel a channel opened for reading.
+     * @throws IOException if the file cannot be mapped.
+     */
+    SegmentedMapping(FileChannel channel) throws IOException {
+        size = channel.size();
+        int segmentCount = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long position = i * SEGMENT_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, size - position));
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    int segmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Returns a mapped segment. Use absolute reads or a duplicate, since the buffer is shared between threads.
+     *
+     * @param index the segment index; segment {@code i} starts at file offset {@code i * SEGMENT_SIZE}.
+     * @return the segment.
+     */
+    MappedByteBuffer segment(int index) {
+        return segments[index];
+    }
+
+    /**
+     * Copies bytes from the mapped file into the given array, crossing segment boundaries as needed.
+     *
+     * @param position the file offset to read from.
+     * @param dst      the destination array.
+     * @param offset   the offset in the destination array.
+     * @param length   the number of bytes to copy.
+     */
+    void read(long position, byte[] dst, int offset, int length) {
+        while (length > 0) {
+            int segment = (int) (position / SEGMENT_SIZE);
+            int segmentOffset = (int) (position % SEGMENT_SIZE);
+            ByteBuffer buffer = segments[segment].duplicate();
+            int chunk = Math.min(length, buffer.limit() - segmentOffset);
+            buffer.position(segmentOffset);
+            buffer.get(dst, offset, chunk);
+            position += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Returns the byte at the given file offset.
+     *
+     * @param position the file offset.
+     * @return the byte at that offset.
+     */
+    byte byteAt(long position) {
+        return segments[(int) (position / SEGMENT_SIZE)].get((int) (position % SEGMENT_SIZE));
+    }
+}
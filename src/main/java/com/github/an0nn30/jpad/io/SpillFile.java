@@ -0,0 +1,131 @@
+package com.github.an0nn30.jpad.io;
+
+import com.github.an0nn30.jpad.logging.Logger;
+import com.github.an0nn30.jpad.settings.Settings;
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
+import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
+
+import javax.swing.text.BadLocationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Holds the text of a hibernated tab in a compressed file under the config directory.
+ * <p>
+ * The text is written on the {@link IoExecutors#spill() spill thread}. Until that write has finished the
+ * text is kept in memory, so the file can be read back at any time. Spill files only live as long as the
+ * session; unsaved edits survive a crash through the {@link EditJournal} instead.
+ * </p>
+ */
+public class SpillFile {
+
+    private static final AtomicBoolean STALE_FILES_DELETED = new AtomicBoolean();
+
+    private final Path path;
+    private volatile String text;
+    private volatile boolean deleted;
+
+    private SpillFile(Path path, String text) {
+        this.path = path;
+        this.text = text;
+    }
+
+    /**
+     * Starts writing the given text to a new spill file.
+     *
+     * @param text the text to spill.
+     * @return the spill file; its text can be read back immediately.
+     */
+    public static SpillFile write(String text) {
+        Path directory = Settings.getSettingsFilePath("spill");
+        if (STALE_FILES_DELETED.compareAndSet(false, true)) {
+            IoExecutors.spill().execute(() -> deleteStaleFiles(directory));
+        }
+        SpillFile spillFile = new SpillFile(directory.resolve(UUID.randomUUID() + ".gz"), text);
+        IoExecutors.spill().execute(spillFile::writeToDisk);
+        return spillFile;
+    }
+
+    private void writeToDisk() {
+        String pending = text;
+        if (deleted || pending == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(path.getParent());
+            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(path), 64 * 1024),
+                    StandardCharsets.UTF_8)) {
+                writer.write(pending);
+            }
+            // Only drop the in-memory copy once the file is complete.
+            text = null;
+        } catch (IOException e) {
+            Logger.getInstance().error(SpillFile.class, "Could not spill to " + path + ", keeping text in memory: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the spilled text into a new, detached document.
+     *
+     * @return the document.
+     * @throws IOException if the spill file cannot be read.
+     */
+    public RSyntaxDocument load() throws IOException {
+        String pending = text;
+        if (pending != null) {
+            RSyntaxDocument document = new RSyntaxDocument(SyntaxConstants.SYNTAX_STYLE_NONE);
+            try {
+                document.insertString(0, pending, null);
+            } catch (BadLocationException e) {
+                throw new IOException("Could not restore spilled text", e);
+            }
+            return document;
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path), 64 * 1024)) {
+            return DocumentLoader.load(Channels.newChannel(in), StandardCharsets.UTF_8, null);
+        }
+    }
+
+    /**
+     * Deletes the spill file once it is no longer needed.
+     */
+    public void delete() {
+        deleted = true;
+        text = null;
+        IoExecutors.spill().execute(() -> {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                Logger.getInstance().error(SpillFile.class, "Could not delete " + path + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Removes spill files left behind by an earlier session.
+     */
+    private static void deleteStaleFiles(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            Logger.getInstance().error(SpillFile.class, "Could not clean " + directory + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.an0nn30.jpad.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reads the text of a {@link VirtualFile} one page at a time, front to back.
+ * <p>
+ * Only the bytes of the current page are decompressed and decoded, so files whose uncompressed text is far
+ * larger than the heap can still be paged through. The encoding is detected from the first bytes, as for
+ * regular files, and line separators are normalized to {@code \n}. Pages end at a line break where possible;
+ * the rest of the last line starts the next page.
+ * </p>
+ */
+public class StreamPager implements Closeable {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final FileEncoding encoding;
+    private final CharsetDecoder decoder;
+    private final DocumentLoader.LineNormalizer normalizer = new DocumentLoader.LineNormalizer();
+    private final ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+    // The partial line at the end of the last page.
+    private final StringBuilder carry = new StringBuilder();
+    private long bytesRead;
+    private boolean endOfStream;
+    private boolean flushed;
+
+    private StreamPager(InputStream in, FileEncoding encoding, ByteBuffer prefix, boolean endOfStream) {
+        this.in = in;
+        this.encoding = encoding;
+        this.decoder = encoding.charset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytesRead = prefix.limit();
+        this.endOfStream = endOfStream;
+        prefix.position(encoding.bomBytes().length);
+        bytes.put(prefix);
+    }
+
+    /**
+     * Opens a virtual file and detects its encoding.
+     *
+     * @param file the file.
+     * @return a pager positioned at the start of the text.
+     * @throws IOException if the file cannot be opened or decompressed.
+     */
+    public static StreamPager open(VirtualFile file) throws IOException {
+        InputStream in = file.openStream();
+        try {
+            ByteBuffer prefix = ByteBuffer.allocate(CHUNK_SIZE);
+            boolean endOfStream = false;
+            while (prefix.hasRemaining() && !endOfStream) {
+                int read = in.read(prefix.array(), prefix.position(), prefix.remaining());
+                if (read < 0) {
+                    endOfStream = true;
+                } else {
+                    prefix.position(prefix.position() + read);
+                }
+            }
+            prefix.flip();
+            ByteBuffer sniffed = prefix.duplicate();
+            sniffed.limit(Math.min(sniffed.limit(), EncodingDetector.SNIFF_SIZE));
+            FileEncoding encoding = EncodingDetector.detect(sniffed, !endOfStream || prefix.limit() > sniffed.limit());
+            return new StreamPager(in, encoding, prefix, endOfStream);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next page of text.
+     *
+     * @param maxBytes how many more bytes of the uncompressed file to read for this page.
+     * @return the text of the page, with {@code \n} line separators; null if the end of the file was reached.
+     * @throws IOException if reading fails or the calling thread is interrupted.
+     */
+    public String nextPage(int maxBytes) throws IOException {
+        if (isFinished()) {
+            return null;
+        }
+        StringBuilder page = new StringBuilder(carry);
+        carry.setLength(0);
+        long limit = bytesRead + maxBytes;
+        while (!flushed) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Reading cancelled");
+            }
+            bytes.flip();
+            while (decoder.decode(bytes, chars, endOfStream).isOverflow()) {
+                drain(page);
+            }
+            bytes.compact();
+            drain(page);
+            if (endOfStream) {
+                while (decoder.flush(chars).isOverflow()) {
+                    drain(page);
+                }
+                drain(page);
+                flushed = true;
+            } else if (bytesRead >= limit) {
+                break;
+            } else {
+                int read = in.read(bytes.array(), bytes.position(), bytes.remaining());
+                if (read < 0) {
+                    endOfStream = true;
+                } else {
+                    bytes.position(bytes.position() + read);
+                    bytesRead += read;
+                }
+            }
+        }
+        if (!flushed) {
+            int end = page.lastIndexOf("\n") + 1;
+            if (end > 0) {
+                carry.append(page, end, page.length());
+                page.setLength(end);
+            }
+        }
+        return page.toString();
+    }
+
+    private void drain(StringBuilder page) {
+        chars.flip();
+        page.append(normalizer.normalize(chars));
+        chars.clear();
+    }
+
+    /**
+     * Returns whether all of the text has been returned.
+     *
+     * @return true once the last page has been read.
+     */
+    public boolean isFinished() {
+        return flushed && carry.isEmpty();
+    }
+
+    /**
+     * Returns how many bytes of the uncompressed file have been read so far.
+     *
+     * @return the number of bytes read.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public FileEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Returns the first line separator seen so far, or the platform's if none has been seen yet.
+     *
+     * @return the line separator.
+     */
+    public String getLineSeparator() {
+        return normalizer.getLineSeparator();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
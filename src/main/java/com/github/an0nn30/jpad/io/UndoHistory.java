@@ -0,0 +1,208 @@
+package com.github.an0nn30.jpad.io;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.Document;
+import javax.swing.undo.CompoundEdit;
+import javax.swing.undo.UndoManager;
+import javax.swing.undo.UndoableEdit;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The undo history of a document, shared by every view that shows it.
+ * <p>
+ * The edits of a Swing document refer to absolute offsets, so an edit can only be undone after every later
+ * edit has been; a view cannot keep a history of just its own edits while other views edit the same document.
+ * Instead, each edit is recorded here once, whichever view made it, and every view undoes and redoes from this
+ * history. Typing at adjacent offsets is grouped into one step, as RSyntaxTextArea's own undo manager groups
+ * it, and everything between {@link #beginAtomicEdit()} and {@link #endAtomicEdit()} is one step. All methods
+ * must be called on the EDT.
+ * </p>
+ * <p>
+ * The {@link #position() position} in the history identifies the document's text: undoing and redoing back to
+ * a position restores the text it had there, which is how {@link DirtyTracker} notices that an edit was undone
+ * back to the saved text.
+ * </p>
+ */
+public final class UndoHistory extends UndoManager {
+
+    /**
+     * The document property under which a document's history is stored.
+     */
+    public static final String PROPERTY = "undoHistory";
+
+    // The step that edits are currently added to, or null if the next edit starts a new one.
+    private Step step;
+    // The offset at which the next edit continues the current step.
+    private int nextOffset;
+    private int atomicDepth;
+    // The last edit recorded; every view of the document reports each edit.
+    private UndoableEdit recorded;
+    // The position before the first edit; replaced once the text it stood for can no longer be undone back to.
+    private Object origin = new Object();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * A group of edits undone as one. It never reports itself as in progress, so that it can be undone while
+     * edits are still being added to it.
+     */
+    private static final class Step extends CompoundEdit {
+        @Override
+        public boolean isInProgress() {
+            return false;
+        }
+    }
+
+    private UndoHistory() {
+    }
+
+    /**
+     * Returns the history of the given document, creating an empty one if it has none.
+     *
+     * @param document the document.
+     * @return the document's history.
+     */
+    public static UndoHistory attach(Document document) {
+        Object history = document.getProperty(PROPERTY);
+        if (history instanceof UndoHistory undoHistory) {
+            return undoHistory;
+        }
+        UndoHistory undoHistory = new UndoHistory();
+        document.putProperty(PROPERTY, undoHistory);
+        return undoHistory;
+    }
+
+    /**
+     * Records an edit made to the document. An edit that was just recorded, as reported by another view, is
+     * ignored.
+     *
+     * @param edit the edit.
+     */
+    public void record(UndoableEdit edit) {
+        if (edit == recorded) {
+            return;
+        }
+        recorded = edit;
+        if (step != null && (atomicDepth > 0 || continuesStep(edit))) {
+            step.addEdit(edit);
+        } else {
+            endStep();
+            step = new Step();
+            step.addEdit(edit);
+            addEdit(step);
+        }
+        if (edit instanceof DocumentEvent event) {
+            nextOffset = event.getType() == DocumentEvent.EventType.INSERT
+                    ? event.getOffset() + event.getLength() : event.getOffset();
+        }
+        listeners.forEach(Runnable::run);
+    }
+
+    /**
+     * Returns whether an edit follows on from the previous one, like a typed character after another, or a
+     * backspace or delete after another.
+     */
+    private boolean continuesStep(UndoableEdit edit) {
+        if (!(edit instanceof DocumentEvent event)) {
+            return false;
+        }
+        if (event.getType() == DocumentEvent.EventType.INSERT) {
+            return event.getOffset() == nextOffset;
+        }
+        return event.getType() == DocumentEvent.EventType.REMOVE
+                && (event.getOffset() == nextOffset || event.getOffset() + event.getLength() == nextOffset);
+    }
+
+    /**
+     * Starts an atomic edit: every edit until the matching {@link #endAtomicEdit()} is undone in one step.
+     * Atomic edits may be nested.
+     */
+    public void beginAtomicEdit() {
+        if (atomicDepth++ == 0) {
+            endStep();
+        }
+    }
+
+    /**
+     * Ends an atomic edit started with {@link #beginAtomicEdit()}.
+     */
+    public void endAtomicEdit() {
+        if (atomicDepth > 0 && --atomicDepth == 0) {
+            endStep();
+        }
+    }
+
+    /**
+     * Returns the current position in the history: the step that would be undone next, or a marker for the
+     * start of the history. The position only changes when an edit starts a new step, or on undo and redo.
+     *
+     * @return an object that is the same whenever the history is at the same position.
+     */
+    public Object position() {
+        UndoableEdit edit = editToBeUndone();
+        return edit != null ? edit : origin;
+    }
+
+    /**
+     * Returns the current {@link #position() position}, first ending the current step so that the next edit
+     * moves away from it even if it continues the previous one.
+     *
+     * @return the current position.
+     */
+    public Object mark() {
+        endStep();
+        return position();
+    }
+
+    /**
+     * Adds a listener that is called whenever an edit is recorded, undone or redone, or the history is discarded.
+     *
+     * @param changeListener the listener.
+     */
+    public void addChangeListener(Runnable changeListener) {
+        listeners.add(changeListener);
+    }
+
+    public void removeChangeListener(Runnable changeListener) {
+        listeners.remove(changeListener);
+    }
+
+    private void endStep() {
+        if (step != null) {
+            step.end();
+            step = null;
+        }
+    }
+
+    @Override
+    public synchronized void undo() {
+        endStep();
+        super.undo();
+        listeners.forEach(Runnable::run);
+    }
+
+    @Override
+    public synchronized void redo() {
+        endStep();
+        super.redo();
+        listeners.forEach(Runnable::run);
+    }
+
+    @Override
+    public synchronized void discardAllEdits() {
+        endStep();
+        recorded = null;
+        origin = new Object();
+        super.discardAllEdits();
+        listeners.forEach(Runnable::run);
+    }
+
+    @Override
+    protected void trimEdits(int from, int to) {
+        // Dropping the oldest done steps for the limit means the original text can no longer be undone back to.
+        if (from == 0 && to >= from && edits.get(to).canUndo()) {
+            origin = new Object();
+        }
+        super.trimEdits(from, to);
+    }
+}
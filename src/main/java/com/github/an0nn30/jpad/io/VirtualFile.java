@@ -0,0 +1,136 @@
+package com.github.an0nn30.jpad.io;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Text that is not stored as a plain file on disk: a gzip-compressed file, or an entry inside a zip or jar
+ * archive (which may itself be gzip-compressed).
+ * <p>
+ * The content is only ever available as a stream that is decompressed while it is read, so it is never
+ * inflated to disk or held in memory as a whole; see {@link StreamPager}. Archives are read through the
+ * JDK's zip {@link FileSystem} provider, which only reads the central directory to list the entries.
+ * </p>
+ *
+ * @param container the file on disk.
+ * @param entry     the path of the entry inside the archive, or null if the container itself is the content.
+ */
+public record VirtualFile(File container, String entry) {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String[] COMPRESSED_EXTENSIONS = {".gz", ".gzip"};
+    private static final String[] ARCHIVE_EXTENSIONS = {".zip", ".jar", ".war", ".ear"};
+
+    /**
+     * Returns whether a file is gzip-compressed, judged by its name.
+     *
+     * @param file the file.
+     * @return true for {@code .gz} and {@code .gzip} files.
+     */
+    public static boolean isCompressed(File file) {
+        return hasExtension(file.getName(), COMPRESSED_EXTENSIONS);
+    }
+
+    /**
+     * Returns whether a file is a zip archive, judged by its name.
+     *
+     * @param file the file.
+     * @return true for {@code .zip}, {@code .jar}, {@code .war} and {@code .ear} files.
+     */
+    public static boolean isArchive(File file) {
+        return hasExtension(file.getName(), ARCHIVE_EXTENSIONS);
+    }
+
+    private static boolean hasExtension(String name, String[] extensions) {
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        for (String extension : extensions) {
+            if (lowerCaseName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lists the regular files in a zip archive.
+     *
+     * @param archive the archive.
+     * @return the entry paths, without a leading '/', in sorted order.
+     * @throws IOException if the archive cannot be read.
+     */
+    public static List<String> listEntries(File archive) throws IOException {
+        List<String> entries = new ArrayList<>();
+        try (FileSystem fileSystem = FileSystems.newFileSystem(archive.toPath());
+             Stream<Path> paths = Files.walk(fileSystem.getPath("/"))) {
+            paths.filter(Files::isRegularFile)
+                    .map(path -> path.toString().substring(1))
+                    .sorted()
+                    .forEach(entries::add);
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the name of the content, without a compression extension, e.g. {@code app.log} for
+     * {@code app.log.gz}. Used for the tab title and to pick the syntax style.
+     *
+     * @return the name.
+     */
+    public String getName() {
+        String name = entry != null ? entry.substring(entry.lastIndexOf('/') + 1) : container.getName();
+        return isCompressed(name) ? name.substring(0, name.lastIndexOf('.')) : name;
+    }
+
+    /**
+     * Returns a full description of where the content comes from, e.g. {@code /path/app.jar!/META-INF/MANIFEST.MF}.
+     *
+     * @return the display name.
+     */
+    public String getDisplayName() {
+        return entry != null ? container.getAbsolutePath() + "!/" + entry : container.getAbsolutePath();
+    }
+
+    /**
+     * Opens the content as a stream, decompressing it as it is read.
+     *
+     * @return the stream; closing it also closes the archive.
+     * @throws IOException if the file or entry cannot be opened.
+     */
+    public InputStream openStream() throws IOException {
+        if (entry == null) {
+            return new GZIPInputStream(Files.newInputStream(container.toPath()), BUFFER_SIZE);
+        }
+        FileSystem fileSystem = FileSystems.newFileSystem(container.toPath());
+        try {
+            InputStream in = new FilterInputStream(Files.newInputStream(fileSystem.getPath(entry))) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        fileSystem.close();
+                    }
+                }
+            };
+            return isCompressed(entry) ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+        } catch (IOException | RuntimeException e) {
+            fileSystem.close();
+            throw e;
+        }
+    }
+
+    private static boolean isCompressed(String name) {
+        return hasExtension(name, COMPRESSED_EXTENSIONS);
+    }
+}
@@ -53,7 +53,7 @@ public class Settings extends JDialog {
         colorThemeComboBox.addItem("Retro");
         colorThemeComboBox.setSelectedItem(com.github.an0nn30.jpad.settings.Settings.getInstance().getInterfaceTheme());
         colorThemeComboBox.addActionListener(e -> {
-//            EventBus.publish(EventType.THEME_CHANGED.name(), colorThemeComboBox.getSelectedItem(), this);
+//            EventBus.publish(EventKey.THEME_CHANGED, colorThemeComboBox.getSelectedItem(), this);
 
         });
 
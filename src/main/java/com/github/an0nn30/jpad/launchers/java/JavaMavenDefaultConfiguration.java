@@ -1,7 +1,7 @@
 package com.github.an0nn30.jpad.launchers.java;
 
 import com.github.an0nn30.jpad.event.EventBus;
-import com.github.an0nn30.jpad.event.EventType;
+import com.github.an0nn30.jpad.event.EventKey;
 import com.github.an0nn30.jpad.launchers.BaseTerminalLaunchConfiguration;
 import com.github.an0nn30.jpad.ui.EditorFrame;
 import javax.swing.JOptionPane;
@@ -31,7 +31,7 @@ public class JavaMavenDefaultConfiguration extends BaseTerminalLaunchConfigurati
 
     @Override
     public void execute() {
-        EventBus.publish(EventType.PROCESS_RUNNING.name(), this.name, this);
+        EventBus.publish(EventKey.PROCESS_RUNNING, this.name, this);
         // 1. Retrieve the project root directory.
         File projectRoot = editorFrame.getDirectoryTree().getRootDirectory();
 
@@ -0,0 +1,115 @@
+package com.github.an0nn30.jpad.settings;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The editor state saved when the last window is closed and restored at the next start:
+ * the project root directory, the files open in tabs with their caret positions, and the selected tab.
+ * The session is stored in session.json next to settings.json.
+ */
+public class Session {
+
+    private static final File SESSION_FILE = Settings.getSettingsFilePath("session.json").toFile();
+
+    private String rootDirectory;
+    private List<Tab> tabs = new ArrayList<>();
+    private int selectedIndex;
+
+    /**
+     * A file open in a tab.
+     */
+    public static class Tab {
+        private final String path;
+        private final int caretPosition;
+
+        /**
+         * Constructs a tab entry.
+         *
+         * @param file          the file open in the tab.
+         * @param caretPosition the caret offset in the file.
+         */
+        public Tab(File file, int caretPosition) {
+            this.path = file.getAbsolutePath();
+            this.caretPosition = caretPosition;
+        }
+
+        public File getFile() {
+            return new File(path);
+        }
+
+        public int getCaretPosition() {
+            return caretPosition;
+        }
+    }
+
+    /**
+     * Constructs a session.
+     *
+     * @param rootDirectory the project root directory, or null if none is open.
+     * @param tabs          the open tabs, in order.
+     * @param selectedIndex the index of the selected tab in {@code tabs}.
+     */
+    public Session(File rootDirectory, List<Tab> tabs, int selectedIndex) {
+        this.rootDirectory = rootDirectory != null ? rootDirectory.getAbsolutePath() : null;
+        this.tabs = tabs;
+        this.selectedIndex = selectedIndex;
+    }
+
+    /**
+     * Loads the saved session.
+     *
+     * @return the saved session, or null if there is none or it cannot be read.
+     */
+    public static Session load() {
+        if (!SESSION_FILE.exists()) {
+            return null;
+        }
+        try (FileReader reader = new FileReader(SESSION_FILE)) {
+            Session session = new Gson().fromJson(reader, Session.class);
+            if (session != null && session.tabs == null) {
+                session.tabs = new ArrayList<>();
+            }
+            return session;
+        } catch (IOException | JsonParseException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Writes this session to session.json, replacing the previous one.
+     */
+    public void save() {
+        try (FileWriter writer = new FileWriter(SESSION_FILE)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(this, writer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the project root directory.
+     *
+     * @return the root directory, or null if none was open.
+     */
+    public File getRootDirectory() {
+        return rootDirectory != null ? new File(rootDirectory) : null;
+    }
+
+    public List<Tab> getTabs() {
+        return tabs;
+    }
+
+    public int getSelectedIndex() {
+        return selectedIndex;
+    }
+}
@@ -1,7 +1,7 @@
 package com.github.an0nn30.jpad.settings;
 
 import com.github.an0nn30.jpad.event.EventBus;
-import com.github.an0nn30.jpad.event.EventType;
+import com.github.an0nn30.jpad.event.EventKey;
 import com.google.gson.*;
 
 import java.awt.*;
@@ -24,6 +24,11 @@ public class Settings {
     private String editorFontFamily = "Monospaced";
     private String interfaceFontFamily = "Monospaced";
     private String logLevel = "DEBUG";
+    private int largeFileThresholdMb = 64;
+    private int hibernateIdleMinutes = 30;
+    private int hibernateHeapPercent = 80;
+    private int followMaxLines = 10000;
+    private int searchTimeoutSeconds = 10;
 
     private static final File SETTINGS_FILE = getSettingsFilePath("settings.json").toFile();
 
@@ -110,6 +115,26 @@ public class Settings {
             s.interfaceFontFamily = defaults.interfaceFontFamily;
             updated = true;
         }
+        if (s.largeFileThresholdMb <= 0) {
+            s.largeFileThresholdMb = defaults.largeFileThresholdMb;
+            updated = true;
+        }
+        if (s.hibernateIdleMinutes < 0) {
+            s.hibernateIdleMinutes = defaults.hibernateIdleMinutes;
+            updated = true;
+        }
+        if (s.hibernateHeapPercent <= 0 || s.hibernateHeapPercent > 100) {
+            s.hibernateHeapPercent = defaults.hibernateHeapPercent;
+            updated = true;
+        }
+        if (s.followMaxLines <= 0) {
+            s.followMaxLines = defaults.followMaxLines;
+            updated = true;
+        }
+        if (s.searchTimeoutSeconds <= 0) {
+            s.searchTimeoutSeconds = defaults.searchTimeoutSeconds;
+            updated = true;
+        }
         // Additional validations can be added here if needed.
         return updated;
     }
@@ -157,7 +182,7 @@ public class Settings {
      */
     public void setInterfaceTheme(String theme) {
         if (!this.interfaceTheme.equalsIgnoreCase(theme)) {
-            EventBus.publish(EventType.THEME_CHANGED.name(), theme, null);
+            EventBus.publish(EventKey.THEME_CHANGED, theme, null);
             this.interfaceTheme = theme;
             saveSettings();
         }
@@ -170,7 +195,7 @@ public class Settings {
      */
     public void setEditorFontSize(int editorFontSize) {
         if (this.editorFontSize != editorFontSize) {
-            EventBus.publish(EventType.FONT_SIZE_CHANGED.name(), editorFontSize, null);
+            EventBus.publish(EventKey.FONT_SIZE_CHANGED, editorFontSize, null);
             this.editorFontSize = editorFontSize;
             saveSettings();
         }
@@ -183,7 +208,7 @@ public class Settings {
      */
     public void setEditorFontFamily(String editorFontFamily) {
         if (!this.editorFontFamily.equalsIgnoreCase(editorFontFamily)) {
-            EventBus.publish(EventType.FONT_FAMILY_CHANGED.name(), editorFontFamily, null);
+            EventBus.publish(EventKey.FONT_FAMILY_CHANGED, editorFontFamily, null);
             this.editorFontFamily = editorFontFamily;
             saveSettings();
         }
@@ -245,6 +270,62 @@ public class Settings {
         return logLevel;
     }
 
+    /**
+     * Returns the file size, in megabytes, above which files are opened in the
+     * read-only large-file viewer instead of being loaded into memory.
+     *
+     * @return the large-file threshold in megabytes.
+     */
+    public int getLargeFileThresholdMb() {
+        return largeFileThresholdMb;
+    }
+
+    /**
+     * Returns the large-file threshold in bytes.
+     *
+     * @return the large-file threshold in bytes.
+     */
+    public long getLargeFileThresholdBytes() {
+        return largeFileThresholdMb * 1024L * 1024L;
+    }
+
+    /**
+     * Returns how many minutes a tab may go unselected before it is hibernated.
+     * Zero disables idle hibernation.
+     *
+     * @return the idle time in minutes.
+     */
+    public int getHibernateIdleMinutes() {
+        return hibernateIdleMinutes;
+    }
+
+    /**
+     * Returns the percentage of the maximum heap above which all background tabs are hibernated.
+     *
+     * @return the heap usage threshold, from 1 to 100.
+     */
+    public int getHibernateHeapPercent() {
+        return hibernateHeapPercent;
+    }
+
+    /**
+     * Returns the number of lines a followed file keeps; older lines are dropped from the top.
+     *
+     * @return the maximum number of lines shown in follow mode.
+     */
+    public int getFollowMaxLines() {
+        return followMaxLines;
+    }
+
+    /**
+     * Returns how long a find or replace in one document may run before it is stopped.
+     *
+     * @return the search timeout in seconds.
+     */
+    public int getSearchTimeoutSeconds() {
+        return searchTimeoutSeconds;
+    }
+
     /**
      * Returns the path to the settings file.
      * The configuration directory is determined based on the operating system.
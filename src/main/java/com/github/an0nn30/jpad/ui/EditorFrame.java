@@ -1,9 +1,13 @@
 package com.github.an0nn30.jpad.ui;
 
 import com.github.an0nn30.jpad.autocomplete.SourceTreeRefresher;
+import com.github.an0nn30.jpad.event.Delivery;
 import com.github.an0nn30.jpad.event.EventBus;
-import com.github.an0nn30.jpad.event.EventType;
+import com.github.an0nn30.jpad.event.EventKey;
+import com.github.an0nn30.jpad.io.IoExecutors;
 import com.github.an0nn30.jpad.launchers.LaunchConfigManager;
+import com.github.an0nn30.jpad.logging.Logger;
+import com.github.an0nn30.jpad.settings.Session;
 import com.github.an0nn30.jpad.settings.Settings;
 import com.github.an0nn30.jpad.ui.components.DirectoryTree;
 import com.github.an0nn30.jpad.ui.components.TextArea;
@@ -32,9 +36,14 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.fife.ui.rsyntaxtextarea.SyntaxConstants.SYNTAX_STYLE_JAVA;
 
@@ -45,9 +54,17 @@ public class EditorFrame extends JFrame {
 
     // Keep track of all open editor windows.
     private static final List<EditorFrame> openFrames = new ArrayList<>();
+    // How long closing the last window waits for each kind of pending write.
+    private static final long FINISH_WRITES_TIMEOUT_MS = 30_000;
+    // How long an exit that bypasses the windows waits for the EDT to capture the session.
+    private static final long EXIT_SESSION_TIMEOUT_MS = 5_000;
+    private static boolean quitHandlersInstalled;
+    // Whether the session was saved since the last window was opened; guards against saving it twice on exit.
+    private static volatile boolean sessionSaved;
 
     private MainToolbar mainToolbar;
     private TextAreaTabManager textAreaTabManager;
+    private StatusPanel statusPanel;
     private JSplitPane projectEditorSplit;
     private JSplitPane editorTerminalSplit;
     private DirectoryTree directoryTree;
@@ -71,15 +88,7 @@ public class EditorFrame extends JFrame {
             this.createUntitledTab = false;
         }
        
-        // Add this frame to the list of open windows.
-        openFrames.add(this);
-        // When this window is closed, remove it from the list.
-        addWindowListener(new WindowAdapter() {
-            @Override
-            public void windowClosed(WindowEvent e) {
-                openFrames.remove(EditorFrame.this);
-            }
-        });
+        registerWindow();
         // Install a global key event dispatcher so that cmd+shift+, toggles the terminal view,
         // even if the terminal widget currently has focus.
         KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(e -> {
@@ -109,14 +118,7 @@ public class EditorFrame extends JFrame {
      */
     public EditorFrame() {
         super("Retro Edit");
-        // Add this frame to the list of open windows.
-        openFrames.add(this);
-        addWindowListener(new WindowAdapter() {
-            @Override
-            public void windowClosed(WindowEvent e) {
-                openFrames.remove(EditorFrame.this);
-            }
-        });
+        registerWindow();
         // Install a global key event dispatcher so that cmd+shift+, toggles the terminal view,
         // even if the terminal widget currently has focus.
         KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(e -> {
@@ -142,6 +144,84 @@ public class EditorFrame extends JFrame {
        	
     }
 
+    /**
+     * Adds this frame to the list of open windows and removes it again when it is closed. The last window to
+     * close saves the session and waits for pending writes before the application exits.
+     */
+    private void registerWindow() {
+        openFrames.add(this);
+        sessionSaved = false;
+        installQuitHandlers();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                openFrames.remove(EditorFrame.this);
+                // The last window to close defines the session restored at the next start.
+                if (openFrames.isEmpty()) {
+                    saveSession();
+                }
+                textAreaTabManager.dispose();
+                if (openFrames.isEmpty()) {
+                    // The I/O threads are daemons; don't exit in the middle of a save.
+                    IoExecutors.finishWrites(FINISH_WRITES_TIMEOUT_MS);
+                }
+            }
+        });
+    }
+
+    /**
+     * Makes quitting the application go through the same steps as closing its last window. Cmd+Q closes every
+     * window, the active one last so that it defines the session, before quitting. Any other exit, such as a
+     * signal, saves the session and waits for pending writes from a shutdown hook.
+     */
+    private static void installQuitHandlers() {
+        if (quitHandlersInstalled) {
+            return;
+        }
+        quitHandlersInstalled = true;
+        if (Desktop.isDesktopSupported() && Desktop.getDesktop().isSupported(Desktop.Action.APP_QUIT_HANDLER)) {
+            Desktop.getDesktop().setQuitHandler((event, response) -> SwingUtilities.invokeLater(() -> {
+                List<EditorFrame> frames = new ArrayList<>(openFrames);
+                Window active = KeyboardFocusManager.getCurrentKeyboardFocusManager().getActiveWindow();
+                if (active instanceof EditorFrame frame && frames.remove(frame)) {
+                    frames.add(frame);
+                }
+                frames.forEach(Window::dispose);
+                // Runs after the windowClosed events that the disposals have queued.
+                SwingUtilities.invokeLater(response::performQuit);
+            }));
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(EditorFrame::saveSessionOnExit, "session-exit"));
+    }
+
+    /**
+     * Saves the session of an exit that did not close the windows, unless it has already been saved, and waits
+     * for pending writes. Runs on a shutdown hook thread, so the session is captured on the EDT.
+     */
+    private static void saveSessionOnExit() {
+        if (!sessionSaved) {
+            CompletableFuture<Void> captured = new CompletableFuture<>();
+            SwingUtilities.invokeLater(() -> {
+                try {
+                    EditorFrame frame = getAnyOpenFrame();
+                    if (frame != null && !sessionSaved) {
+                        frame.saveSession();
+                    }
+                } finally {
+                    captured.complete(null);
+                }
+            });
+            try {
+                captured.get(EXIT_SESSION_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                Logger.getInstance().error(EditorFrame.class, "Could not save the session on exit: " + e);
+            }
+        }
+        IoExecutors.finishWrites(FINISH_WRITES_TIMEOUT_MS);
+    }
+
     /**
      * Initializes frame properties such as size and close operation.
      */
@@ -160,6 +240,7 @@ public class EditorFrame extends JFrame {
         launchConfigManager = new LaunchConfigManager(this);
         mainToolbar = new MainToolbar(this, launchConfigManager);
         textAreaTabManager = new TextAreaTabManager(this);
+        statusPanel = new StatusPanel(this);
         terminalTabManager = new TerminalTabManager(this);
         setJMenuBar(new MenuBar(this).getMenuBar());
         JTree dummy = new JTree((TreeNode) null);
@@ -289,21 +370,36 @@ public class EditorFrame extends JFrame {
             add(mainToolbar, BorderLayout.NORTH);
         }
         add(projectEditorSplit, BorderLayout.CENTER);
+        add(statusPanel, BorderLayout.SOUTH);
     }
 
     /**
-     * Registers event subscriptions for the frame.
+     * Registers event subscriptions for the frame. Tab and syntax updates come in bursts while typing or switching
+     * tabs, so the source tree and status panel are refreshed once per frame for them. The subscriptions end when
+     * the frame is closed, so a closed window and its documents are not kept alive by the event bus.
      */
     private void registerEventSubscriptions() {
-        EventBus.subscribe(EventType.TAB_UPDATED.name(), eventRecord -> {
+        EventBus.subscribe(EventKey.TAB_UPDATED, Delivery.COALESCED, eventRecord -> {
+            if (eventRecord.source() != textAreaTabManager) {
+                return;
+            }
             refreshSourceTree();
-            setTitle(eventRecord.data().toString());
-        });
-        EventBus.subscribe(EventType.SYNTAX_HIGHLIGHT_CHANGED.name(), eventRecord -> {
+            refreshStatusPanel();
+            setTitle(eventRecord.data());
+        }).bindTo(this);
+        EventBus.subscribe(EventKey.SYNTAX_HIGHLIGHT_CHANGED, Delivery.COALESCED, eventRecord -> {
             refreshSourceTree();
+        }).bindTo(this);
+        EventBus.subscribe(EventKey.THEME_CHANGED, eventRecord ->
+                ThemeManager.updateInterfaceTheme(this, eventRecord.data())).bindTo(this);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                // Reported once every listener of the closed window has been unsubscribed.
+                SwingUtilities.invokeLater(() -> Logger.getInstance().debug(EditorFrame.class,
+                        "Event subscribers after closing a window:\n" + EventBus.describeSubscribers()));
+            }
         });
-        EventBus.subscribe(EventType.THEME_CHANGED.name(), eventRecord ->
-                ThemeManager.updateInterfaceTheme(this, eventRecord.data()));
     }
 
     /**
@@ -372,6 +468,15 @@ public class EditorFrame extends JFrame {
         return openFrames.isEmpty() ? null : openFrames.get(0);
     }
 
+    /**
+     * Returns all open EditorFrames.
+     *
+     * @return an unmodifiable view of the open frames.
+     */
+    public static List<EditorFrame> getOpenFrames() {
+        return Collections.unmodifiableList(openFrames);
+    }
+
     /**
      * Toggles the visibility of the project view.
      */
@@ -384,7 +489,9 @@ public class EditorFrame extends JFrame {
         } else {
             // When collapsing, set a fixed minimal divider location.
             projectEditorSplit.setDividerLocation(1);
-            textAreaTabManager.getActiveTextArea().requestFocus();
+            if (textAreaTabManager.getActiveTextArea() != null) {
+                textAreaTabManager.getActiveTextArea().requestFocus();
+            }
         }
     }
 
@@ -403,7 +510,9 @@ public class EditorFrame extends JFrame {
         } else {
             // When collapsing, set divider location so that the top component occupies full height.
             editorTerminalSplit.setDividerLocation(editorTerminalSplit.getHeight() - editorTerminalSplit.getDividerSize());
-            textAreaTabManager.getActiveTextArea().requestFocus();
+            if (textAreaTabManager.getActiveTextArea() != null) {
+                textAreaTabManager.getActiveTextArea().requestFocus();
+            }
         }
     }
 
@@ -458,6 +567,46 @@ public class EditorFrame extends JFrame {
         refresher.refresh();
     }
 
+    /**
+     * Restores the project root and the tabs saved by the previous session, if there is one.
+     */
+    public void restoreSession() {
+        Session session = Session.load();
+        if (session == null) {
+            return;
+        }
+        File rootDirectory = session.getRootDirectory();
+        if (rootDirectory != null && rootDirectory.isDirectory()) {
+            directoryTree.setRootDirectory(rootDirectory);
+        }
+        textAreaTabManager.restoreSession(session);
+    }
+
+    private void saveSession() {
+        textAreaTabManager.captureSession(directoryTree.getRootDirectory()).save();
+        sessionSaved = true;
+    }
+
+    /**
+     * Shows search feedback, such as "Match 3 of 12", in the status bar.
+     *
+     * @param text the text to show, or an empty string to clear it.
+     */
+    public void showSearchStatus(String text) {
+        if (statusPanel != null) {
+            statusPanel.showSearchStatus(text);
+        }
+    }
+
+    /**
+     * Updates the status bar with the encoding and line separator of the active file.
+     */
+    public void refreshStatusPanel() {
+        if (statusPanel != null) {
+            statusPanel.showFileInfo(textAreaTabManager.getActiveTextArea());
+        }
+    }
+
     public boolean getIsTerminalToggled() {
         return isTerminalToggled;
     }
@@ -0,0 +1,183 @@
+package com.github.an0nn30.jpad.ui;
+
+import com.github.an0nn30.jpad.event.EventBus;
+import com.github.an0nn30.jpad.event.EventType;
+import com.github.an0nn30.jpad.event.ListenerStats;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A debug window with the {@link EventBus} statistics: how often each event type was published, and how often
+ * each listener was called and how long it took, the slowest in total first. The tables refresh every second
+ * while the window is shown.
+ */
+public class EventStatisticsDialog extends JDialog {
+
+    private static final int REFRESH_INTERVAL = 1000; // milliseconds
+
+    private final ListenerTableModel listenerModel = new ListenerTableModel();
+    private final PublishTableModel publishModel = new PublishTableModel();
+    private final Timer refreshTimer = new Timer(REFRESH_INTERVAL, e -> refresh());
+
+    /**
+     * Constructs the dialog.
+     *
+     * @param owner the editor frame the dialog belongs to.
+     */
+    public EventStatisticsDialog(EditorFrame owner) {
+        super(owner, "Event Bus Statistics", false);
+
+        JTable listenerTable = new JTable(listenerModel);
+        listenerTable.setAutoCreateRowSorter(true);
+        listenerTable.getColumnModel().getColumn(1).setPreferredWidth(260);
+        JTable publishTable = new JTable(publishModel);
+        publishTable.setAutoCreateRowSorter(true);
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+                new JScrollPane(listenerTable), new JScrollPane(publishTable));
+        split.setResizeWeight(0.7);
+
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            EventBus.resetStatistics();
+            refresh();
+        });
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> setVisible(false));
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(resetButton);
+        buttons.add(closeButton);
+
+        JPanel content = new JPanel(new BorderLayout(0, 8));
+        content.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        content.add(split, BorderLayout.CENTER);
+        content.add(buttons, BorderLayout.SOUTH);
+        setContentPane(content);
+        setSize(900, 500);
+        setLocationRelativeTo(owner);
+
+        // Only refresh while the window can be seen.
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                refresh();
+                refreshTimer.start();
+            }
+
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                refreshTimer.stop();
+            }
+        });
+    }
+
+    private void refresh() {
+        listenerModel.setStats(EventBus.getListenerStats());
+        publishModel.setCounts(EventBus.getPublishCounts());
+    }
+
+    /**
+     * One row per subscribed listener.
+     */
+    private static class ListenerTableModel extends AbstractTableModel {
+        private static final String[] COLUMNS = {
+                "Event", "Listener", "Delivery", "Calls", "Total (ms)", "Mean (µs)", "Median (µs)", "p99 (µs)", "Max (µs)"
+        };
+        private List<ListenerStats> stats = new ArrayList<>();
+
+        void setStats(List<ListenerStats> stats) {
+            this.stats = stats;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return stats.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return switch (column) {
+                case 0, 1, 2 -> String.class;
+                case 3 -> Long.class;
+                default -> Double.class;
+            };
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            ListenerStats stat = stats.get(row);
+            return switch (column) {
+                case 0 -> stat.getEventType().name();
+                case 1 -> stat.getListener();
+                case 2 -> stat.getDelivery().name();
+                case 3 -> stat.getCalls();
+                case 4 -> round(stat.getTotalMillis());
+                case 5 -> round(stat.getMeanMicros());
+                case 6 -> round(stat.getMedianMicros());
+                case 7 -> round(stat.getP99Micros());
+                default -> round(stat.getMaxMicros());
+            };
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 10) / 10.0;
+        }
+    }
+
+    /**
+     * One row per event type.
+     */
+    private static class PublishTableModel extends AbstractTableModel {
+        private final List<Map.Entry<EventType, Long>> counts = new ArrayList<>();
+
+        void setCounts(Map<EventType, Long> counts) {
+            this.counts.clear();
+            this.counts.addAll(counts.entrySet());
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return counts.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 2;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return column == 0 ? "Event" : "Published";
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? String.class : Long.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Map.Entry<EventType, Long> entry = counts.get(row);
+            return column == 0 ? entry.getKey().name() : entry.getValue();
+        }
+    }
+}
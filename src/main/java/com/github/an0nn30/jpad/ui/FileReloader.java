@@ -0,0 +1,160 @@
+package com.github.an0nn30.jpad.ui;
+
+import com.github.an0nn30.jpad.io.DirtyTracker;
+import com.github.an0nn30.jpad.io.DocumentLoader;
+import com.github.an0nn30.jpad.io.DocumentRegistry;
+import com.github.an0nn30.jpad.io.EditJournal;
+import com.github.an0nn30.jpad.io.FileChangeWatcher;
+import com.github.an0nn30.jpad.io.FileEncoding;
+import com.github.an0nn30.jpad.io.LineDiff;
+import com.github.an0nn30.jpad.logging.Logger;
+import com.github.an0nn30.jpad.ui.components.TextArea;
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultEditorKit;
+import javax.swing.text.Document;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reloads open documents whose files were changed by other programs.
+ * <p>
+ * Documents without unsaved changes are reloaded silently; for the others the user is asked first.
+ * The file is read on a background thread and only the lines that differ are replaced, as a single undoable
+ * edit, so the caret, folds and undo history of every view survive the reload.
+ * </p>
+ */
+class FileReloader {
+
+    private static final AtomicBoolean INSTALLED = new AtomicBoolean();
+    // Documents for which the reload question is currently shown.
+    private static final Set<Document> prompting = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private FileReloader() {
+    }
+
+    /**
+     * Starts reloading documents when the {@link FileChangeWatcher} reports their files as changed.
+     * Only the first call has an effect.
+     */
+    static void install() {
+        if (INSTALLED.compareAndSet(false, true)) {
+            FileChangeWatcher.addListener(FileReloader::onFileChanged);
+        }
+    }
+
+    private static void onFileChanged(File file) {
+        RSyntaxDocument document = DocumentRegistry.get(file);
+        if (document == null || !file.isFile()) {
+            return;
+        }
+        if (DirtyTracker.isDirty(document)) {
+            if (!prompting.add(document)) {
+                return;
+            }
+            try {
+                int choice = JOptionPane.showConfirmDialog(EditorFrame.getAnyOpenFrame(),
+                        file.getName() + " has been changed on disk.\nReload it and discard your unsaved changes?",
+                        "File Changed", JOptionPane.YES_NO_OPTION);
+                if (choice != JOptionPane.YES_OPTION) {
+                    return;
+                }
+            } finally {
+                prompting.remove(document);
+            }
+            reload(document, file, true);
+        } else {
+            reload(document, file, false);
+        }
+    }
+
+    /**
+     * Reads a file on a background thread and updates a document to its contents.
+     *
+     * @param document     the document showing the file.
+     * @param file         the file.
+     * @param discardEdits whether unsaved changes may be overwritten. If false and the document is edited
+     *                     while the file is read, the user is asked first.
+     */
+    static void reload(RSyntaxDocument document, File file, boolean discardEdits) {
+        String currentText;
+        try {
+            currentText = document.getText(0, document.getLength());
+        } catch (BadLocationException e) {
+            return;
+        }
+        new SwingWorker<Reload, Void>() {
+            @Override
+            protected Reload doInBackground() throws IOException, BadLocationException {
+                RSyntaxDocument loaded;
+                try (FileChannel channel = FileChannel.open(file.toPath())) {
+                    loaded = DocumentLoader.load(channel, null);
+                }
+                String text = loaded.getText(0, loaded.getLength());
+                return new Reload(loaded, LineDiff.compute(currentText, text));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    // The edits only fit the text they were computed from; start over if it was edited meanwhile.
+                    if (document.getLength() != currentText.length()
+                            || !document.getText(0, document.getLength()).equals(currentText)) {
+                        if (discardEdits) {
+                            reload(document, file, true);
+                        } else {
+                            onFileChanged(file);
+                        }
+                        return;
+                    }
+                    applyReload(document, file, get());
+                } catch (InterruptedException | ExecutionException | BadLocationException e) {
+                    Logger.getInstance().error(FileReloader.class, "Error reloading " + file + ": " + e.getMessage());
+                    JOptionPane.showMessageDialog(EditorFrame.getAnyOpenFrame(), "Error reloading file: " + file.getName(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    private static void applyReload(RSyntaxDocument document, File file, Reload reload) throws BadLocationException {
+        RSyntaxDocument loaded = reload.document();
+        TextArea view = TextAreaTabManager.findView(document);
+        if (view != null) {
+            view.beginAtomicEdit();
+        }
+        try {
+            LineDiff.apply(document, reload.edits());
+        } finally {
+            if (view != null) {
+                view.endAtomicEdit();
+            }
+        }
+        document.putProperty(DefaultEditorKit.EndOfLineStringProperty,
+                loaded.getProperty(DefaultEditorKit.EndOfLineStringProperty));
+        document.putProperty(FileEncoding.PROPERTY, loaded.getProperty(FileEncoding.PROPERTY));
+        document.putProperty(DocumentLoader.REPLACED_PROPERTY, loaded.getProperty(DocumentLoader.REPLACED_PROPERTY));
+        EditJournal journal = EditJournal.of(document);
+        if (journal != null) {
+            journal.checkpoint(file, journal.getSequence());
+        }
+        FileChangeWatcher.acknowledge(file);
+        DirtyTracker tracker = DirtyTracker.attach(document);
+        tracker.markSaved(tracker.savePoint());
+    }
+
+    /**
+     * A freshly read file together with the edits that bring the open document up to date with it.
+     */
+    private record Reload(RSyntaxDocument document, List<LineDiff.Edit> edits) {
+    }
+}
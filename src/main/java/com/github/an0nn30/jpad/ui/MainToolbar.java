@@ -9,13 +9,11 @@ import com.github.an0nn30.jpad.ui.components.Panel;
 import com.github.an0nn30.jpad.ui.components.TextArea;
 import com.github.an0nn30.jpad.ui.theme.ThemeManager;
 import com.github.an0nn30.jpad.ui.utils.FileUtils;
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.Optional;
 
 /**
@@ -190,20 +188,15 @@ public class MainToolbar extends Panel {
     }
 
     /**
-     * Refreshes the active file in the currently selected tab by re-reading its content.
+     * Refreshes the active file in the currently selected tab by re-reading its content. Only the lines that
+     * changed on disk are replaced, so the caret, folds and undo history are kept.
      */
     private void refreshActiveFile() {
         TextArea textArea = editorFrame.getTabManager().getActiveTextArea();
-        if (textArea == null) return;
+        // Large-file viewers are read-only and always show the mapped file.
+        if (textArea == null || !textArea.isEditable()) return;
         File file = textArea.getActiveFile();
         if (file == null) return;
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            textArea.read(reader, null);
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(editorFrame,
-                    "Error refreshing file",
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE);
-        }
+        FileReloader.reload((RSyntaxDocument) textArea.getDocument(), file, true);
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.github.an0nn30.jpad.ui;
 
+import com.github.an0nn30.jpad.ui.search.FindInFilesDialog;
 import com.github.an0nn30.jpad.ui.search.ProjectFileSearchDialog;
 import com.github.an0nn30.jpad.jforms.AboutDialog;
 import com.github.an0nn30.jpad.jforms.Settings;
@@ -20,6 +21,7 @@ public class MenuBar {
 
     private final JMenuBar menuBar;
     private final EditorFrame editorFrame;
+    private EventStatisticsDialog eventStatisticsDialog;
 
     /**
      * Constructs a MenuBar for the given EditorFrame.
@@ -121,8 +123,11 @@ public class MenuBar {
                         "Warning",
                         JOptionPane.WARNING_MESSAGE);
             } else {
-                tabbedPane.closeCurrentTab();
-                tabbedPane.addNewTab("Untitled", null);
+                tabbedPane.closeCurrentTab().thenAccept(closed -> {
+                    if (closed) {
+                        tabbedPane.addNewTab("Untitled", null);
+                    }
+                });
             }
         }
     }
@@ -181,6 +186,22 @@ public class MenuBar {
                 e -> editorFrame.getTabManager().nextTab());
         viewMenu.add(nextTab);
 
+        // Follow File menu item: tails the current file as it grows, or returns it to the editor.
+        JMenuItem followFile = createMenuItem("Follow File",
+                KeyStroke.getKeyStroke(KeyEvent.VK_F,
+                        Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx() | InputEvent.ALT_DOWN_MASK),
+                e -> editorFrame.getTabManager().toggleFollow());
+        viewMenu.add(followFile);
+
+        // Event Bus Statistics menu item: shows how often events fire and how long their listeners take.
+        viewMenu.addSeparator();
+        viewMenu.add(createMenuItem("Event Bus Statistics", null, e -> {
+            if (eventStatisticsDialog == null) {
+                eventStatisticsDialog = new EventStatisticsDialog(editorFrame);
+            }
+            eventStatisticsDialog.setVisible(true);
+        }));
+
         return viewMenu;
     }
 
@@ -200,6 +221,10 @@ public class MenuBar {
                 KeyStroke.getKeyStroke(KeyEvent.VK_F, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx() | InputEvent.SHIFT_DOWN_MASK),
                 e -> new ProjectFileSearchDialog(editorFrame).setVisible(true));
         editMenu.add(searchProjectItem);
+        JMenuItem findInFilesItem = createMenuItem("Find in Files...",
+                KeyStroke.getKeyStroke(KeyEvent.VK_H, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx() | InputEvent.SHIFT_DOWN_MASK),
+                e -> new FindInFilesDialog(editorFrame).setVisible(true));
+        editMenu.add(findInFilesItem);
 
         return editMenu;
     }
@@ -3,9 +3,12 @@ package com.github.an0nn30.jpad.ui;
 import com.formdev.flatlaf.extras.FlatSVGIcon;
 import com.github.an0nn30.jpad.event.EventRecord;
 import com.github.an0nn30.jpad.settings.Constants;
+import com.github.an0nn30.jpad.event.Delivery;
 import com.github.an0nn30.jpad.event.EventBus;
-import com.github.an0nn30.jpad.event.EventType;
+import com.github.an0nn30.jpad.event.EventKey;
+import com.github.an0nn30.jpad.io.FileEncoding;
 import com.github.an0nn30.jpad.ui.components.Panel;
+import com.github.an0nn30.jpad.ui.components.TextArea;
 import com.github.an0nn30.jpad.ui.theme.ThemeManager;
 
 import javax.swing.*;
@@ -14,12 +17,15 @@ import java.util.Map;
 
 /**
  * StatusPanel represents the status bar at the bottom of the editor.
- * It displays UI controls such as a terminal toggle button and a file type selector.
+ * It displays UI controls such as a terminal toggle button and a file type selector,
+ * along with the encoding and line separator of the active file and the position among the matches of a find.
  * This class extends the custom {@link Panel} class for a consistent layout.
  */
 public class StatusPanel extends Panel {
 
     private final EditorFrame editorFrame;
+    private final JLabel fileInfoLabel = new JLabel();
+    private final JLabel searchStatusLabel = new JLabel();
     // Tracks the visibility of the status panel.
     private boolean visible = true;
 
@@ -41,6 +47,10 @@ public class StatusPanel extends Panel {
 
         // Create a right toolbar for the file type selection combo box.
         JToolBar rightToolBar = createToolBar();
+        rightToolBar.add(searchStatusLabel);
+        rightToolBar.add(Box.createHorizontalStrut(12));
+        rightToolBar.add(fileInfoLabel);
+        rightToolBar.addSeparator();
         rightToolBar.add(createFileTypeComboBox());
 
         // Add the toolbars to the status panel.
@@ -94,16 +104,17 @@ public class StatusPanel extends Panel {
         }
         // Publish a syntax highlight change when a new file type is selected.
         comboBox.addActionListener(e ->
-                EventBus.publish(EventType.SYNTAX_HIGHLIGHT_CHANGED.name(),
+                EventBus.publish(EventKey.SYNTAX_HIGHLIGHT_CHANGED,
                         Constants.supportedFileTypes.get(comboBox.getSelectedItem()), comboBox));
 
-        // Subscribe to syntax highlight changes from other components.
-        EventBus.subscribe(EventType.SYNTAX_HIGHLIGHT_CHANGED.name(), (EventRecord<Object> eventRecord) -> {
+        // Subscribe to syntax highlight changes from other components, for as long as the combo box exists.
+        EventBus.subscribeWeakly(EventKey.SYNTAX_HIGHLIGHT_CHANGED, comboBox, Delivery.SAME_THREAD,
+                (JComboBox<String> box, EventRecord<String> eventRecord) -> {
             // Avoid processing events that originated from this combo box.
-            if (!eventRecord.source().equals(comboBox)) {
+            if (!eventRecord.source().equals(box)) {
                 for (Map.Entry<String, String> entry : Constants.supportedFileTypes.entrySet()) {
                     if (entry.getValue().equals(eventRecord.data())) {
-                        comboBox.setSelectedItem(entry.getKey());
+                        box.setSelectedItem(entry.getKey());
                     }
                 }
             }
@@ -111,6 +122,29 @@ public class StatusPanel extends Panel {
         return comboBox;
     }
 
+    /**
+     * Shows the encoding and line separator of the given text area's document, e.g. "UTF-8 · CRLF".
+     *
+     * @param textArea the active text area, or null to clear the indicator.
+     */
+    public void showFileInfo(TextArea textArea) {
+        if (textArea == null) {
+            fileInfoLabel.setText("");
+            return;
+        }
+        FileEncoding encoding = FileEncoding.of(textArea.getDocument());
+        fileInfoLabel.setText(encoding.displayName() + " · " + FileEncoding.lineSeparatorName(textArea.getDocument()));
+    }
+
+    /**
+     * Shows search feedback, e.g. "Match 17 of 2,341".
+     *
+     * @param text the text to show, or an empty string to clear it.
+     */
+    public void showSearchStatus(String text) {
+        searchStatusLabel.setText(text);
+    }
+
     /**
      * Toggles the visibility of the status panel.
      * <p>
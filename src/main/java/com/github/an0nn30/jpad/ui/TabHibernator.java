@@ -0,0 +1,131 @@
+package com.github.an0nn30.jpad.ui;
+
+import com.github.an0nn30.jpad.logging.Logger;
+import com.github.an0nn30.jpad.settings.Settings;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.swing.*;
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decides when the tabs of a {@link TextAreaTabManager} are hibernated.
+ * <p>
+ * A tab is hibernated once it has gone unselected for {@link Settings#getHibernateIdleMinutes()} minutes.
+ * When the heap, measured after garbage collection, crosses {@link Settings#getHibernateHeapPercent()} percent
+ * of its maximum, every tab except the selected one is hibernated at once. The heap threshold is set on the
+ * JVM's heap {@link MemoryPoolMXBean}s, which notify as soon as it is crossed.
+ * </p>
+ */
+class TabHibernator {
+
+    private static final int CHECK_INTERVAL_MS = 60_000;
+    private static final AtomicBoolean THRESHOLD_INSTALLED = new AtomicBoolean();
+
+    private final TextAreaTabManager tabManager;
+    private final Map<Component, Long> lastSelected = new WeakHashMap<>();
+    private final Timer timer;
+    private final NotificationListener memoryListener;
+
+    /**
+     * Starts watching the tabs of the given tab manager.
+     *
+     * @param tabManager the tab manager whose tabs are hibernated.
+     */
+    TabHibernator(TextAreaTabManager tabManager) {
+        this.tabManager = tabManager;
+        installHeapThreshold();
+        memoryListener = this::onMemoryNotification;
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(memoryListener, null, null);
+        timer = new Timer(CHECK_INTERVAL_MS, e -> hibernateIdleTabs());
+        timer.start();
+    }
+
+    private static void installHeapThreshold() {
+        if (!THRESHOLD_INSTALLED.compareAndSet(false, true)) {
+            return;
+        }
+        int percent = Settings.getInstance().getHibernateHeapPercent();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                pool.setCollectionUsageThreshold(max / 100 * percent);
+            }
+        }
+    }
+
+    private void onMemoryNotification(Notification notification, Object handback) {
+        if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+            SwingUtilities.invokeLater(this::hibernateBackgroundTabs);
+        }
+    }
+
+    /**
+     * Records that the given tab component was just selected.
+     *
+     * @param component the selected tab component.
+     */
+    void touch(Component component) {
+        if (component != null) {
+            lastSelected.put(component, System.currentTimeMillis());
+        }
+    }
+
+    private void hibernateIdleTabs() {
+        if (isHeapOverThreshold()) {
+            hibernateBackgroundTabs();
+            return;
+        }
+        int idleMinutes = Settings.getInstance().getHibernateIdleMinutes();
+        if (idleMinutes == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long cutoff = now - idleMinutes * 60_000L;
+        for (int i = 0; i < tabManager.getTabCount(); i++) {
+            // Tabs that have never been selected start their idle time at the first check.
+            long selected = lastSelected.computeIfAbsent(tabManager.getComponentAt(i), c -> now);
+            if (selected < cutoff) {
+                tabManager.hibernateTab(i);
+            }
+        }
+    }
+
+    private void hibernateBackgroundTabs() {
+        Logger.getInstance().info(TabHibernator.class, "Heap usage above threshold, hibernating background tabs");
+        for (int i = 0; i < tabManager.getTabCount(); i++) {
+            tabManager.hibernateTab(i);
+        }
+    }
+
+    private static boolean isHeapOverThreshold() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()
+                    && pool.getCollectionUsageThreshold() > 0 && pool.isCollectionUsageThresholdExceeded()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops the idle timer and the memory listener, e.g. when the window is closed.
+     */
+    void dispose() {
+        timer.stop();
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(memoryListener);
+        } catch (ListenerNotFoundException e) {
+            // Already removed.
+        }
+    }
+}
@@ -2,19 +2,56 @@ package com.github.an0nn30.jpad.ui;
 
 import com.formdev.flatlaf.extras.FlatSVGIcon;
 import com.github.an0nn30.jpad.event.EventBus;
-import com.github.an0nn30.jpad.event.EventType;
+import com.github.an0nn30.jpad.event.EventKey;
+import com.github.an0nn30.jpad.event.Subscription;
+import com.github.an0nn30.jpad.io.AtomicFileWriter;
+import com.github.an0nn30.jpad.io.DirtyTracker;
+import com.github.an0nn30.jpad.io.DocumentLoader;
+import com.github.an0nn30.jpad.io.DocumentRegistry;
+import com.github.an0nn30.jpad.io.EditJournal;
+import com.github.an0nn30.jpad.io.EncodingDetector;
+import com.github.an0nn30.jpad.io.FileEncoding;
+import com.github.an0nn30.jpad.io.IoExecutors;
+import com.github.an0nn30.jpad.io.SpillFile;
+import com.github.an0nn30.jpad.io.VirtualFile;
+import com.github.an0nn30.jpad.io.LargeFileIndex;
+import com.github.an0nn30.jpad.io.MappedFile;
 import com.github.an0nn30.jpad.logging.Logger;
+import com.github.an0nn30.jpad.settings.Session;
 import com.github.an0nn30.jpad.settings.Settings;
+import com.github.an0nn30.jpad.ui.components.FollowViewer;
+import com.github.an0nn30.jpad.ui.components.HexViewer;
+import com.github.an0nn30.jpad.ui.components.LargeFileViewer;
+import com.github.an0nn30.jpad.ui.components.StreamViewer;
+import com.github.an0nn30.jpad.ui.components.LoadingPanel;
+import com.github.an0nn30.jpad.ui.components.TabPlaceholder;
 import com.github.an0nn30.jpad.ui.components.TextArea;
 import com.github.an0nn30.jpad.ui.theme.ThemeManager;
 import com.github.an0nn30.jpad.ui.utils.FileUtils;
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
 import org.fife.ui.rtextarea.RTextScrollPane;
 
 import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultEditorKit;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
 import java.awt.*;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
+import java.awt.geom.Rectangle2D;
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Manages tabs within the editor. Each tab contains a {@link TextArea} for editing text files.
@@ -23,16 +60,31 @@ import java.io.*;
 public class TextAreaTabManager extends BaseTabManager<TextArea> {
 
     private final EditorFrame editorFrame;
+    private final TabHibernator hibernator;
+    private final Subscription tabUpdateSubscription;
+    // Set while session tabs are added, so that selecting them does not load each one.
+    private boolean restoringSession;
     private static final Icon TAB_ICON = loadTabIcon();
+    // Files at least this large are loaded on a background thread with a progress indicator.
+    private static final long ASYNC_OPEN_THRESHOLD = 1024 * 1024;
+    private static final String DIRTY_LISTENER_PROPERTY = "dirtyListener";
 
     public TextAreaTabManager(EditorFrame editorFrame) {
         super(SwingConstants.TOP);
         this.editorFrame = editorFrame;
-        subscribeToTabUpdateEvents();
+        tabUpdateSubscription = subscribeToTabUpdateEvents();
+        hibernator = new TabHibernator(this);
+        FileReloader.install();
+        setTransferHandler(new FileDropHandler());
 
-        // When switching tabs, refresh the source tree using the active TextArea.
+        // When switching tabs, restore a hibernated tab and refresh the source tree using the active TextArea.
         addChangeListener(e -> {
+            if (!restoringSession && getSelectedComponent() instanceof TabPlaceholder) {
+                rehydrateTab(getSelectedIndex());
+            }
+            hibernator.touch(getSelectedComponent());
             editorFrame.refreshSourceTree();
+            editorFrame.refreshStatusPanel();
             TextArea activeTextArea = getActiveTextArea();
             if (activeTextArea != null) {
                 File currentFile = FileUtils.getCurrentFile(activeTextArea);
@@ -53,64 +105,52 @@ public class TextAreaTabManager extends BaseTabManager<TextArea> {
         }
     }
 
-    private void subscribeToTabUpdateEvents() {
-        EventBus.subscribe(EventType.TAB_UPDATED.name(), event ->
-                setTitleAt(getSelectedIndex(), event.data().toString()));
+    private Subscription subscribeToTabUpdateEvents() {
+        // Only this window's own updates rename its selected tab; other windows may show the same document.
+        return EventBus.subscribe(EventKey.TAB_UPDATED, event -> {
+            if (event.source() == this && getSelectedIndex() >= 0) {
+                setTitleAt(getSelectedIndex(), event.data());
+            }
+        });
     }
 
     /**
      * Creates a new TextArea with theme and configuration applied.
      */
     private TextArea createTextArea() {
-        TextArea textArea = new TextArea(editorFrame);
-        applyTheme(textArea);
-        configureTextArea(textArea);
-        return textArea;
+        return createTextArea(null);
     }
 
-    private void applyTheme(TextArea textArea) {
-        String interfaceTheme = Settings.getInstance().getInterfaceTheme();
-        String themePath = "/org/fife/ui/rsyntaxtextarea/themes/idea.xml"; // default
-
-        if (interfaceTheme.equalsIgnoreCase("dark")) {
-            themePath = "/org/fife/ui/rsyntaxtextarea/themes/monokai.xml";
-        }
-        try (InputStream is = getClass().getResourceAsStream(themePath)) {
-            if (is != null) {
-                org.fife.ui.rsyntaxtextarea.Theme theme = org.fife.ui.rsyntaxtextarea.Theme.load(is);
-                theme.apply(textArea);
-            } else {
-                Logger.getInstance().error(getClass(), "Theme resource not found: " + themePath);
-            }
-        } catch (IOException e) {
-            Logger.getInstance().error(getClass(), "Error loading theme: " + e.getMessage());
+    /**
+     * Creates a new TextArea for the given, already loaded document (or a new empty one if null)
+     * with theme and configuration applied.
+     */
+    private TextArea createTextArea(RSyntaxDocument document) {
+        TextArea textArea = new TextArea(editorFrame);
+        if (document != null) {
+            textArea.setDocument(document);
         }
+        configureTextArea(textArea);
+        return textArea;
     }
 
     private void configureTextArea(TextArea textArea) {
         textArea.setCodeFoldingEnabled(true);
         textArea.initFontSizeAndFamily();
-        attachModificationListener(textArea);
 
         Font font = textArea.getFont();
         textArea.setFont(new Font(font.getName(), font.getStyle(), Settings.getInstance().getEditorFontSize()));
     }
 
-    private void attachModificationListener(TextArea textArea) {
-        textArea.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
-            @Override
-            public void insertUpdate(javax.swing.event.DocumentEvent e) {
-                markModified();
-            }
-            @Override
-            public void removeUpdate(javax.swing.event.DocumentEvent e) {
-                markModified();
-            }
-            @Override
-            public void changedUpdate(javax.swing.event.DocumentEvent e) {
-                markModified();
-            }
-        });
+    /**
+     * Keeps the "*" in the text area's tab title in step with its document's {@link DirtyTracker}, which only
+     * notifies when the document becomes dirty or clean. The document may be shared with other views, so the
+     * listener is kept on the text area and removed again in {@link #releaseTextArea}.
+     */
+    private void attachDirtyListener(TextArea textArea) {
+        Runnable listener = () -> refreshTitle(textArea);
+        DirtyTracker.attach(textArea.getDocument()).addChangeListener(listener);
+        textArea.putClientProperty(DIRTY_LISTENER_PROPERTY, listener);
     }
 
     /**
@@ -118,19 +158,32 @@ public class TextAreaTabManager extends BaseTabManager<TextArea> {
      */
     @Override
     protected void addComponentTab(String title, TextArea textArea) {
-        // Attach a focus listener to update the last-focused TextArea.
+        addTab(title, TAB_ICON, createScrollPane(textArea), null);
+        setSelectedIndex(getTabCount() - 1);
+        EventBus.publish(EventKey.TAB_UPDATED, title, this);
+    }
+
+    /**
+     * Wraps a TextArea in a scroll pane, attaching a focus listener that updates the last-focused TextArea,
+     * an {@link EditJournal} that records its edits for crash recovery and a {@link DirtyTracker} listener
+     * that marks its tab as modified. The TextArea's current file must already be set.
+     */
+    private JScrollPane createScrollPane(TextArea textArea) {
+        trackFocus(textArea);
+        EditJournal.attach(textArea.getDocument(), FileUtils.getCurrentFile(textArea));
+        attachDirtyListener(textArea);
+        JScrollPane scrollPane = new RTextScrollPane(textArea);
+        scrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
+        return scrollPane;
+    }
+
+    private void trackFocus(TextArea textArea) {
         textArea.addFocusListener(new FocusAdapter() {
             @Override
             public void focusGained(FocusEvent e) {
                 lastFocusedComponent = textArea;
             }
         });
-        // Wrap the TextArea in a scroll pane.
-        JScrollPane scrollPane = new RTextScrollPane(textArea);
-        scrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
-        addTab(title, TAB_ICON, scrollPane, null);
-        setSelectedIndex(getTabCount() - 1);
-        EventBus.publish(EventType.TAB_UPDATED.name(), title, this);
     }
 
     /**
@@ -138,11 +191,35 @@ public class TextAreaTabManager extends BaseTabManager<TextArea> {
      * If the selected component is a scroll pane, its viewport is unwrapped.
      */
     public TextArea getActiveTextArea() {
-        Component comp = getSelectedComponent();
+        TextArea textArea = textAreaOf(getSelectedComponent());
+        return textArea != null ? textArea : lastFocusedComponent;
+    }
+
+    /**
+     * Returns the large-file viewer in the currently selected tab, or null if the tab holds a regular editor.
+     */
+    public LargeFileViewer getActiveLargeFileViewer() {
+        return getSelectedComponent() instanceof LargeFileViewer viewer ? viewer : null;
+    }
+
+    /**
+     * Unwraps the TextArea held by a tab component, which is either a scroll pane, a large-file viewer,
+     * a follow viewer or a stream viewer.
+     */
+    private TextArea textAreaOf(Component comp) {
         if (comp instanceof JScrollPane scrollPane) {
             return (TextArea) scrollPane.getViewport().getView();
         }
-        return lastFocusedComponent;
+        if (comp instanceof LargeFileViewer viewer) {
+            return viewer.getTextArea();
+        }
+        if (comp instanceof FollowViewer viewer) {
+            return viewer.getTextArea();
+        }
+        if (comp instanceof StreamViewer viewer) {
+            return viewer.getTextArea();
+        }
+        return null;
     }
 
     /**
@@ -155,27 +232,201 @@ public class TextAreaTabManager extends BaseTabManager<TextArea> {
         addComponentTab(title, textArea);
     }
 
-    public void markModified() {
-        int index = getSelectedIndex();
+    /**
+     * Adds or removes the "*" in a text area's tab title according to whether its document is dirty.
+     */
+    private void refreshTitle(TextArea textArea) {
+        int index = indexOfTextArea(textArea);
         if (index != -1) {
             String title = getTitleAt(index);
-            if (!title.startsWith("*")) {
-                String newTitle = "*" + title;
+            String name = title.startsWith("*") ? title.substring(1) : title;
+            String newTitle = DirtyTracker.isDirty(textArea.getDocument()) ? "*" + name : name;
+            if (!newTitle.equals(title)) {
                 setTitleAt(index, newTitle);
-                EventBus.publish(EventType.TAB_UPDATED.name(), newTitle, this);
+                if (index == getSelectedIndex()) {
+                    EventBus.publish(EventKey.TAB_UPDATED, newTitle, this);
+                }
             }
         }
     }
 
     public void openFile(File file) {
         if (file == null) return;
-        if (!confirmSaveIfNeeded()) return;
-        if (checkAndSelectIfFileAlreadyOpen(file)) return;
-        openFileInNewTab(file);
-        requestFocusOnActiveTextArea();
-        if (editorFrame.getDirectoryTree() != null
-                && editorFrame.getDirectoryTree().getRootDirectory() != null) {
-            editorFrame.getDirectoryTree().selectFile(file);
+        confirmSaveIfNeeded().thenAccept(confirmed -> {
+            if (!confirmed || checkAndSelectIfFileAlreadyOpen(file)) return;
+            openFileInNewTab(file);
+            requestFocusOnActiveTextArea();
+            if (editorFrame.getDirectoryTree() != null
+                    && editorFrame.getDirectoryTree().getRootDirectory() != null) {
+                editorFrame.getDirectoryTree().selectFile(file);
+            }
+        });
+    }
+
+    /**
+     * Opens a file, or selects its tab, and selects a range given by line and column, e.g. a search result.
+     * The range is not selected if the file opens in the background or in a viewer.
+     *
+     * @param file   the file.
+     * @param line   the 0-based line of the range.
+     * @param column the column at which the range starts.
+     * @param length the length of the range.
+     */
+    public void openFileAt(File file, int line, int column, int length) {
+        openFile(file);
+        TextArea textArea = textAreaOf(getSelectedComponent());
+        File openFile = textArea != null ? FileUtils.getCurrentFile(textArea) : null;
+        if (openFile == null || !filesAreEqual(openFile, file) || !(getSelectedComponent() instanceof JScrollPane)) {
+            return;
+        }
+        Element root = textArea.getDocument().getDefaultRootElement();
+        if (line >= root.getElementCount()) {
+            return;
+        }
+        int documentLength = textArea.getDocument().getLength();
+        int start = Math.min(root.getElement(line).getStartOffset() + column, documentLength);
+        textArea.setCaretPosition(start);
+        textArea.moveCaretPosition(Math.min(start + length, documentLength));
+        textArea.requestFocusInWindow();
+    }
+
+    /**
+     * Opens several files at once, e.g. from the command line or a drop. Regular text files are read and
+     * decoded in parallel on the {@link IoExecutors#read() read executor}, and their tabs are then added in
+     * one pass on the EDT; files that are already open are selected instead of being opened again.
+     * Large, compressed, archived and binary files, and files that do not exist yet, go through
+     * {@link #openFile(File)}'s usual path.
+     *
+     * @param files the files to open, in the order their tabs should appear.
+     */
+    public void openFiles(List<File> files) {
+        if (files.size() == 1) {
+            openFile(files.get(0));
+            return;
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        (shouldReplaceCurrentTab() ? confirmSaveIfNeeded() : CompletableFuture.completedFuture(true))
+                .thenAccept(confirmed -> {
+                    if (confirmed) {
+                        readBatch(files);
+                    }
+                });
+    }
+
+    /**
+     * Reads the files of a batch open on the read threads and adds them with {@link #addBatch} once all are read.
+     */
+    private void readBatch(List<File> files) {
+        // Files that would open with a progress indicator on their own still do, so one big file does not
+        // hold back the tabs of all the others.
+        long directReadLimit = Math.min(ASYNC_OPEN_THRESHOLD, Settings.getInstance().getLargeFileThresholdBytes());
+        List<CompletableFuture<BatchFile>> reads = new ArrayList<>(files.size());
+        for (File file : files) {
+            reads.add(CompletableFuture.supplyAsync(() -> readBatchFile(file, directReadLimit), IoExecutors.read()));
+        }
+        CompletableFuture.allOf(reads.toArray(new CompletableFuture[0])).thenRunAsync(() -> {
+            List<BatchFile> batch = new ArrayList<>(reads.size());
+            reads.forEach(read -> batch.add(read.join()));
+            addBatch(batch);
+        }, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * A file of a batch open, with its canonical path and its document if it could be read in the background.
+     *
+     * @param file     the file.
+     * @param path     the file's canonical path, used to find tabs that already show it.
+     * @param document the loaded document, or null if the file must be opened through the regular path.
+     */
+    private record BatchFile(File file, String path, RSyntaxDocument document) {
+    }
+
+    /**
+     * Reads a file of a batch open. Called on the read executor.
+     */
+    private static BatchFile readBatchFile(File file, long directReadLimit) {
+        String path = canonicalPath(file);
+        if (!file.isFile() || file.length() >= directReadLimit
+                || VirtualFile.isCompressed(file) || VirtualFile.isArchive(file)) {
+            return new BatchFile(file, path, null);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            if (EncodingDetector.isBinary(channel)) {
+                return new BatchFile(file, path, null);
+            }
+            return new BatchFile(file, path, DocumentLoader.load(channel, null));
+        } catch (IOException e) {
+            // The regular open path reports the error.
+            return new BatchFile(file, path, null);
+        }
+    }
+
+    /**
+     * Adds the tabs of a batch open. Tabs already showing a file are found through one map of canonical paths,
+     * built once for the whole batch, and only the last tab is selected and announced.
+     */
+    private void addBatch(List<BatchFile> batch) {
+        Map<String, Integer> openTabs = new HashMap<>();
+        for (int i = 0; i < getTabCount(); i++) {
+            File openFile = fileOf(getComponentAt(i));
+            if (openFile != null) {
+                openTabs.putIfAbsent(canonicalPath(openFile), i);
+            }
+        }
+        Set<String> seen = new HashSet<>();
+        int selectedIndex = -1;
+        for (BatchFile entry : batch) {
+            File file = entry.file();
+            if (file.isDirectory() || !seen.add(entry.path())) {
+                continue;
+            }
+            Integer openIndex = openTabs.get(entry.path());
+            if (openIndex != null) {
+                selectedIndex = openIndex;
+                continue;
+            }
+            if (entry.document() == null) {
+                openFileInNewTab(file);
+                selectedIndex = getSelectedIndex();
+                continue;
+            }
+            // Another window may have opened the file while it was being read.
+            RSyntaxDocument document = DocumentRegistry.acquire(file);
+            if (document == null) {
+                document = entry.document();
+                DocumentRegistry.register(file, document);
+            }
+            TextArea textArea = createTextArea(document);
+            textArea.setActiveFile(file);
+            FileUtils.setCurrentFile(textArea, file);
+            String title = DirtyTracker.isDirty(document) ? "*" + file.getName() : file.getName();
+            if (shouldReplaceCurrentTab()) {
+                selectedIndex = getSelectedIndex();
+                releaseTab(getComponentAt(selectedIndex));
+                setComponentAt(selectedIndex, createScrollPane(textArea));
+                setTitleAt(selectedIndex, title);
+                setIconAt(selectedIndex, TAB_ICON);
+                setToolTipTextAt(selectedIndex, file.getAbsolutePath());
+            } else {
+                addTab(title, TAB_ICON, createScrollPane(textArea), file.getAbsolutePath());
+                selectedIndex = getTabCount() - 1;
+            }
+            openTabs.put(entry.path(), selectedIndex);
+        }
+        if (selectedIndex >= 0) {
+            setSelectedIndex(selectedIndex);
+            EventBus.publish(EventKey.TAB_UPDATED, getTitleAt(selectedIndex), this);
+            requestFocusOnActiveTextArea();
+        }
+    }
+
+    private static String canonicalPath(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
         }
     }
 
@@ -196,19 +447,47 @@ public class TextAreaTabManager extends BaseTabManager<TextArea> {
     }
 
     private boolean checkAndSelectIfFileAlreadyOpen(File file) {
+        int index = indexOfFile(file);
+        if (index >= 0) {
+            setSelectedIndex(index);
+            EventBus.publish(EventKey.TAB_UPDATED, file.getName(), this);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the index of the tab showing the given file, or -1 if it is not open.
+     */
+    private int indexOfFile(File file) {
         for (int i = 0; i < getTabCount(); i++) {
-            Component comp = getComponentAt(i);
-            if (comp instanceof JScrollPane scrollPane) {
-                TextArea ta = (TextArea) scrollPane.getViewport().getView();
-                File openFile = FileUtils.getCurrentFile(ta);
-                if (openFile != null && filesAreEqual(openFile, file)) {
-                    setSelectedIndex(i);
-                    EventBus.publish(EventType.TAB_UPDATED.name(), file.getName(), this);
-                    return true;
-                }
+            File openFile = fileOf(getComponentAt(i));
+            if (openFile != null && filesAreEqual(openFile, file)) {
+                return i;
             }
         }
-        return false;
+        return -1;
+    }
+
+    /**
+     * Returns the file shown by a tab component, including tabs whose file is still loading.
+     */
+    private File fileOf(Component comp) {
+        if (comp instanceof LoadingPanel loadingPanel) {
+            return loadingPanel.getFile();
+        }
+        if (comp instanceof TabPlaceholder placeholder) {
+            return placeholder.getFile();
+        }
+        if (comp instanceof HexViewer viewer) {
+            return viewer.getFile();
+        }
+        if (comp instanceof StreamViewer viewer) {
+            // Archive entries have no file of their own.
+            return viewer.getVirtualFile().entry() == null ? viewer.getVirtualFile().container() : null;
+        }
+        TextArea ta = textAreaOf(comp);
+        return ta != null ? FileUtils.getCurrentFile(ta) : null;
     }
 
     private boolean filesAreEqual(File f1, File f2) {
@@ -220,6 +499,10 @@ public class TextAreaTabManager extends BaseTabManager<TextArea> {
     }
 
     private void openFileInNewTab(File file) {
+        if (file.isFile() && (VirtualFile.isCompressed(file) || VirtualFile.isArchive(file))) {
+            openVirtualFile(file);
+            return;
+        }
         if (!file.exists()) {
             try {
                 file.createNewFile();
@@ -228,20 +511,270 @@ public class TextAreaTabManager extends BaseTabManager<TextArea> {
                 e.printStackTrace();
             }
         }
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            TextArea newTextArea = createTextArea();
-            newTextArea.setActiveFile(file);
-            newTextArea.read(reader, null);
+        RSyntaxDocument shared = DocumentRegistry.acquire(file);
+        if (shared != null) {
+            showDocument(file, shared);
+            return;
+        }
+        if (isBinaryFile(file)) {
+            Component viewer = createHexViewer(file);
+            if (viewer != null) {
+                placeTab(file, viewer);
+            }
+            return;
+        }
+        if (file.length() >= Settings.getInstance().getLargeFileThresholdBytes()) {
+            openLargeFile(file);
+            return;
+        }
+        if (file.length() >= ASYNC_OPEN_THRESHOLD) {
+            openFileAsync(file);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            RSyntaxDocument document = DocumentLoader.load(channel, null);
+            DocumentRegistry.register(file, document);
+            showDocument(file, document);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(editorFrame, "Error opening file",
+                    "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
 
-            if (shouldReplaceCurrentTab()) {
-                replaceCurrentTab(file.getName(), newTextArea);
-            } else {
-                addNewTab(file.getName(), newTextArea);
+    /**
+     * Shows a loaded document for the given file in place of the current untitled tab or in a new tab.
+     * If the document is shared with another view and has unsaved changes, the new tab is marked as modified too.
+     */
+    private void showDocument(File file, RSyntaxDocument document) {
+        TextArea newTextArea = createTextArea(document);
+        newTextArea.setActiveFile(file);
+        FileUtils.setCurrentFile(newTextArea, file);
+        String title = DirtyTracker.isDirty(document) ? "*" + file.getName() : file.getName();
+        if (shouldReplaceCurrentTab()) {
+            replaceCurrentTab(title, newTextArea);
+        } else {
+            addNewTab(title, newTextArea);
+        }
+    }
+
+    /**
+     * Opens a file on a background thread. A {@link LoadingPanel} with progress and a cancel button
+     * occupies the tab until the document has been decoded, and is then swapped for the editor in one step.
+     * Other tabs stay usable while the file loads.
+     */
+    private void openFileAsync(File file) {
+        LoadingPanel loadingPanel = new LoadingPanel(file);
+        placeTab(file, loadingPanel);
+        loadAsync(loadingPanel, 0);
+    }
+
+    /**
+     * Loads the file of a {@link LoadingPanel} that is already in a tab on a background thread,
+     * and replaces the panel with the editor once the document is ready.
+     *
+     * @param loadingPanel  the panel occupying the tab.
+     * @param caretPosition the caret offset to restore once the file is loaded.
+     */
+    private void loadAsync(LoadingPanel loadingPanel, int caretPosition) {
+        File file = loadingPanel.getFile();
+        long size = Math.max(1, file.length());
+        SwingWorker<RSyntaxDocument, Void> worker = new SwingWorker<>() {
+            @Override
+            protected RSyntaxDocument doInBackground() throws IOException {
+                try (FileChannel channel = FileChannel.open(file.toPath())) {
+                    return DocumentLoader.load(channel,
+                            bytesRead -> setProgress((int) Math.min(100, bytesRead * 100 / size)));
+                }
+            }
+
+            @Override
+            protected void done() {
+                int index = indexOfComponent(loadingPanel);
+                if (index < 0 || isCancelled()) {
+                    return;
+                }
+                try {
+                    // Another view may have opened the file while it was loading.
+                    RSyntaxDocument document = DocumentRegistry.acquire(file);
+                    if (document == null) {
+                        document = get();
+                        DocumentRegistry.register(file, document);
+                    }
+                    TextArea newTextArea = createTextArea(document);
+                    newTextArea.setActiveFile(file);
+                    FileUtils.setCurrentFile(newTextArea, file);
+                    setComponentAt(index, createScrollPane(newTextArea));
+                    newTextArea.setCaretPosition(Math.min(caretPosition, newTextArea.getDocument().getLength()));
+                    refreshTitle(newTextArea);
+                    if (index == getSelectedIndex()) {
+                        EventBus.publish(EventKey.TAB_UPDATED, getTitleAt(index), TextAreaTabManager.this);
+                        newTextArea.requestFocusInWindow();
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    Logger.getInstance().error(TextAreaTabManager.class, "Error loading " + file + ": " + e.getMessage());
+                    remove(index);
+                    JOptionPane.showMessageDialog(editorFrame, "Error opening file",
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        worker.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName())) {
+                loadingPanel.setProgress((Integer) evt.getNewValue());
+            }
+        });
+        loadingPanel.setCancelAction(() -> {
+            worker.cancel(true);
+            int index = indexOfComponent(loadingPanel);
+            if (index >= 0) {
+                remove(index);
             }
-            FileUtils.setCurrentFile(newTextArea, file);
+        });
+        worker.execute();
+    }
+
+    /**
+     * Shows a component for the given file either in place of the current untitled tab or in a new tab.
+     */
+    private void placeTab(File file, Component component) {
+        placeTab(file.getName(), file.getAbsolutePath(), component);
+    }
+
+    private void placeTab(String title, String tooltip, Component component) {
+        if (shouldReplaceCurrentTab()) {
+            int currentIndex = getSelectedIndex();
+            releaseTab(getComponentAt(currentIndex));
+            setComponentAt(currentIndex, component);
+            setTitleAt(currentIndex, title);
+            setIconAt(currentIndex, TAB_ICON);
+        } else {
+            addTab(title, TAB_ICON, component, tooltip);
+            setSelectedIndex(getTabCount() - 1);
+        }
+        EventBus.publish(EventKey.TAB_UPDATED, title, this);
+    }
+
+    /**
+     * Opens a gzip-compressed file, or an entry of a zip archive chosen by the user, in a read-only
+     * {@link StreamViewer} that decompresses it page by page. The archive's entries are listed on a
+     * background thread.
+     */
+    private void openVirtualFile(File file) {
+        if (VirtualFile.isCompressed(file)) {
+            placeStreamViewer(new VirtualFile(file, null));
+            return;
+        }
+        new SwingWorker<List<String>, Void>() {
+            @Override
+            protected List<String> doInBackground() throws IOException {
+                return VirtualFile.listEntries(file);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    List<String> entries = get();
+                    if (entries.isEmpty()) {
+                        JOptionPane.showMessageDialog(editorFrame, file.getName() + " contains no files.",
+                                "Open Archive", JOptionPane.INFORMATION_MESSAGE);
+                        return;
+                    }
+                    String entry = chooseArchiveEntry(file, entries);
+                    if (entry != null) {
+                        placeStreamViewer(new VirtualFile(file, entry));
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    Logger.getInstance().error(TextAreaTabManager.class, "Error reading archive " + file + ": "
+                            + e.getMessage());
+                    JOptionPane.showMessageDialog(editorFrame, "Error opening archive",
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Asks the user which entry of an archive to open.
+     *
+     * @return the chosen entry, or null if the dialog was cancelled.
+     */
+    private String chooseArchiveEntry(File archive, List<String> entries) {
+        JList<String> list = new JList<>(entries.toArray(new String[0]));
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setSelectedIndex(0);
+        list.setVisibleRowCount(20);
+        int choice = JOptionPane.showConfirmDialog(editorFrame, new JScrollPane(list),
+                "Open from " + archive.getName(), JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        return choice == JOptionPane.OK_OPTION ? list.getSelectedValue() : null;
+    }
+
+    private void placeStreamViewer(VirtualFile file) {
+        StreamViewer viewer = new StreamViewer(editorFrame, file);
+        trackFocus(viewer.getTextArea());
+        placeTab(file.getName(), file.getDisplayName(), viewer);
+    }
+
+    /**
+     * Opens a file above the large-file threshold in a memory-mapped, read-only viewer.
+     * Files in an encoding the viewer cannot index (UTF-16 or UTF-32) are loaded into a regular editor instead.
+     */
+    private void openLargeFile(File file) {
+        Component component = createLargeFileComponent(file);
+        if (component instanceof LoadingPanel loadingPanel) {
+            placeTab(file, loadingPanel);
+            loadAsync(loadingPanel, 0);
+        } else if (component != null) {
+            placeTab(file, component);
+        }
+    }
+
+    /**
+     * Creates the tab component for a file above the large-file threshold: a viewer, or a {@link LoadingPanel}
+     * the caller should pass to {@link #loadAsync} if the file's encoding cannot be indexed.
+     * Shows an error and returns null if the file cannot be mapped.
+     */
+    private Component createLargeFileComponent(File file) {
+        try {
+            LargeFileIndex index = new LargeFileIndex(file);
+            if (!index.getEncoding().isAsciiCompatible()) {
+                index.close();
+                return new LoadingPanel(file);
+            }
+            LargeFileViewer viewer = new LargeFileViewer(editorFrame, index);
+            trackFocus(viewer.getTextArea());
+            return viewer;
+        } catch (IOException e) {
+            Logger.getInstance().error(getClass(), "Error mapping large file: " + e.getMessage());
+            JOptionPane.showMessageDialog(editorFrame, "Error opening file",
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether a file holds binary data, which is shown in a {@link HexViewer} instead of being decoded.
+     */
+    private boolean isBinaryFile(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            return EncodingDetector.isBinary(channel);
         } catch (IOException e) {
+            // Let the regular open path report the error.
+            return false;
+        }
+    }
+
+    /**
+     * Creates a memory-mapped hex viewer for a binary file. Shows an error and returns null if the file
+     * cannot be mapped.
+     */
+    private Component createHexViewer(File file) {
+        try {
+            return new HexViewer(new MappedFile(file));
+        } catch (IOException e) {
+            Logger.getInstance().error(getClass(), "Error mapping binary file: " + e.getMessage());
             JOptionPane.showMessageDialog(editorFrame, "Error opening file",
                     "Error", JOptionPane.ERROR_MESSAGE);
+            return null;
         }
     }
 
@@ -258,38 +791,576 @@ public class TextAreaTabManager extends BaseTabManager<TextArea> {
 
     private void replaceCurrentTab(String title, TextArea newTextArea) {
         int currentIndex = getSelectedIndex();
-        setComponentAt(currentIndex, new RTextScrollPane(newTextArea));
+        releaseTab(getComponentAt(currentIndex));
+        setComponentAt(currentIndex, createScrollPane(newTextArea));
+        setTitleAt(currentIndex, title);
         setIconAt(currentIndex, TAB_ICON);
-        EventBus.publish(EventType.TAB_UPDATED.name(), title, this);
+        EventBus.publish(EventKey.TAB_UPDATED, title, this);
     }
 
-    public void saveFile(boolean saveAs) {
+    /**
+     * Saves the active tab. The document text is captured on the EDT and written on the save thread with
+     * {@link AtomicFileWriter}, so the editor stays responsive and a failed save never damages the file on disk.
+     * On failure the tab stays marked as modified, keeps its file even after Save As, and an error is shown.
+     *
+     * @param saveAs whether to ask for a new file name even if the tab already has a file.
+     * @return a future completed with true once the file has been written, or false if the save failed or was cancelled.
+     */
+    public CompletableFuture<Boolean> saveFile(boolean saveAs) {
         TextArea textArea = getActiveTextArea();
-        if (textArea == null) return;
+        if (textArea == null || !textArea.isEditable()) return CompletableFuture.completedFuture(false);
         File file = FileUtils.getCurrentFile(textArea);
-        if (file == null || saveAs) {
+        boolean renamed = file == null || saveAs;
+        if (renamed) {
             file = FileUtils.saveFileDialog(editorFrame);
-            if (file == null) return;
-            FileUtils.setCurrentFile(textArea, file);
+            if (file == null) return CompletableFuture.completedFuture(false);
+        }
+        String text = textArea.getText();
+        RSyntaxDocument document = (RSyntaxDocument) textArea.getDocument();
+        EditJournal journal = EditJournal.of(document);
+        long journalSequence = journal != null ? journal.getSequence() : 0;
+        DirtyTracker.SavePoint savePoint = DirtyTracker.attach(document).savePoint();
+        FileEncoding encoding = FileEncoding.of(textArea.getDocument());
+        if (DocumentLoader.hasReplacedInput(document)) {
+            int choice = JOptionPane.showConfirmDialog(editorFrame,
+                    "This file contained bytes that are not valid " + encoding.charset().name()
+                            + " and were shown as \uFFFD. Saving it will replace those bytes. Save anyway?",
+                    "Invalid Characters", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+            if (choice != JOptionPane.YES_OPTION) {
+                return CompletableFuture.completedFuture(false);
+            }
+            document.putProperty(DocumentLoader.REPLACED_PROPERTY, null);
+        }
+        if (!encoding.charset().newEncoder().canEncode(text)) {
+            int choice = JOptionPane.showConfirmDialog(editorFrame,
+                    "This file contains characters that cannot be saved as " + encoding.charset().name()
+                            + ". Save it as UTF-8 instead?",
+                    "Unsupported Characters", JOptionPane.YES_NO_CANCEL_OPTION);
+            if (choice == JOptionPane.CANCEL_OPTION || choice == JOptionPane.CLOSED_OPTION) {
+                return CompletableFuture.completedFuture(false);
+            }
+            if (choice == JOptionPane.YES_OPTION) {
+                encoding = FileEncoding.DEFAULT;
+                textArea.getDocument().putProperty(FileEncoding.PROPERTY, encoding);
+            }
+        }
+        Object separator = textArea.getDocument().getProperty(DefaultEditorKit.EndOfLineStringProperty);
+        String lineSeparator = separator instanceof String s ? s : System.lineSeparator();
+
+        File target = file;
+        FileEncoding targetEncoding = encoding;
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                AtomicFileWriter.write(target.toPath(), text, targetEncoding, lineSeparator);
+                if (journal != null) {
+                    journal.checkpoint(target, journalSequence);
+                }
+                SwingUtilities.invokeLater(() -> markSaved(document, target, renamed, savePoint));
+                return true;
+            } catch (IOException e) {
+                Logger.getInstance().error(TextAreaTabManager.class, "Error saving " + target + ": " + e.getMessage());
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(editorFrame,
+                        "Error saving file: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+                return false;
+            }
+        }, IoExecutors.save());
+    }
+
+    /**
+     * Records a completed save in the document's {@link DirtyTracker}, which clears the "*" of every view unless
+     * the text was edited while the save was in progress. After a Save As, all views, in any window, follow the
+     * document to its new file. This runs after the save, so the tab may have been closed in the meantime.
+     */
+    private void markSaved(RSyntaxDocument document, File file, boolean renamed, DirtyTracker.SavePoint savePoint) {
+        if (renamed) {
+            DocumentRegistry.rename(document, file);
+            if (findView(document) != null) {
+                // An untitled document that is still shown becomes the shared document of its new file.
+                DocumentRegistry.register(file, document);
+            }
+            for (EditorFrame frame : EditorFrame.getOpenFrames()) {
+                frame.getTabManager().moveToFile(document, file);
+            }
+        }
+        DirtyTracker.attach(document).markSaved(savePoint);
+    }
+
+    /**
+     * Returns a text area, in any window, that shows the given document.
+     *
+     * @param document the document.
+     * @return a text area, or null if the document is not shown.
+     */
+    public static TextArea findView(Document document) {
+        for (EditorFrame frame : EditorFrame.getOpenFrames()) {
+            TextAreaTabManager tabManager = frame.getTabManager();
+            for (int i = 0; i < tabManager.getTabCount(); i++) {
+                TextArea textArea = tabManager.textAreaOf(tabManager.getComponentAt(i));
+                if (textArea != null && textArea.getDocument() == document) {
+                    return textArea;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void moveToFile(Document document, File file) {
+        for (int i = 0; i < getTabCount(); i++) {
+            TextArea textArea = textAreaOf(getComponentAt(i));
+            if (textArea == null || textArea.getDocument() != document) {
+                continue;
+            }
+            if (!file.equals(textArea.getActiveFile())) {
+                FileUtils.setCurrentFile(textArea, file);
+                textArea.setActiveFile(file);
+                String title = DirtyTracker.isDirty(document) ? "*" + file.getName() : file.getName();
+                setTitleAt(i, title);
+                if (i == getSelectedIndex()) {
+                    EventBus.publish(EventKey.TAB_UPDATED, title, this);
+                }
+            }
+        }
+    }
+
+    private int indexOfTextArea(TextArea textArea) {
+        for (int i = 0; i < getTabCount(); i++) {
+            if (textAreaOf(getComponentAt(i)) == textArea) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Closes the selected tab, first offering to save its unsaved changes. If the user saves, the tab is closed
+     * once the file has been written, and stays open if the save fails.
+     *
+     * @return a future completed on the EDT with true if the tab was closed.
+     */
+    public CompletableFuture<Boolean> closeCurrentTab() {
+        Component component = getSelectedComponent();
+        if (component == null) {
+            return CompletableFuture.completedFuture(false);
         }
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            textArea.write(writer);
-            int index = getSelectedIndex();
-            setTitleAt(index, file.getName());
-            EventBus.publish(EventType.TAB_UPDATED.name(), file.getName(), this);
+        return confirmSaveIfNeeded().thenApply(confirmed -> {
+            // Other events may have run during the save; close the tab that was asked about, wherever it is now.
+            int index = indexOfComponent(component);
+            if (!confirmed || index < 0) {
+                return false;
+            }
+            if (disposeTab(component)) {
+                remove(index);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Stops and releases whatever a tab component holds: a viewer's file and background work, a pending load,
+     * a hibernated tab's spill file or an editor's document.
+     *
+     * @param component the component of a tab that is being closed.
+     * @return false if the component was a {@link LoadingPanel}, which removes its own tab when cancelled.
+     */
+    private boolean disposeTab(Component component) {
+        if (component instanceof LargeFileViewer viewer) {
+            viewer.dispose();
+        } else if (component instanceof FollowViewer viewer) {
+            viewer.dispose();
+        } else if (component instanceof StreamViewer viewer) {
+            viewer.dispose();
+        } else if (component instanceof HexViewer viewer) {
+            viewer.dispose();
+        } else if (component instanceof TabPlaceholder placeholder) {
+            placeholder.discard();
+        } else if (component instanceof LoadingPanel loadingPanel) {
+            loadingPanel.cancel();
+            return false;
+        }
+        releaseTab(component);
+        return true;
+    }
+
+    /**
+     * Releases the editor of a tab component that is being closed or replaced. The document's edit journal is
+     * deleted once no other view shows the document.
+     */
+    private void releaseTab(Component component) {
+        if (!(component instanceof JScrollPane)) {
+            return;
+        }
+        TextArea textArea = textAreaOf(component);
+        Document document = textArea.getDocument();
+        EditJournal journal = EditJournal.of(document);
+        if (DocumentRegistry.release(document) == 0 && journal != null) {
+            journal.discard();
+        }
+        releaseTextArea(textArea);
+    }
+
+    /**
+     * Drops every reference the tab manager, the event bus and a possibly shared document hold to a text area
+     * that is no longer shown.
+     */
+    private void releaseTextArea(TextArea textArea) {
+        if (lastFocusedComponent == textArea) {
+            lastFocusedComponent = null;
+        }
+        DirtyTracker tracker = DirtyTracker.of(textArea.getDocument());
+        if (tracker != null && textArea.getClientProperty(DIRTY_LISTENER_PROPERTY) instanceof Runnable listener) {
+            tracker.removeChangeListener(listener);
+        }
+        textArea.dispose();
+    }
+
+    /**
+     * Hibernates the tab at the given index: its text is spilled to disk (or, if it has no unsaved changes,
+     * left in its file) and the editor is replaced by a {@link TabPlaceholder}, so the text area, its token
+     * lists, undo history and fold state can be garbage collected. The selected tab, large-file viewers,
+     * tabs that are still loading and tabs whose document is shown by another view are never hibernated.
+     *
+     * @param index the tab index.
+     */
+    void hibernateTab(int index) {
+        if (index == getSelectedIndex() || !(getComponentAt(index) instanceof JScrollPane scrollPane)) {
+            return;
+        }
+        TextArea textArea = textAreaOf(scrollPane);
+        if (DocumentRegistry.getReferenceCount(textArea.getDocument()) > 1) {
+            return;
+        }
+        File file = FileUtils.getCurrentFile(textArea);
+        boolean modified = DirtyTracker.isDirty(textArea.getDocument());
+        SpillFile spillFile = modified || file == null ? SpillFile.write(textArea.getText()) : null;
+        TabPlaceholder placeholder = new TabPlaceholder(textArea, scrollPane.getViewport().getViewPosition(), spillFile);
+        DocumentRegistry.release(textArea.getDocument());
+        releaseTextArea(textArea);
+        setComponentAt(index, placeholder);
+    }
+
+    /**
+     * Restores a hibernated tab, rebuilding its editor from the spilled text or its file and putting the caret
+     * and scroll position back where they were. Undo history and folds are not restored.
+     */
+    private void rehydrateTab(int index) {
+        TabPlaceholder placeholder = (TabPlaceholder) getComponentAt(index);
+        File file = placeholder.getFile();
+        if (!placeholder.hasSpillFile() && file.isFile() && VirtualFile.isCompressed(file)) {
+            StreamViewer viewer = new StreamViewer(editorFrame, new VirtualFile(file, null));
+            trackFocus(viewer.getTextArea());
+            setComponentAt(index, viewer);
+            return;
+        }
+        if (!placeholder.hasSpillFile() && file.isFile() && isBinaryFile(file)) {
+            Component viewer = createHexViewer(file);
+            if (viewer != null) {
+                setComponentAt(index, viewer);
+            } else {
+                SwingUtilities.invokeLater(() -> removePlaceholder(placeholder));
+            }
+            return;
+        }
+        // A tab without spilled edits simply joins another view of its file, if there is one.
+        RSyntaxDocument shared = !placeholder.hasSpillFile() ? DocumentRegistry.acquire(file) : null;
+        if (shared == null && !placeholder.hasSpillFile() && !file.isFile()) {
+            Logger.getInstance().error(getClass(), "Cannot restore tab, file no longer exists: " + file);
+            SwingUtilities.invokeLater(() -> removePlaceholder(placeholder));
+            return;
+        }
+        if (shared == null && !placeholder.hasSpillFile() && file.length() >= ASYNC_OPEN_THRESHOLD) {
+            Component component = file.length() >= Settings.getInstance().getLargeFileThresholdBytes()
+                    ? createLargeFileComponent(file) : new LoadingPanel(file);
+            if (component == null) {
+                SwingUtilities.invokeLater(() -> removePlaceholder(placeholder));
+                return;
+            }
+            setComponentAt(index, component);
+            if (component instanceof LoadingPanel loadingPanel) {
+                loadAsync(loadingPanel, placeholder.getCaretPosition());
+            }
+            return;
+        }
+        try {
+            RSyntaxDocument document = shared;
+            if (document == null) {
+                document = placeholder.loadDocument();
+                if (file != null) {
+                    DocumentRegistry.register(file, document);
+                }
+            }
+            TextArea textArea = createTextArea(document);
+            if (file != null) {
+                textArea.setActiveFile(file);
+                FileUtils.setCurrentFile(textArea, file);
+            }
+            if (placeholder.getSyntaxStyle() != null) {
+                textArea.setSyntaxEditingStyle(placeholder.getSyntaxStyle());
+            }
+            JScrollPane scrollPane = createScrollPane(textArea);
+            setComponentAt(index, scrollPane);
+            refreshTitle(textArea);
+            textArea.setCaretPosition(Math.min(placeholder.getCaretPosition(), textArea.getDocument().getLength()));
+            // The viewport can only be positioned once the new editor has been laid out.
+            SwingUtilities.invokeLater(() -> {
+                if (placeholder.getViewPosition() != null) {
+                    scrollPane.getViewport().setViewPosition(placeholder.getViewPosition());
+                } else {
+                    scrollToCaret(textArea);
+                }
+            });
+            placeholder.discard();
         } catch (IOException e) {
-            JOptionPane.showMessageDialog(editorFrame, "Error saving file",
+            Logger.getInstance().error(getClass(), "Error restoring tab " + getTitleAt(index) + ": " + e.getMessage());
+            JOptionPane.showMessageDialog(editorFrame, "Could not restore " + getTitleAt(index) + ": " + e.getMessage(),
                     "Error", JOptionPane.ERROR_MESSAGE);
+            // Unsaved edits are still in the tab's journal and will be offered for recovery at the next start.
+            SwingUtilities.invokeLater(() -> removePlaceholder(placeholder));
         }
     }
 
-    public void closeCurrentTab() {
-        int index = getSelectedIndex();
-        if (index != -1 && confirmSaveIfNeeded()) {
+    private void scrollToCaret(TextArea textArea) {
+        try {
+            Rectangle2D caret = textArea.modelToView2D(textArea.getCaretPosition());
+            if (caret != null) {
+                textArea.scrollRectToVisible(caret.getBounds());
+            }
+        } catch (BadLocationException e) {
+            // The caret is always at a valid position.
+        }
+    }
+
+    private void removePlaceholder(TabPlaceholder placeholder) {
+        int index = indexOfComponent(placeholder);
+        if (index >= 0) {
             remove(index);
         }
     }
 
+    /**
+     * Captures the files open in this tab manager, their caret positions and the selected tab.
+     * Untitled tabs are left out; their contents are kept by the edit journal instead.
+     *
+     * @param rootDirectory the project root directory, or null if none is open.
+     * @return the session.
+     */
+    public Session captureSession(File rootDirectory) {
+        List<Session.Tab> tabs = new ArrayList<>();
+        int selectedIndex = 0;
+        for (int i = 0; i < getTabCount(); i++) {
+            Component component = getComponentAt(i);
+            File file = fileOf(component);
+            if (file == null) {
+                continue;
+            }
+            int caretPosition = 0;
+            if (component instanceof TabPlaceholder placeholder) {
+                caretPosition = placeholder.getCaretPosition();
+            } else if (component instanceof JScrollPane) {
+                caretPosition = textAreaOf(component).getCaretPosition();
+            }
+            if (i == getSelectedIndex()) {
+                selectedIndex = tabs.size();
+            }
+            tabs.add(new Session.Tab(file, caretPosition));
+        }
+        return new Session(rootDirectory, tabs, selectedIndex);
+    }
+
+    /**
+     * Reopens the tabs of a saved session. Each tab starts as a {@link TabPlaceholder} that is only read and
+     * highlighted when first selected, so restoring costs the same however many tabs the session had.
+     * An unmodified untitled tab is replaced.
+     *
+     * @param session the session to restore.
+     */
+    public void restoreSession(Session session) {
+        if (session.getTabs().isEmpty()) {
+            return;
+        }
+        if (getTabCount() == 1 && getTitleAt(0).equals("Untitled")) {
+            releaseTab(getComponentAt(0));
+            remove(0);
+        }
+        int firstIndex = getTabCount();
+        restoringSession = true;
+        try {
+            for (Session.Tab tab : session.getTabs()) {
+                File file = tab.getFile();
+                addTab(file.getName(), TAB_ICON, new TabPlaceholder(file, tab.getCaretPosition()), file.getAbsolutePath());
+            }
+            int selected = Math.max(0, Math.min(session.getSelectedIndex(), session.getTabs().size() - 1));
+            setSelectedIndex(firstIndex + selected);
+        } finally {
+            restoringSession = false;
+        }
+        if (getSelectedComponent() instanceof TabPlaceholder) {
+            rehydrateTab(getSelectedIndex());
+        }
+        if (getSelectedIndex() >= 0) {
+            EventBus.publish(EventKey.TAB_UPDATED, getTitleAt(getSelectedIndex()), this);
+        }
+    }
+
+    /**
+     * Stops background work tied to this tab manager and releases its documents, e.g. when its window is closed.
+     * The edit journal of a document with unsaved changes is kept for recovery; that of a saved document is
+     * deleted once no other view shows it, as when its tab is closed.
+     */
+    public void dispose() {
+        tabUpdateSubscription.unsubscribe();
+        hibernator.dispose();
+        // Cancelling a load removes its tab, so collect the components first.
+        List<Component> components = new ArrayList<>();
+        for (int i = 0; i < getTabCount(); i++) {
+            components.add(getComponentAt(i));
+        }
+        for (Component component : components) {
+            if (component instanceof JScrollPane) {
+                TextArea textArea = textAreaOf(component);
+                Document document = textArea.getDocument();
+                EditJournal journal = EditJournal.of(document);
+                if (DocumentRegistry.release(document) == 0 && journal != null && !DirtyTracker.isDirty(document)) {
+                    journal.discard();
+                }
+                releaseTextArea(textArea);
+            } else {
+                disposeTab(component);
+            }
+        }
+    }
+
+    /**
+     * Switches the selected tab between editing its file and {@link FollowViewer following} it. Following
+     * replaces the editor with a read-only view of the end of the file that grows as the file does; switching
+     * back reopens the file in an editor.
+     */
+    public void toggleFollow() {
+        int index = getSelectedIndex();
+        if (index == -1) {
+            return;
+        }
+        Component component = getComponentAt(index);
+        if (component instanceof FollowViewer viewer) {
+            viewer.dispose();
+            setComponentAt(index, new TabPlaceholder(viewer.getFile(), 0));
+            rehydrateTab(index);
+            requestFocusOnActiveTextArea();
+            return;
+        }
+        TextArea textArea = textAreaOf(component);
+        File file = textArea != null ? FileUtils.getCurrentFile(textArea) : null;
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        confirmSaveIfNeeded().thenAccept(confirmed -> {
+            int currentIndex = indexOfComponent(component);
+            if (!confirmed || currentIndex < 0) {
+                return;
+            }
+            FileEncoding encoding = FileEncoding.of(textArea.getDocument());
+            if (component instanceof LargeFileViewer viewer) {
+                viewer.dispose();
+            } else {
+                releaseTab(component);
+            }
+            setTitleAt(currentIndex, file.getName());
+            setComponentAt(currentIndex, new FollowViewer(editorFrame, file, encoding));
+            EventBus.publish(EventKey.TAB_UPDATED, file.getName(), this);
+        });
+    }
+
+    /**
+     * Looks for edit journals left behind by a previous session that ended without saving, and offers to
+     * restore those buffers. Journals are read and replayed on a background thread; the restored buffers
+     * open as modified tabs that keep appending to their journals.
+     */
+    public void recoverUnsavedChanges() {
+        new SwingWorker<List<RecoveredBuffer>, Void>() {
+            @Override
+            protected List<RecoveredBuffer> doInBackground() {
+                List<RecoveredBuffer> buffers = new ArrayList<>();
+                for (EditJournal.Recovery recovery : EditJournal.findRecoverable()) {
+                    try {
+                        buffers.add(new RecoveredBuffer(recovery, recovery.rebuild()));
+                    } catch (IOException e) {
+                        Logger.getInstance().error(TextAreaTabManager.class, "Could not recover " + recovery.getFile()
+                                + ": " + e.getMessage());
+                    }
+                }
+                return buffers;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    List<RecoveredBuffer> buffers = get();
+                    if (!buffers.isEmpty()) {
+                        offerRecovery(buffers);
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    Logger.getInstance().error(TextAreaTabManager.class, "Error recovering journals: " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void offerRecovery(List<RecoveredBuffer> buffers) {
+        StringBuilder message = new StringBuilder("Unsaved changes from a previous session were found:\n");
+        for (RecoveredBuffer buffer : buffers) {
+            File file = buffer.recovery().getFile();
+            message.append("\n  ").append(file != null ? file.getAbsolutePath() : "Untitled");
+            if (buffer.recovery().isBaseChanged()) {
+                message.append(" (changed on disk since)");
+            }
+        }
+        message.append("\n\nRestore them?");
+        int choice = JOptionPane.showConfirmDialog(editorFrame, message.toString(),
+                "Recover Unsaved Changes", JOptionPane.YES_NO_OPTION);
+        for (RecoveredBuffer buffer : buffers) {
+            if (choice == JOptionPane.YES_OPTION) {
+                openRecoveredBuffer(buffer);
+            } else {
+                buffer.recovery().discard();
+            }
+        }
+    }
+
+    private void openRecoveredBuffer(RecoveredBuffer buffer) {
+        File file = buffer.recovery().getFile();
+        TextArea textArea = createTextArea(buffer.document());
+        buffer.recovery().resume(buffer.document());
+        DirtyTracker.attach(buffer.document()).markUnsaved();
+        if (file != null) {
+            textArea.setActiveFile(file);
+            FileUtils.setCurrentFile(textArea, file);
+        }
+        String title = "*" + (file != null ? file.getName() : "Untitled");
+        int index = file != null ? indexOfFile(file) : -1;
+        if (index < 0 && shouldReplaceCurrentTab()) {
+            index = getSelectedIndex();
+        }
+        if (index >= 0) {
+            releaseTab(getComponentAt(index));
+        }
+        if (file != null) {
+            DocumentRegistry.register(file, buffer.document());
+        }
+        if (index >= 0) {
+            setComponentAt(index, createScrollPane(textArea));
+            setTitleAt(index, title);
+            setSelectedIndex(index);
+            EventBus.publish(EventKey.TAB_UPDATED, title, this);
+        } else {
+            addComponentTab(title, textArea);
+        }
+    }
+
+    /**
+     * A journal together with the document rebuilt from it.
+     */
+    private record RecoveredBuffer(EditJournal.Recovery recovery, RSyntaxDocument document) {
+    }
+
     public void adjustFontSize(int change) {
         TextArea textArea = getActiveTextArea();
         if (textArea != null) {
@@ -306,7 +1377,7 @@ public class TextAreaTabManager extends BaseTabManager<TextArea> {
             int currentIndex = getSelectedIndex();
             int previousIndex = (currentIndex - 1 + tabCount) % tabCount;
             setSelectedIndex(previousIndex);
-            EventBus.publish(EventType.TAB_UPDATED.name(), getTitleAt(previousIndex), this);
+            EventBus.publish(EventKey.TAB_UPDATED, getTitleAt(previousIndex), this);
         }
     }
 
@@ -316,12 +1387,23 @@ public class TextAreaTabManager extends BaseTabManager<TextArea> {
             int currentIndex = getSelectedIndex();
             int nextIndex = (currentIndex + 1) % tabCount;
             setSelectedIndex(nextIndex);
-            EventBus.publish(EventType.TAB_UPDATED.name(), getTitleAt(nextIndex), this);
+            EventBus.publish(EventKey.TAB_UPDATED, getTitleAt(nextIndex), this);
         }
     }
 
-    private boolean confirmSaveIfNeeded() {
+    /**
+     * Offers to save the unsaved changes of the selected tab before it is closed or replaced.
+     *
+     * @return a future completed on the EDT with true if the tab may go, or false if the user cancelled or the
+     * save failed; it is already complete unless a save was started.
+     */
+    private CompletableFuture<Boolean> confirmSaveIfNeeded() {
         int index = getSelectedIndex();
+        TextArea textArea = textAreaOf(getSelectedComponent());
+        // Unsaved changes in a shared document are still shown, and asked about, in the other views.
+        if (textArea != null && DocumentRegistry.getReferenceCount(textArea.getDocument()) > 1) {
+            return CompletableFuture.completedFuture(true);
+        }
         if (index != -1) {
             String title = getTitleAt(index);
             if (title.startsWith("*")) {
@@ -329,13 +1411,44 @@ public class TextAreaTabManager extends BaseTabManager<TextArea> {
                         "You have unsaved changes. Save now?",
                         "Unsaved Changes", JOptionPane.YES_NO_CANCEL_OPTION);
                 if (choice == JOptionPane.CANCEL_OPTION) {
-                    return false;
+                    return CompletableFuture.completedFuture(false);
                 }
                 if (choice == JOptionPane.YES_OPTION) {
-                    saveFile(false);
+                    // Continue once the write is done, without blocking the EDT, so a failed save keeps the tab.
+                    CompletableFuture<Boolean> confirmed = new CompletableFuture<>();
+                    saveFile(false).whenComplete((saved, failure) -> SwingUtilities.invokeLater(
+                            () -> confirmed.complete(failure == null && saved)));
+                    return confirmed;
                 }
             }
         }
-        return true;
+        return CompletableFuture.completedFuture(true);
+    }
+
+    /**
+     * Opens files dropped onto the tab strip, or onto a tab that is not a text editor, with {@link #openFiles}.
+     */
+    private class FileDropHandler extends TransferHandler {
+        @Override
+        public boolean canImport(TransferSupport support) {
+            return support.isDataFlavorSupported(DataFlavor.javaFileListFlavor);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean importData(TransferSupport support) {
+            if (!canImport(support)) {
+                return false;
+            }
+            try {
+                List<File> files = (List<File>) support.getTransferable().getTransferData(DataFlavor.javaFileListFlavor);
+                // Finish the drop before any dialog the open may show.
+                SwingUtilities.invokeLater(() -> openFiles(files));
+                return true;
+            } catch (UnsupportedFlavorException | IOException e) {
+                Logger.getInstance().error(TextAreaTabManager.class, "Error reading dropped files: " + e.getMessage());
+                return false;
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -65,8 +65,11 @@ public class GoToLineAction extends AbstractAction {
      */
     private GoToDialog createGoToDialog() {
         GoToDialog dialog = new GoToDialog(editorFrame);
+        var largeFileViewer = editorFrame.getTabManager().getActiveLargeFileViewer();
         var activeTextArea = editorFrame.getTabManager().getActiveTextArea();
-        if (activeTextArea != null) {
+        if (largeFileViewer != null) {
+            dialog.setMaxLineNumberAllowed(largeFileViewer.getLineCount());
+        } else if (activeTextArea != null) {
             int maxLine = activeTextArea.getLineCount();
             dialog.setMaxLineNumberAllowed(maxLine);
         }
@@ -79,6 +82,11 @@ public class GoToLineAction extends AbstractAction {
      * @param line the 1-indexed line number to navigate to.
      */
     private void goToLine(int line) {
+        var largeFileViewer = editorFrame.getTabManager().getActiveLargeFileViewer();
+        if (largeFileViewer != null) {
+            largeFileViewer.goToLine(line);
+            return;
+        }
         var activeTextArea = editorFrame.getTabManager().getActiveTextArea();
         if (activeTextArea == null) {
             return;
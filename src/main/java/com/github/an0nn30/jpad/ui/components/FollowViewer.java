@@ -0,0 +1,117 @@
+package com.github.an0nn30.jpad.ui.components;
+
+import com.github.an0nn30.jpad.io.FileEncoding;
+import com.github.an0nn30.jpad.io.FileTailer;
+import com.github.an0nn30.jpad.settings.Settings;
+import com.github.an0nn30.jpad.ui.EditorFrame;
+import com.github.an0nn30.jpad.ui.utils.FileUtils;
+import org.fife.ui.rtextarea.RTextScrollPane;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import java.awt.*;
+import java.io.File;
+
+/**
+ * A read-only view that follows a growing file, such as a log, like {@code tail -f}.
+ * <p>
+ * A {@link FileTailer} reports only the text appended to the file, which is added to the end of the view.
+ * The view keeps at most {@link Settings#getFollowMaxLines()} lines, dropping the oldest ones, so following
+ * a file for a long time does not grow memory use. While the caret is at the end of the text, the view keeps
+ * scrolling to show new lines; moving the caret elsewhere pauses the scrolling.
+ * </p>
+ */
+public class FollowViewer extends JPanel {
+
+    // How much of the end of the file is shown when following starts.
+    private static final long INITIAL_TAIL_BYTES = 1024 * 1024;
+
+    private final File file;
+    private final TextArea textArea;
+    private final FileTailer tailer;
+    private final JLabel statusLabel;
+
+    /**
+     * Constructs a viewer for the given file and starts following it.
+     *
+     * @param editorFrame the parent editor frame.
+     * @param file        the file to follow.
+     * @param encoding    the file's encoding.
+     */
+    public FollowViewer(EditorFrame editorFrame, File file, FileEncoding encoding) {
+        super(new BorderLayout());
+        this.file = file;
+
+        textArea = new TextArea(editorFrame);
+        textArea.setEditable(false);
+        textArea.setActiveFile(file);
+        textArea.initFontSizeAndFamily();
+        FileUtils.setCurrentFile(textArea, file);
+        textArea.getDocument().putProperty(FileEncoding.PROPERTY, encoding);
+
+        statusLabel = new JLabel(file.getName() + " — following");
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+
+        add(new RTextScrollPane(textArea), BorderLayout.CENTER);
+        add(statusLabel, BorderLayout.SOUTH);
+
+        tailer = new FileTailer(file, encoding, new FileTailer.Listener() {
+            @Override
+            public void appended(String text) {
+                append(text);
+            }
+
+            @Override
+            public void reset() {
+                textArea.setText("");
+                statusLabel.setText(file.getName() + " — following (file was truncated or replaced)");
+            }
+        });
+        tailer.start(INITIAL_TAIL_BYTES);
+    }
+
+    private void append(String text) {
+        Document document = textArea.getDocument();
+        boolean atEnd = textArea.getCaretPosition() == document.getLength();
+        try {
+            document.insertString(document.getLength(), text, null);
+            trimHead(document);
+        } catch (BadLocationException e) {
+            // Offsets are always taken from the document itself.
+        }
+        // The text is read-only, so there is nothing to undo; don't let the undo history grow.
+        textArea.discardAllEdits();
+        if (atEnd) {
+            textArea.setCaretPosition(document.getLength());
+        }
+    }
+
+    /**
+     * Removes the oldest lines beyond the configured maximum in a single edit.
+     */
+    private void trimHead(Document document) throws BadLocationException {
+        Element root = document.getDefaultRootElement();
+        int excess = root.getElementCount() - Settings.getInstance().getFollowMaxLines();
+        if (excess > 0) {
+            document.remove(0, root.getElement(excess).getStartOffset());
+        }
+    }
+
+    public TextArea getTextArea() {
+        return textArea;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Stops following the file. Called when the tab is closed or switched back to a regular editor.
+     */
+    public void dispose() {
+        tailer.stop();
+        textArea.dispose();
+    }
+}
@@ -0,0 +1,415 @@
+package com.github.an0nn30.jpad.ui.components;
+
+import com.github.an0nn30.jpad.io.MappedFile;
+import com.github.an0nn30.jpad.logging.Logger;
+import com.github.an0nn30.jpad.settings.Settings;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A read-only hex and ASCII viewer for binary files.
+ * <p>
+ * The file is memory-mapped through a {@link MappedFile} and only the rows that are visible are read and
+ * painted, so opening a multi-gigabyte file is instant and uses a constant amount of heap. As in
+ * {@link LargeFileViewer}, a separate scroll bar represents the position within the whole file.
+ * Jumping to an offset is immediate; searching for a byte pattern runs on a background thread.
+ * </p>
+ */
+public class HexViewer extends JPanel {
+
+    private static final int BYTES_PER_ROW = 16;
+    private static final int WHEEL_ROWS = 3;
+    private static final int PADDING = 4;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final MappedFile mappedFile;
+    private final HexView view;
+    private final JScrollBar scrollBar;
+    private final JTextField offsetField;
+    private final JTextField findField;
+    private final JLabel statusLabel;
+    private final long rowCount;
+    // Rows per scroll bar unit, so that files with more than Integer.MAX_VALUE rows still fit the scroll bar.
+    private final long rowsPerUnit;
+    private final int offsetDigits;
+    private long topRow;
+    private long selectionStart = -1;
+    private int selectionLength;
+    // Guards against feedback loops between the scroll bar and the view.
+    private boolean adjusting;
+    private SwingWorker<Long, Long> searchWorker;
+
+    /**
+     * Constructs a viewer for the given mapped file.
+     *
+     * @param mappedFile the file to show; it is closed by {@link #dispose()}.
+     */
+    public HexViewer(MappedFile mappedFile) {
+        super(new BorderLayout());
+        this.mappedFile = mappedFile;
+        this.rowCount = (mappedFile.getSize() + BYTES_PER_ROW - 1) / BYTES_PER_ROW;
+        this.rowsPerUnit = 1 + rowCount / (Integer.MAX_VALUE / 2);
+        this.offsetDigits = mappedFile.getSize() > 0xFFFFFFFFL ? 12 : 8;
+
+        view = new HexView();
+        scrollBar = new JScrollBar(JScrollBar.VERTICAL, 0, 1, 0, 1);
+        scrollBar.addAdjustmentListener(e -> {
+            if (!adjusting) {
+                setTopRow(e.getValue() * rowsPerUnit);
+            }
+        });
+        view.addMouseWheelListener(e -> setTopRow(topRow + (long) e.getWheelRotation() * WHEEL_ROWS));
+        view.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                updateScrollBar();
+            }
+        });
+
+        offsetField = new JTextField(12);
+        offsetField.setToolTipText("Decimal offset, or hexadecimal with a 0x prefix");
+        offsetField.addActionListener(e -> goToOffset());
+        findField = new JTextField(20);
+        findField.setToolTipText("Hexadecimal bytes, e.g. CA FE BA BE, or text in double quotes");
+        findField.addActionListener(e -> findNext());
+        JButton findButton = new JButton("Find Next");
+        findButton.addActionListener(e -> findNext());
+
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 2));
+        toolbar.add(new JLabel("Offset:"));
+        toolbar.add(offsetField);
+        toolbar.add(new JLabel("Find:"));
+        toolbar.add(findField);
+        toolbar.add(findButton);
+
+        statusLabel = new JLabel();
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+
+        add(toolbar, BorderLayout.NORTH);
+        add(view, BorderLayout.CENTER);
+        add(scrollBar, BorderLayout.EAST);
+        add(statusLabel, BorderLayout.SOUTH);
+        updateStatus();
+    }
+
+    private int visibleRows() {
+        return Math.max(1, (view.getHeight() - 2 * PADDING) / view.rowHeight());
+    }
+
+    private long maxTopRow() {
+        return Math.max(0, rowCount - visibleRows());
+    }
+
+    private void setTopRow(long row) {
+        long clamped = Math.max(0, Math.min(row, maxTopRow()));
+        if (clamped != topRow) {
+            topRow = clamped;
+            updateScrollBar();
+            view.repaint();
+        }
+    }
+
+    private void updateScrollBar() {
+        adjusting = true;
+        int visibleUnits = (int) Math.max(1, visibleRows() / rowsPerUnit);
+        scrollBar.setValues((int) (topRow / rowsPerUnit), visibleUnits, 0,
+                (int) (maxTopRow() / rowsPerUnit) + visibleUnits);
+        scrollBar.setBlockIncrement(Math.max(1, visibleUnits - 1));
+        adjusting = false;
+    }
+
+    /**
+     * Selects a range of bytes and scrolls it into view.
+     */
+    private void select(long start, int length) {
+        selectionStart = Math.max(0, Math.min(start, mappedFile.getSize() - 1));
+        selectionLength = length;
+        long row = selectionStart / BYTES_PER_ROW;
+        if (row < topRow) {
+            setTopRow(row);
+        } else if (row >= topRow + visibleRows()) {
+            setTopRow(row - visibleRows() + 1);
+        }
+        view.repaint();
+        updateStatus();
+    }
+
+    private void moveSelection(long delta) {
+        if (mappedFile.getSize() > 0) {
+            select((selectionStart < 0 ? topRow * BYTES_PER_ROW : selectionStart) + delta, 1);
+        }
+    }
+
+    private void updateStatus() {
+        File file = mappedFile.getFile();
+        String status = String.format("%s — %,d bytes, read-only", file.getName(), mappedFile.getSize());
+        if (selectionStart >= 0) {
+            status += String.format(" — offset 0x%X (%,d) = 0x%02X", selectionStart, selectionStart,
+                    mappedFile.byteAt(selectionStart) & 0xFF);
+        }
+        statusLabel.setText(status);
+    }
+
+    private void goToOffset() {
+        String text = offsetField.getText().trim();
+        try {
+            long offset = text.startsWith("0x") || text.startsWith("0X")
+                    ? Long.parseLong(text.substring(2), 16) : Long.parseLong(text);
+            if (offset < 0 || offset >= mappedFile.getSize()) {
+                statusLabel.setText("Offset out of range: " + text);
+                return;
+            }
+            select(offset, 1);
+            view.requestFocusInWindow();
+        } catch (NumberFormatException e) {
+            statusLabel.setText("Not a valid offset: " + text);
+        }
+    }
+
+    /**
+     * Searches for the pattern in the find field on a background thread, starting after the selection and
+     * wrapping around to the start of the file.
+     */
+    private void findNext() {
+        byte[] pattern = parsePattern(findField.getText().trim());
+        if (pattern == null) {
+            statusLabel.setText("Enter hexadecimal bytes, e.g. CA FE BA BE, or text in double quotes");
+            return;
+        }
+        if (searchWorker != null) {
+            searchWorker.cancel(true);
+        }
+        long start = selectionStart >= 0 ? selectionStart + 1 : topRow * BYTES_PER_ROW;
+        long size = Math.max(1, mappedFile.getSize());
+        statusLabel.setText("Searching…");
+        searchWorker = new SwingWorker<>() {
+            @Override
+            protected Long doInBackground() {
+                long found = mappedFile.indexOf(pattern, start, Long.MAX_VALUE, this::isCancelled, this::publish);
+                if (found < 0 && !isCancelled()) {
+                    found = mappedFile.indexOf(pattern, 0, start, this::isCancelled, this::publish);
+                }
+                return found;
+            }
+
+            @Override
+            protected void process(List<Long> offsets) {
+                long offset = offsets.get(offsets.size() - 1);
+                statusLabel.setText(String.format("Searching… %d%%", offset * 100 / size));
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    long found = get();
+                    if (found >= 0) {
+                        select(found, pattern.length);
+                    } else {
+                        statusLabel.setText("Not found: " + findField.getText().trim());
+                    }
+                } catch (InterruptedException | ExecutionException | CancellationException e) {
+                    Logger.getInstance().error(HexViewer.class, "Error searching " + mappedFile.getFile() + ": "
+                            + e.getMessage());
+                    updateStatus();
+                }
+            }
+        };
+        searchWorker.execute();
+    }
+
+    /**
+     * Parses a search pattern: text in double quotes is searched as UTF-8, anything else as hexadecimal bytes.
+     *
+     * @return the bytes, or null if the pattern is empty or not valid hexadecimal.
+     */
+    private static byte[] parsePattern(String text) {
+        if (text.length() >= 2 && text.startsWith("\"") && text.endsWith("\"")) {
+            byte[] bytes = text.substring(1, text.length() - 1).getBytes(StandardCharsets.UTF_8);
+            return bytes.length > 0 ? bytes : null;
+        }
+        String digits = text.replaceAll("\\s+", "");
+        if (digits.isEmpty() || digits.length() % 2 != 0) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 0; i < digits.length(); i += 2) {
+            int high = Character.digit(digits.charAt(i), 16);
+            int low = Character.digit(digits.charAt(i + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes.write(high << 4 | low);
+        }
+        return bytes.toByteArray();
+    }
+
+    public File getFile() {
+        return mappedFile.getFile();
+    }
+
+    /**
+     * Stops a running search and releases the mapped file. Called when the tab is closed.
+     */
+    public void dispose() {
+        if (searchWorker != null) {
+            searchWorker.cancel(true);
+        }
+        try {
+            mappedFile.close();
+        } catch (IOException e) {
+            Logger.getInstance().error(HexViewer.class, "Error closing " + mappedFile.getFile() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Paints the visible rows: the offset of each row, its bytes in hexadecimal and as ASCII.
+     */
+    private class HexView extends JComponent {
+
+        private final byte[] rowBytes = new byte[BYTES_PER_ROW];
+        private final char[] chars = new char[2];
+
+        HexView() {
+            setFont(new Font(Font.MONOSPACED, Font.PLAIN, Settings.getInstance().getEditorFontSize()));
+            setFocusable(true);
+            setOpaque(true);
+            addMouseListener(new MouseAdapter() {
+                @Override
+                public void mousePressed(MouseEvent e) {
+                    requestFocusInWindow();
+                    long offset = offsetAt(e.getPoint());
+                    if (offset >= 0) {
+                        select(offset, 1);
+                    }
+                }
+            });
+            bindKey(KeyEvent.VK_LEFT, 0, -1);
+            bindKey(KeyEvent.VK_RIGHT, 0, 1);
+            bindKey(KeyEvent.VK_UP, 0, -BYTES_PER_ROW);
+            bindKey(KeyEvent.VK_DOWN, 0, BYTES_PER_ROW);
+            bindKey(KeyEvent.VK_PAGE_UP, -1, 0);
+            bindKey(KeyEvent.VK_PAGE_DOWN, 1, 0);
+            getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_HOME, KeyEvent.CTRL_DOWN_MASK), "fileStart");
+            getActionMap().put("fileStart", action(() -> moveSelection(-mappedFile.getSize())));
+            getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_END, KeyEvent.CTRL_DOWN_MASK), "fileEnd");
+            getActionMap().put("fileEnd", action(() -> moveSelection(mappedFile.getSize())));
+        }
+
+        /**
+         * Binds a key that moves the selection by a number of pages and bytes.
+         */
+        private void bindKey(int keyCode, int pages, int bytes) {
+            String name = "move" + keyCode;
+            getInputMap().put(KeyStroke.getKeyStroke(keyCode, 0), name);
+            getActionMap().put(name, action(() ->
+                    moveSelection((long) pages * visibleRows() * BYTES_PER_ROW + bytes)));
+        }
+
+        private Action action(Runnable runnable) {
+            return new AbstractAction() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    runnable.run();
+                }
+            };
+        }
+
+        int rowHeight() {
+            return getFontMetrics(getFont()).getHeight();
+        }
+
+        private int charWidth() {
+            return getFontMetrics(getFont()).charWidth('0');
+        }
+
+        /**
+         * Returns the column, in characters, at which the hex digits of a byte in a row start.
+         */
+        private int hexColumn(int index) {
+            return offsetDigits + 2 + index * 3 + (index >= BYTES_PER_ROW / 2 ? 1 : 0);
+        }
+
+        private int asciiColumn(int index) {
+            return hexColumn(BYTES_PER_ROW) + 1 + index;
+        }
+
+        /**
+         * Returns the file offset of the byte under a point in either the hex or the ASCII column, or -1.
+         */
+        private long offsetAt(Point point) {
+            int row = (point.y - PADDING) / rowHeight();
+            int column = (point.x - PADDING) / charWidth();
+            int index = -1;
+            for (int i = 0; i < BYTES_PER_ROW; i++) {
+                if ((column >= hexColumn(i) && column < hexColumn(i) + 2) || column == asciiColumn(i)) {
+                    index = i;
+                    break;
+                }
+            }
+            long offset = (topRow + row) * BYTES_PER_ROW + index;
+            return index >= 0 && point.y >= PADDING && offset < mappedFile.getSize() ? offset : -1;
+        }
+
+        private boolean isSelected(long offset) {
+            return selectionStart >= 0 && offset >= selectionStart && offset < selectionStart + selectionLength;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Color background = UIManager.getColor("TextArea.background");
+            Color foreground = UIManager.getColor("TextArea.foreground");
+            Color selection = UIManager.getColor("TextArea.selectionBackground");
+            Color offsetColor = UIManager.getColor("Label.disabledForeground");
+            g.setColor(background != null ? background : Color.WHITE);
+            g.fillRect(0, 0, getWidth(), getHeight());
+            g.setFont(getFont());
+            FontMetrics metrics = g.getFontMetrics();
+            int rowHeight = metrics.getHeight();
+            int charWidth = metrics.charWidth('0');
+            long size = mappedFile.getSize();
+            String offsetFormat = "%0" + offsetDigits + "X";
+            for (int row = 0; row < visibleRows() + 1 && topRow + row < rowCount; row++) {
+                long rowOffset = (topRow + row) * BYTES_PER_ROW;
+                int length = (int) Math.min(BYTES_PER_ROW, size - rowOffset);
+                mappedFile.read(rowOffset, rowBytes, 0, length);
+                int top = PADDING + row * rowHeight;
+                int baseline = top + metrics.getAscent();
+                g.setColor(offsetColor != null ? offsetColor : Color.GRAY);
+                g.drawString(String.format(offsetFormat, rowOffset), PADDING, baseline);
+                for (int i = 0; i < length; i++) {
+                    int hexX = PADDING + hexColumn(i) * charWidth;
+                    int asciiX = PADDING + asciiColumn(i) * charWidth;
+                    if (isSelected(rowOffset + i)) {
+                        g.setColor(selection != null ? selection : Color.LIGHT_GRAY);
+                        g.fillRect(hexX, top, 2 * charWidth, rowHeight);
+                        g.fillRect(asciiX, top, charWidth, rowHeight);
+                    }
+                    int value = rowBytes[i] & 0xFF;
+                    g.setColor(foreground != null ? foreground : Color.BLACK);
+                    chars[0] = HEX_DIGITS[value >> 4];
+                    chars[1] = HEX_DIGITS[value & 0xF];
+                    g.drawChars(chars, 0, 2, hexX, baseline);
+                    chars[0] = value >= 0x20 && value < 0x7F ? (char) value : '.';
+                    g.drawChars(chars, 0, 1, asciiX, baseline);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package com.github.an0nn30.jpad.ui.components;
+
+import com.github.an0nn30.jpad.io.FileEncoding;
+import com.github.an0nn30.jpad.io.LargeFileIndex;
+import com.github.an0nn30.jpad.logging.Logger;
+import com.github.an0nn30.jpad.ui.EditorFrame;
+import com.github.an0nn30.jpad.ui.search.FindInFilesQuery;
+import com.github.an0nn30.jpad.ui.utils.FileUtils;
+import org.fife.ui.rtextarea.RTextScrollPane;
+import org.fife.ui.rtextarea.SearchContext;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A read-only viewer for files that are too large to load into a regular {@link TextArea}.
+ * <p>
+ * The file is memory-mapped through a {@link LargeFileIndex} whose line index is built in the background.
+ * Only a window of lines around the visible region is decoded into the embedded {@link TextArea}; a separate
+ * scroll bar represents the position within the whole file and the window is moved as the user scrolls.
+ * Go-to-line and find work across the whole file.
+ * </p>
+ */
+public class LargeFileViewer extends JPanel {
+
+    private static final int WINDOW_LINES = 2000;
+    private static final int WINDOW_MAX_BYTES = 8 * 1024 * 1024;
+    private static final int SEARCH_CHUNK_BYTES = 4 * 1024 * 1024;
+    // Consecutive search chunks overlap by this much, so that matches crossing a chunk boundary are found.
+    private static final int SEARCH_OVERLAP_BYTES = 64 * 1024;
+    private static final int WHEEL_LINES = 3;
+
+    private final LargeFileIndex index;
+    private final TextArea textArea;
+    private final RTextScrollPane scrollPane;
+    private final JScrollBar fileScrollBar;
+    private final JLabel statusLabel;
+    // The first line of the file currently decoded into the text area.
+    private int windowStart = -1;
+    private int windowLineCount;
+    // Guards against feedback loops between the file scroll bar and the viewport.
+    private boolean adjusting;
+    private SwingWorker<Void, Integer> indexWorker;
+    private SwingWorker<Match, Void> searchWorker;
+
+    /**
+     * A search hit, expressed as a 0-based line, a character column within that line and a length.
+     */
+    private record Match(int line, int column, int length) {
+    }
+
+    /**
+     * Constructs a viewer for the file mapped by the given index and starts indexing it.
+     *
+     * @param editorFrame the parent editor frame.
+     * @param index       the mapped file.
+     */
+    public LargeFileViewer(EditorFrame editorFrame, LargeFileIndex index) {
+        super(new BorderLayout());
+        this.index = index;
+
+        textArea = new TextArea(editorFrame);
+        textArea.setEditable(false);
+        textArea.setActiveFile(index.getFile());
+        textArea.initFontSizeAndFamily();
+        FileUtils.setCurrentFile(textArea, index.getFile());
+        textArea.getDocument().putProperty(FileEncoding.PROPERTY, index.getEncoding());
+
+        fileScrollBar = new JScrollBar(JScrollBar.VERTICAL, 0, 1, 0, 1);
+        fileScrollBar.addAdjustmentListener(e -> {
+            if (!adjusting) {
+                showTopLine(e.getValue());
+            }
+        });
+
+        // The inner scroll pane only scrolls within the decoded window; the file scroll bar drives the rest.
+        scrollPane = new RTextScrollPane(textArea);
+        scrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_NEVER);
+        scrollPane.setWheelScrollingEnabled(false);
+        scrollPane.addMouseWheelListener(e ->
+                fileScrollBar.setValue(fileScrollBar.getValue() + e.getWheelRotation() * WHEEL_LINES));
+        scrollPane.getViewport().addChangeListener(e -> onViewportScrolled());
+
+        statusLabel = new JLabel();
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+
+        add(scrollPane, BorderLayout.CENTER);
+        add(fileScrollBar, BorderLayout.EAST);
+        add(statusLabel, BorderLayout.SOUTH);
+
+        loadWindow(0);
+        startIndexing();
+    }
+
+    /**
+     * Builds the line index on a background thread, growing the file scroll bar as lines are found.
+     */
+    private void startIndexing() {
+        updateStatus();
+        indexWorker = new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() {
+                index.buildIndex(this::publish);
+                return null;
+            }
+
+            @Override
+            protected void process(List<Integer> chunks) {
+                updateScrollBarRange();
+                updateStatus();
+            }
+
+            @Override
+            protected void done() {
+                updateScrollBarRange();
+                updateStatus();
+                // The first window may have been loaded before its lines were indexed.
+                if (windowStart == 0) {
+                    int caret = textArea.getCaretPosition();
+                    loadWindow(0);
+                    textArea.setCaretPosition(Math.min(caret, textArea.getDocument().getLength()));
+                }
+            }
+        };
+        indexWorker.execute();
+    }
+
+    private void updateScrollBarRange() {
+        adjusting = true;
+        fileScrollBar.setMaximum(index.getLineCount() + visibleRows());
+        fileScrollBar.setVisibleAmount(visibleRows());
+        fileScrollBar.setBlockIncrement(Math.max(1, visibleRows() - 1));
+        adjusting = false;
+    }
+
+    private void updateStatus() {
+        File file = index.getFile();
+        String lines = String.format("%,d lines", index.getLineCount());
+        String state = index.isComplete() ? "read-only"
+                : String.format("indexing… %d%%", index.getIndexedBytes() * 100 / Math.max(1, index.getSize()));
+        statusLabel.setText(String.format("%s — %,d bytes, %s (%s)", file.getName(), index.getSize(), lines, state));
+    }
+
+    /**
+     * Decodes a window of lines starting at the given line into the text area.
+     *
+     * @param start the 0-based first line of the window.
+     */
+    private void loadWindow(int start) {
+        adjusting = true;
+        try {
+            windowStart = Math.max(0, start);
+            textArea.setText(index.readLines(windowStart, WINDOW_LINES, WINDOW_MAX_BYTES));
+            textArea.discardAllEdits();
+            windowLineCount = textArea.getLineCount();
+            scrollPane.getGutter().setLineNumberingStartIndex(windowStart + 1);
+        } finally {
+            adjusting = false;
+        }
+    }
+
+    /**
+     * Scrolls so that the given line of the file is at the top of the viewport, moving the window if needed.
+     *
+     * @param line the 0-based line to show.
+     */
+    private void showTopLine(int line) {
+        line = Math.max(0, Math.min(line, index.getLineCount() - 1));
+        int rows = visibleRows();
+        boolean atEnd = windowStart + windowLineCount >= index.getLineCount();
+        if (line < windowStart || (line + rows > windowStart + windowLineCount && !atEnd)) {
+            loadWindow(line - WINDOW_LINES / 4);
+        }
+        adjusting = true;
+        try {
+            int y = (line - windowStart) * textArea.getLineHeight();
+            Point position = scrollPane.getViewport().getViewPosition();
+            scrollPane.getViewport().setViewPosition(new Point(position.x, Math.max(0, y)));
+            fileScrollBar.setValue(line);
+        } finally {
+            adjusting = false;
+        }
+    }
+
+    /**
+     * Keeps the file scroll bar in sync when the viewport moves on its own, e.g. while the caret is
+     * moved with the keyboard, and shifts the window once the viewport gets close to either edge.
+     */
+    private void onViewportScrolled() {
+        if (adjusting || windowStart < 0) {
+            return;
+        }
+        int topLine = windowStart + scrollPane.getViewport().getViewPosition().y / Math.max(1, textArea.getLineHeight());
+        adjusting = true;
+        fileScrollBar.setValue(topLine);
+        adjusting = false;
+
+        int rows = visibleRows();
+        boolean nearTop = windowStart > 0 && topLine < windowStart + rows;
+        boolean nearBottom = topLine + 2 * rows > windowStart + windowLineCount
+                && windowStart + windowLineCount < index.getLineCount();
+        if (nearTop || nearBottom) {
+            SwingUtilities.invokeLater(() -> recenterOn(topLine));
+        }
+    }
+
+    /**
+     * Moves the window so that it is centered on the given line while keeping the caret on the same file line.
+     */
+    private void recenterOn(int topLine) {
+        int caretLine = windowStart + textArea.getCaretLineNumber();
+        loadWindow(topLine - WINDOW_LINES / 2);
+        moveCaretToLine(caretLine, 0);
+        showTopLine(topLine);
+    }
+
+    private void moveCaretToLine(int line, int column) {
+        int row = line - windowStart;
+        if (row < 0 || row >= windowLineCount) {
+            return;
+        }
+        try {
+            int start = textArea.getLineStartOffset(row);
+            int end = textArea.getLineEndOffset(row);
+            textArea.setCaretPosition(Math.min(start + column, end));
+        } catch (BadLocationException e) {
+            Logger.getInstance().error(LargeFileViewer.class, "Invalid line in window: " + e.getMessage());
+        }
+    }
+
+    private int visibleRows() {
+        int height = scrollPane.getViewport().getExtentSize().height;
+        return Math.max(1, height / Math.max(1, textArea.getLineHeight()));
+    }
+
+    /**
+     * Moves the caret to the start of the given line, scrolling it into the middle of the viewport.
+     *
+     * @param line the 1-based line number.
+     */
+    public void goToLine(int line) {
+        int target = Math.max(0, Math.min(line - 1, index.getLineCount() - 1));
+        showTopLine(Math.max(0, target - visibleRows() / 2));
+        moveCaretToLine(target, 0);
+        textArea.requestFocusInWindow();
+    }
+
+    /**
+     * Searches the whole file for the next (or previous) occurrence described by the given context,
+     * starting at the caret. The search runs on a background thread and selects the hit when done;
+     * a search that is still running is cancelled first.
+     *
+     * @param context the search context.
+     */
+    public void find(SearchContext context) {
+        cancelSearch();
+        Pattern pattern = compile(context);
+        if (pattern == null) {
+            UIManager.getLookAndFeel().provideErrorFeedback(textArea);
+            return;
+        }
+        boolean forward = context.getSearchForward();
+        boolean wrap = context.getSearchWrap();
+        int caretLine = windowStart + textArea.getCaretLineNumber();
+        int caretColumn = forward
+                ? Math.max(textArea.getSelectionEnd(), textArea.getCaretPosition()) - lineStartInWindow(caretLine)
+                : Math.min(textArea.getSelectionStart(), textArea.getCaretPosition()) - lineStartInWindow(caretLine);
+
+        searchWorker = new SwingWorker<>() {
+            @Override
+            protected Match doInBackground() {
+                if (forward) {
+                    Match match = searchForward(pattern, caretLine, caretColumn);
+                    return match == null && wrap && !isCancelled() ? searchForward(pattern, 0, 0) : match;
+                }
+                Match match = searchBackward(pattern, caretLine, caretColumn);
+                return match == null && wrap && !isCancelled()
+                        ? searchBackward(pattern, index.getLineCount() - 1, Integer.MAX_VALUE) : match;
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    Match match = get();
+                    if (match == null) {
+                        UIManager.getLookAndFeel().provideErrorFeedback(textArea);
+                    } else {
+                        select(match);
+                    }
+                } catch (Exception e) {
+                    Logger.getInstance().error(LargeFileViewer.class, "Search failed: " + e.getMessage());
+                }
+            }
+        };
+        searchWorker.execute();
+    }
+
+    private int lineStartInWindow(int line) {
+        try {
+            return textArea.getLineStartOffset(Math.max(0, Math.min(line - windowStart, windowLineCount - 1)));
+        } catch (BadLocationException e) {
+            return 0;
+        }
+    }
+
+    private Pattern compile(SearchContext context) {
+        String searchFor = context.getSearchFor();
+        if (searchFor == null || searchFor.isEmpty()) {
+            return null;
+        }
+        try {
+            return new FindInFilesQuery(searchFor, context.getMatchCase(), context.getWholeWord(),
+                    context.isRegularExpression()).toPattern();
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the first match after a position. The file is read in chunks of at most {@link #SEARCH_CHUNK_BYTES}
+     * whatever the length of its lines, each overlapping the previous one by {@link #SEARCH_OVERLAP_BYTES}.
+     */
+    private Match searchForward(Pattern pattern, int line, int column) {
+        long size = index.getSize();
+        long caret = index.getOffsetOfColumn(index.getLineStartOffset(line), column);
+        // Start a little before the caret, so that word boundaries and lookbehinds see the preceding text.
+        long start = index.alignToCharacter(Math.max(0, caret - SEARCH_OVERLAP_BYTES));
+        int from = index.readRange(start, (int) (caret - start)).length();
+        while (start < size && !Thread.currentThread().isInterrupted()) {
+            long end = index.alignToCharacter(Math.min(size, start + SEARCH_CHUNK_BYTES));
+            String text = index.readRange(start, (int) (end - start));
+            Matcher matcher = pattern.matcher(text);
+            if (from <= text.length() && matcher.find(from)) {
+                return toMatch(text, start, matcher.start(), matcher.end());
+            }
+            if (end >= size) {
+                return null;
+            }
+            start = index.alignToCharacter(end - SEARCH_OVERLAP_BYTES);
+            from = 0;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the last match that ends before a position, reading chunks backwards the same way
+     * {@link #searchForward} reads them forwards.
+     */
+    private Match searchBackward(Pattern pattern, int line, int column) {
+        long lineStart = index.getLineStartOffset(line);
+        long limit = column == Integer.MAX_VALUE ? index.findLineEnd(lineStart)
+                : index.getOffsetOfColumn(lineStart, column);
+        while (limit > 0 && !Thread.currentThread().isInterrupted()) {
+            long start = index.alignToCharacter(Math.max(0, limit - SEARCH_CHUNK_BYTES));
+            String text = index.readRange(start, (int) (limit - start));
+            Matcher matcher = pattern.matcher(text);
+            int matchStart = -1;
+            int matchEnd = -1;
+            while (matcher.find()) {
+                matchStart = matcher.start();
+                matchEnd = matcher.end();
+            }
+            if (matchStart >= 0) {
+                return toMatch(text, start, matchStart, matchEnd);
+            }
+            if (start == 0) {
+                return null;
+            }
+            limit = index.alignToCharacter(start + SEARCH_OVERLAP_BYTES);
+        }
+        return null;
+    }
+
+    /**
+     * Converts a match in a chunk of text read from the given byte offset to a line and column. The line the
+     * chunk starts in may begin far before it, so its column is counted from the bytes rather than decoded.
+     */
+    private Match toMatch(String text, long textOffset, int start, int end) {
+        int breaks = countLineBreaks(text, start);
+        long column;
+        if (breaks > 0) {
+            column = start - (text.lastIndexOf('\n', start - 1) + 1);
+        } else {
+            long lineStart = index.getLineStartOffset(index.getLineOfOffset(textOffset));
+            column = index.countCharacters(lineStart, textOffset) + start;
+        }
+        int line = index.getLineOfOffset(textOffset) + breaks;
+        return new Match(line, (int) Math.min(column, Integer.MAX_VALUE), end - start);
+    }
+
+    private static int countLineBreaks(String text, int end) {
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void select(Match match) {
+        goToLine(match.line() + 1);
+        int start = lineStartInWindow(match.line()) + match.column();
+        int length = textArea.getDocument().getLength();
+        textArea.select(Math.min(start, length), Math.min(start + match.length(), length));
+    }
+
+    private void cancelSearch() {
+        if (searchWorker != null) {
+            searchWorker.cancel(true);
+            searchWorker = null;
+        }
+    }
+
+    /**
+     * Returns the number of lines in the file known so far.
+     *
+     * @return the line count.
+     */
+    public int getLineCount() {
+        return index.getLineCount();
+    }
+
+    public TextArea getTextArea() {
+        return textArea;
+    }
+
+    public File getFile() {
+        return index.getFile();
+    }
+
+    /**
+     * Stops background work and releases the mapped file. Called when the tab is closed.
+     */
+    public void dispose() {
+        cancelSearch();
+        textArea.dispose();
+        if (indexWorker != null) {
+            indexWorker.cancel(false);
+        }
+        try {
+            index.close();
+        } catch (IOException e) {
+            Logger.getInstance().error(LargeFileViewer.class, "Error closing " + index.getFile() + ": " + e.getMessage());
+        }
+    }
+}
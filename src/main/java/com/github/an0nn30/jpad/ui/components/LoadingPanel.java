@@ -0,0 +1,71 @@
+package com.github.an0nn30.jpad.ui.components;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+
+/**
+ * A placeholder shown in a tab while its file is being loaded in the background.
+ * It displays the load progress and a button to cancel the load.
+ */
+public class LoadingPanel extends JPanel {
+
+    private final File file;
+    private final JProgressBar progressBar;
+    private final JButton cancelButton;
+    private Runnable cancelAction;
+
+    /**
+     * Constructs a loading panel for the given file.
+     *
+     * @param file the file being loaded.
+     */
+    public LoadingPanel(File file) {
+        super(new GridBagLayout());
+        this.file = file;
+
+        JLabel label = new JLabel("Opening " + file.getName() + "…");
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> cancel());
+
+        JPanel content = new JPanel(new BorderLayout(0, 6));
+        content.add(label, BorderLayout.NORTH);
+        content.add(progressBar, BorderLayout.CENTER);
+        content.add(cancelButton, BorderLayout.SOUTH);
+        add(content);
+    }
+
+    /**
+     * Updates the progress bar.
+     *
+     * @param percent the load progress, from 0 to 100.
+     */
+    public void setProgress(int percent) {
+        progressBar.setValue(percent);
+    }
+
+    /**
+     * Sets the action run when the load is cancelled, either from the button or by closing the tab.
+     *
+     * @param cancelAction the action to run.
+     */
+    public void setCancelAction(Runnable cancelAction) {
+        this.cancelAction = cancelAction;
+    }
+
+    /**
+     * Cancels the load by running the cancel action, if one is set.
+     */
+    public void cancel() {
+        cancelButton.setEnabled(false);
+        if (cancelAction != null) {
+            cancelAction.run();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,167 @@
+package com.github.an0nn30.jpad.ui.components;
+
+import com.github.an0nn30.jpad.io.FileEncoding;
+import com.github.an0nn30.jpad.io.StreamPager;
+import com.github.an0nn30.jpad.io.VirtualFile;
+import com.github.an0nn30.jpad.logging.Logger;
+import com.github.an0nn30.jpad.ui.EditorFrame;
+import org.fife.ui.rtextarea.RTextScrollPane;
+
+import javax.swing.*;
+import javax.swing.text.DefaultEditorKit;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A read-only, paged viewer for a {@link VirtualFile}: a gzip-compressed file or an entry in a zip archive.
+ * <p>
+ * The text is decompressed on a background thread one page of {@value #PAGE_BYTES} bytes at a time and only
+ * the current page is kept in the embedded {@link TextArea}. Compressed streams cannot seek, so paging goes
+ * forward, and going back to the start reopens the stream.
+ * </p>
+ */
+public class StreamViewer extends JPanel {
+
+    private static final int PAGE_BYTES = 4 * 1024 * 1024;
+
+    private final VirtualFile file;
+    private final TextArea textArea;
+    private final JLabel statusLabel;
+    private final JButton firstPageButton;
+    private final JButton nextPageButton;
+    private StreamPager pager;
+    private SwingWorker<String, Void> pageWorker;
+
+    /**
+     * Constructs a viewer for the given file and starts reading its first page.
+     *
+     * @param editorFrame the parent editor frame.
+     * @param file        the file to show.
+     */
+    public StreamViewer(EditorFrame editorFrame, VirtualFile file) {
+        super(new BorderLayout());
+        this.file = file;
+
+        textArea = new TextArea(editorFrame);
+        textArea.setEditable(false);
+        // Only used to pick the syntax style; the tab has no file to save to.
+        textArea.setActiveFile(new File(file.getName()));
+        textArea.initFontSizeAndFamily();
+
+        statusLabel = new JLabel();
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+        firstPageButton = new JButton("First Page");
+        firstPageButton.addActionListener(e -> loadPage(true));
+        nextPageButton = new JButton("Next Page");
+        nextPageButton.addActionListener(e -> loadPage(false));
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 4, 0));
+        buttons.add(firstPageButton);
+        buttons.add(nextPageButton);
+        JPanel statusBar = new JPanel(new BorderLayout());
+        statusBar.add(statusLabel, BorderLayout.CENTER);
+        statusBar.add(buttons, BorderLayout.EAST);
+
+        add(new RTextScrollPane(textArea), BorderLayout.CENTER);
+        add(statusBar, BorderLayout.SOUTH);
+
+        loadPage(true);
+    }
+
+    /**
+     * Reads a page on a background thread and shows it in place of the current one.
+     *
+     * @param fromStart whether to reopen the file and read its first page, rather than the page after the current one.
+     */
+    private void loadPage(boolean fromStart) {
+        firstPageButton.setEnabled(false);
+        nextPageButton.setEnabled(false);
+        statusLabel.setText(file.getDisplayName() + " — reading…");
+        StreamPager current = fromStart ? null : pager;
+        if (fromStart) {
+            closePager();
+        }
+        pageWorker = new SwingWorker<>() {
+            private StreamPager opened;
+
+            @Override
+            protected String doInBackground() throws IOException {
+                opened = current != null ? current : StreamPager.open(file);
+                try {
+                    return opened.nextPage(PAGE_BYTES);
+                } finally {
+                    // done() does not take over the pager of a cancelled read.
+                    if (isCancelled()) {
+                        opened.close();
+                    }
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                pager = opened;
+                try {
+                    showPage(get());
+                } catch (InterruptedException | ExecutionException | CancellationException e) {
+                    Logger.getInstance().error(StreamViewer.class, "Error reading " + file.getDisplayName() + ": "
+                            + e.getMessage());
+                    statusLabel.setText(file.getDisplayName() + " — could not be read");
+                    firstPageButton.setEnabled(true);
+                }
+            }
+        };
+        pageWorker.execute();
+    }
+
+    private void showPage(String text) {
+        long end = pager.getBytesRead();
+        textArea.setText(text != null ? text : "");
+        textArea.discardAllEdits();
+        textArea.setCaretPosition(0);
+        textArea.getDocument().putProperty(FileEncoding.PROPERTY, pager.getEncoding());
+        textArea.getDocument().putProperty(DefaultEditorKit.EndOfLineStringProperty, pager.getLineSeparator());
+        String position = pager.isFinished()
+                ? String.format("%,d bytes uncompressed, end of file", end)
+                : String.format("%,d bytes uncompressed so far", end);
+        statusLabel.setText(file.getDisplayName() + " — read-only, " + position);
+        firstPageButton.setEnabled(true);
+        nextPageButton.setEnabled(!pager.isFinished());
+    }
+
+    private void closePager() {
+        if (pager != null) {
+            try {
+                pager.close();
+            } catch (IOException e) {
+                Logger.getInstance().error(StreamViewer.class, "Error closing " + file.getDisplayName() + ": "
+                        + e.getMessage());
+            }
+            pager = null;
+        }
+    }
+
+    public TextArea getTextArea() {
+        return textArea;
+    }
+
+    public VirtualFile getVirtualFile() {
+        return file;
+    }
+
+    /**
+     * Stops reading and closes the file. Called when the tab is closed.
+     */
+    public void dispose() {
+        if (pageWorker != null && !pageWorker.isDone()) {
+            pageWorker.cancel(true);
+        }
+        closePager();
+        textArea.dispose();
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.an0nn30.jpad.ui.components;
+
+import com.github.an0nn30.jpad.io.DirtyTracker;
+import com.github.an0nn30.jpad.io.DocumentLoader;
+import com.github.an0nn30.jpad.io.EditJournal;
+import com.github.an0nn30.jpad.io.FileEncoding;
+import com.github.an0nn30.jpad.io.SpillFile;
+import com.github.an0nn30.jpad.ui.utils.FileUtils;
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
+
+import javax.swing.*;
+import javax.swing.text.DefaultEditorKit;
+import javax.swing.text.Document;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * A lightweight stand-in for a hibernated editor tab.
+ * <p>
+ * It keeps only what is needed to rebuild the editor: the file, the caret and scroll position, the syntax
+ * style and the document's encoding, line separator, journal and dirty state. The text itself lives in a
+ * {@link SpillFile}, or, for tabs without unsaved changes, in the file the tab was opened from.
+ * </p>
+ */
+public class TabPlaceholder extends JPanel {
+
+    private final File file;
+    private final SpillFile spillFile;
+    private final int caretPosition;
+    private final Point viewPosition;
+    private final String syntaxStyle;
+    private final Object lineSeparator;
+    private final Object encoding;
+    private final EditJournal journal;
+    private final DirtyTracker dirtyTracker;
+
+    /**
+     * Creates a placeholder for a file that has not been loaded yet, e.g. a tab restored from the last session.
+     *
+     * @param file          the file to load when the tab is selected.
+     * @param caretPosition the caret offset to restore.
+     */
+    public TabPlaceholder(File file, int caretPosition) {
+        super(new BorderLayout());
+        this.file = file;
+        this.spillFile = null;
+        this.caretPosition = caretPosition;
+        this.viewPosition = null;
+        this.syntaxStyle = null;
+        this.lineSeparator = null;
+        this.encoding = null;
+        this.journal = null;
+        this.dirtyTracker = null;
+    }
+
+    /**
+     * Captures the state of a text area that is about to be hibernated.
+     *
+     * @param textArea     the text area being hibernated.
+     * @param viewPosition the scroll position of its viewport.
+     * @param spillFile    the spilled text, or null to reload the text from the text area's file.
+     */
+    public TabPlaceholder(TextArea textArea, Point viewPosition, SpillFile spillFile) {
+        super(new BorderLayout());
+        Document document = textArea.getDocument();
+        this.file = FileUtils.getCurrentFile(textArea);
+        this.spillFile = spillFile;
+        this.caretPosition = textArea.getCaretPosition();
+        this.viewPosition = viewPosition;
+        this.syntaxStyle = textArea.getSyntaxEditingStyle();
+        this.lineSeparator = document.getProperty(DefaultEditorKit.EndOfLineStringProperty);
+        this.encoding = document.getProperty(FileEncoding.PROPERTY);
+        this.journal = EditJournal.of(document);
+        // A tab reloaded from its file starts out clean, with the file as its saved state.
+        this.dirtyTracker = spillFile != null ? DirtyTracker.of(document) : null;
+    }
+
+    /**
+     * Rebuilds the document of the hibernated tab, with its original properties, journal and dirty state.
+     *
+     * @return the restored document.
+     * @throws IOException if the spill file or the original file cannot be read.
+     */
+    public RSyntaxDocument loadDocument() throws IOException {
+        RSyntaxDocument document;
+        if (spillFile != null) {
+            document = spillFile.load();
+        } else {
+            try (FileChannel channel = FileChannel.open(file.toPath())) {
+                document = DocumentLoader.load(channel, null);
+            }
+        }
+        if (lineSeparator != null) {
+            document.putProperty(DefaultEditorKit.EndOfLineStringProperty, lineSeparator);
+        }
+        if (encoding != null) {
+            document.putProperty(FileEncoding.PROPERTY, encoding);
+        }
+        if (journal != null) {
+            journal.reattach(document);
+        }
+        if (dirtyTracker != null) {
+            dirtyTracker.reattach(document);
+        }
+        return document;
+    }
+
+    /**
+     * Releases the spill file once the tab has been restored.
+     */
+    public void discard() {
+        if (spillFile != null) {
+            spillFile.delete();
+        }
+    }
+
+    /**
+     * Returns whether the text was spilled, as opposed to being reloaded from the file.
+     *
+     * @return true if the tab has a spill file.
+     */
+    public boolean hasSpillFile() {
+        return spillFile != null;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getCaretPosition() {
+        return caretPosition;
+    }
+
+    /**
+     * Returns the scroll position to restore.
+     *
+     * @return the viewport position, or null if it is unknown.
+     */
+    public Point getViewPosition() {
+        return viewPosition;
+    }
+
+    public String getSyntaxStyle() {
+        return syntaxStyle;
+    }
+}
@@ -1,28 +1,51 @@
 package com.github.an0nn30.jpad.ui.components;
 
-import com.github.an0nn30.jpad.event.EventBus;
-import com.github.an0nn30.jpad.event.EventType;
 import com.github.an0nn30.jpad.logging.Logger;
 import com.github.an0nn30.jpad.settings.Settings;
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
 import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
 import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
+import org.fife.ui.rtextarea.RUndoManager;
 import com.github.an0nn30.jpad.settings.Constants;
 import com.github.an0nn30.jpad.ui.EditorFrame;
-import org.fife.ui.rsyntaxtextarea.Theme;
+import com.github.an0nn30.jpad.ui.theme.EditorThemeRegistry;
 
+import javax.swing.text.Document;
 import java.io.File;
 
 public class TextArea extends RSyntaxTextArea {
 
     private File activeFile;
+    // Created by the superclass constructor, so it must not have an initializer.
+    private ViewUndoManager viewUndoManager;
 
     public TextArea(EditorFrame editorFrame) {
         super();
         setTabSize(4);
         // Initially, no file is associated so default to none.
         setSyntaxEditingStyle(SyntaxConstants.SYNTAX_STYLE_NONE);
-        applyTheme(Settings.getInstance().getInterfaceTheme());
-        subscibeToEvents();
+        EditorThemeRegistry.register(this, Settings.getInstance().getInterfaceTheme());
+    }
+
+    /**
+     * Creates an undo manager that shares the undo history of the document with its other views.
+     */
+    @Override
+    protected RUndoManager createUndoManager() {
+        viewUndoManager = new ViewUndoManager(this);
+        return viewUndoManager;
+    }
+
+    /**
+     * Shows a document without discarding its undo history, which other views of the document may share.
+     */
+    @Override
+    public void setDocument(Document document) {
+        if (viewUndoManager == null) {
+            super.setDocument(document);
+        } else {
+            viewUndoManager.switchDocument(() -> super.setDocument(document));
+        }
     }
 
     /**
@@ -69,29 +92,12 @@ public class TextArea extends RSyntaxTextArea {
         setFont(new java.awt.Font(Settings.getInstance().getEditorFontFamily(), java.awt.Font.PLAIN, Settings.getInstance().getEditorFontSize()));
     }
 
-    private void applyTheme(String scheme) {
-        Theme theme;
-        try {
-            switch (scheme) {
-                case "Light":
-                case "Retro":
-                    theme = Theme.load(TextArea.class.getResourceAsStream("/org/fife/ui/rsyntaxtextarea/themes/idea.xml"));
-                    theme.apply(this);
-                    break;
-                case "Dark":
-                    theme = Theme.load(TextArea.class.getResourceAsStream("/org/fife/ui/rsyntaxtextarea/themes/monokai.xml"));
-                    theme.apply(this);
-                    break;
-                default:
-                    theme = Theme.load(TextArea.class.getResourceAsStream("/org/fife/ui/rsyntaxtextarea/themes/idea.xml"));
-
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    private void subscibeToEvents() {
-        EventBus.subscribe(EventType.THEME_CHANGED.name(), e -> applyTheme(e.data().toString()));
+    /**
+     * Stops applying theme changes to this text area and detaches it from its document, which may be
+     * shared with other views, so that it can be garbage collected once its tab is closed or hibernated.
+     */
+    public void dispose() {
+        EditorThemeRegistry.unregister(this);
+        setDocument(new RSyntaxDocument(SyntaxConstants.SYNTAX_STYLE_NONE));
     }
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.github.an0nn30.jpad.ui.components;
+
+import com.github.an0nn30.jpad.io.UndoHistory;
+import org.fife.ui.rtextarea.RUndoManager;
+
+import javax.swing.event.UndoableEditEvent;
+import javax.swing.text.Document;
+
+/**
+ * The undo manager of a {@link TextArea}. It keeps no history of its own: edits are recorded in, and undone
+ * from, the {@link UndoHistory} of the text area's document, which every view of that document shares. The
+ * inherited state is only used to update the undo and redo actions.
+ */
+final class ViewUndoManager extends RUndoManager {
+
+    private final TextArea textArea;
+    // Set while the text area switches documents, which must not discard the new document's shared history.
+    private boolean switchingDocument;
+
+    ViewUndoManager(TextArea textArea) {
+        super(textArea);
+        this.textArea = textArea;
+    }
+
+    private UndoHistory history() {
+        return UndoHistory.attach(textArea.getDocument());
+    }
+
+    /**
+     * Runs a document switch of the text area, during which requests to discard the history are ignored.
+     *
+     * @param setDocument the switch.
+     */
+    void switchDocument(Runnable setDocument) {
+        switchingDocument = true;
+        try {
+            setDocument.run();
+        } finally {
+            switchingDocument = false;
+        }
+    }
+
+    @Override
+    public void undoableEditHappened(UndoableEditEvent e) {
+        UndoHistory.attach((Document) e.getSource()).record(e.getEdit());
+        updateActions();
+    }
+
+    @Override
+    public void beginInternalAtomicEdit() {
+        history().beginAtomicEdit();
+    }
+
+    @Override
+    public void endInternalAtomicEdit() {
+        history().endAtomicEdit();
+        updateActions();
+    }
+
+    @Override
+    public synchronized void undo() {
+        history().undo();
+        updateActions();
+    }
+
+    @Override
+    public synchronized void redo() {
+        history().redo();
+        updateActions();
+    }
+
+    @Override
+    public synchronized boolean canUndo() {
+        return history().canUndo();
+    }
+
+    @Override
+    public synchronized boolean canRedo() {
+        return history().canRedo();
+    }
+
+    @Override
+    public synchronized String getUndoPresentationName() {
+        return history().getUndoPresentationName();
+    }
+
+    @Override
+    public synchronized String getRedoPresentationName() {
+        return history().getRedoPresentationName();
+    }
+
+    @Override
+    public synchronized void discardAllEdits() {
+        if (!switchingDocument) {
+            history().discardAllEdits();
+            updateActions();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.an0nn30.jpad.ui.search;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A view of captured text, for a background search, that gives up once the search is cancelled or out of time.
+ * <p>
+ * A {@link java.util.regex.Matcher} reads its input only through {@link #charAt}, which checks every few thousand
+ * characters whether to stop, so that even a regular expression with catastrophic backtracking ends soon after
+ * it is cancelled or its deadline has passed. A view is meant for one thread.
+ * </p>
+ */
+final class CheckedText implements CharSequence {
+
+    // How many characters are read between checks for cancellation and timeout.
+    private static final int CHECK_INTERVAL = 4096;
+
+    /**
+     * Thrown by {@link #charAt} once the deadline has passed.
+     */
+    static final class TimeoutException extends RuntimeException {
+        private TimeoutException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * The state shared by a text and its subsequences.
+     */
+    private static final class Check {
+        private final BooleanSupplier cancelled;
+        private final long deadline;
+        private int reads;
+
+        private Check(BooleanSupplier cancelled, long deadline) {
+            this.cancelled = cancelled;
+            this.deadline = deadline;
+        }
+    }
+
+    private final String text;
+    private final int offset;
+    private final int length;
+    private final Check check;
+
+    /**
+     * Creates a view of the given text.
+     *
+     * @param text      the text.
+     * @param cancelled returns true once the search is cancelled; {@link #charAt} then throws a {@link CancellationException}.
+     * @param deadline  the {@link System#nanoTime()} after which {@link #charAt} throws a {@link TimeoutException}.
+     */
+    CheckedText(String text, BooleanSupplier cancelled, long deadline) {
+        this(text, 0, text.length(), new Check(cancelled, deadline));
+    }
+
+    private CheckedText(String text, int offset, int length, Check check) {
+        this.text = text;
+        this.offset = offset;
+        this.length = length;
+        this.check = check;
+    }
+
+    /**
+     * Stops the search if it was cancelled or is out of time.
+     *
+     * @throws CancellationException if the search was cancelled.
+     * @throws TimeoutException      if the deadline has passed.
+     */
+    void check() {
+        if (check.cancelled.getAsBoolean()) {
+            throw new CancellationException();
+        }
+        if (System.nanoTime() > check.deadline) {
+            throw new TimeoutException();
+        }
+    }
+
+    /**
+     * Returns the text without checks, for a search that takes linear time and checks only between matches.
+     *
+     * @return the viewed text.
+     */
+    CharSequence unchecked() {
+        return offset == 0 && length == text.length() ? text : text.subSequence(offset, offset + length);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (++check.reads % CHECK_INTERVAL == 0) {
+            check();
+        }
+        return text.charAt(offset + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new CheckedText(text, offset + start, end - start, check);
+    }
+
+    @Override
+    public String toString() {
+        return text.substring(offset, offset + length);
+    }
+}
@@ -0,0 +1,341 @@
+package com.github.an0nn30.jpad.ui.search;
+
+import com.github.an0nn30.jpad.io.LineDiff;
+import com.github.an0nn30.jpad.logging.Logger;
+import com.github.an0nn30.jpad.settings.Settings;
+import com.github.an0nn30.jpad.ui.components.TextArea;
+import org.fife.rsta.ui.search.SearchEvent;
+import org.fife.ui.rtextarea.DocumentRange;
+import org.fife.ui.rtextarea.SearchContext;
+import org.fife.ui.rtextarea.SearchResult;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A find, mark all, replace or replace all in one text area, run on a background thread.
+ * <p>
+ * The document text is captured on the EDT and matched on a worker through a {@link CheckedText}, which stops
+ * the matcher once the search is cancelled or has run past the
+ * {@link Settings#getSearchTimeoutSeconds() search timeout}, even for a regular expression with catastrophic
+ * backtracking. The results are applied on the EDT in one step: the selection,
+ * the matches for the {@link MarkAllHighlighter}, or one undoable edit. If the document is edited while the search runs,
+ * the search is cancelled, since its results would no longer fit the text.
+ * </p>
+ */
+public class DocumentSearch {
+
+    private final TextArea textArea;
+    private final SearchEvent.Type type;
+    private final SearchContext context;
+    private final Consumer<SearchResult> callback;
+    private final DocumentListener changeListener = new DocumentListener() {
+        @Override
+        public void insertUpdate(DocumentEvent e) {
+            abort();
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            abort();
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+            // Attribute changes, such as syntax highlighting, do not move the text.
+        }
+    };
+    private final long deadline;
+    private SwingWorker<Outcome, Void> worker;
+    private Pattern pattern;
+    private String replaceWith;
+    private volatile boolean cancelled;
+    private boolean ended;
+
+    /**
+     * What a search found: the match to select or replace, all matches to mark, or the edits of a replace all.
+     */
+    private record Outcome(DocumentRange match, boolean wrapped, String replacement, List<DocumentRange> marks,
+                           List<LineDiff.Edit> edits) {
+    }
+
+    private DocumentSearch(TextArea textArea, SearchEvent.Type type, SearchContext context,
+                           Consumer<SearchResult> callback) {
+        this.textArea = textArea;
+        this.type = type;
+        this.context = context.clone();
+        this.callback = callback;
+        this.deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Settings.getInstance().getSearchTimeoutSeconds());
+    }
+
+    /**
+     * Starts a search in a text area. Must be called on the EDT.
+     *
+     * @param textArea the text area to search.
+     * @param type     the operation: find, mark all, replace or replace all.
+     * @param context  the search context; it is copied, so later changes do not affect the search.
+     * @param callback called on the EDT with the result once it has been applied, or with null if the search was
+     *                 stopped by an edit, timed out, or its pattern was invalid; not called after {@link #cancel()}.
+     * @return the running search.
+     */
+    public static DocumentSearch start(TextArea textArea, SearchEvent.Type type, SearchContext context,
+                                       Consumer<SearchResult> callback) {
+        DocumentSearch search = new DocumentSearch(textArea, type, context, callback);
+        search.execute();
+        return search;
+    }
+
+    private void execute() {
+        String searchFor = context.getSearchFor();
+        if (searchFor == null || searchFor.isEmpty()) {
+            if (type == SearchEvent.Type.MARK_ALL) {
+                MarkAllHighlighter.of(textArea).clear();
+            }
+            end(null);
+            return;
+        }
+        try {
+            pattern = new FindInFilesQuery(searchFor, context.getMatchCase(), context.getWholeWord(),
+                    context.isRegularExpression()).toPattern();
+        } catch (PatternSyntaxException e) {
+            UIManager.getLookAndFeel().provideErrorFeedback(textArea);
+            end(null);
+            return;
+        }
+        Document document = textArea.getDocument();
+        String text = textArea.getText();
+        int selectionStart = textArea.getSelectionStart();
+        int selectionEnd = textArea.getSelectionEnd();
+        replaceWith = context.getReplaceWith() != null ? context.getReplaceWith() : "";
+        String replacement = context.isRegularExpression() ? replaceWith : Matcher.quoteReplacement(replaceWith);
+        document.addDocumentListener(changeListener);
+        worker = new SwingWorker<>() {
+            @Override
+            protected Outcome doInBackground() {
+                MatchScanner scanner = new MatchScanner(pattern, new CheckedText(text, () -> cancelled, deadline));
+                return switch (type) {
+                    case FIND -> find(scanner, selectionStart, selectionEnd, null);
+                    case REPLACE -> find(scanner, selectionEnd, selectionStart, replacement);
+                    case MARK_ALL -> new Outcome(null, false, null,
+                            context.getMarkAll() ? markAll(scanner) : Collections.emptyList(), null);
+                    case REPLACE_ALL -> new Outcome(null, false, null, null, replaceAll(scanner, replacement));
+                };
+            }
+
+            @Override
+            protected void done() {
+                document.removeDocumentListener(changeListener);
+                if (cancelled || isCancelled()) {
+                    end(null);
+                    return;
+                }
+                try {
+                    end(apply(get()));
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CheckedText.TimeoutException) {
+                        end(null);
+                        JOptionPane.showMessageDialog(SwingUtilities.getWindowAncestor(textArea),
+                                "The search took longer than " + Settings.getInstance().getSearchTimeoutSeconds()
+                                        + " seconds and was stopped. Try a simpler regular expression.",
+                                "Search Stopped", JOptionPane.WARNING_MESSAGE);
+                    } else if (e.getCause() instanceof CancellationException) {
+                        end(null);
+                    } else {
+                        Logger.getInstance().error(DocumentSearch.class, "Search failed: " + e.getCause());
+                        UIManager.getLookAndFeel().provideErrorFeedback(textArea);
+                        end(null);
+                    }
+                } catch (InterruptedException | CancellationException | BadLocationException e) {
+                    end(null);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * Stops the search. Its results are not applied and the callback is not called. Must be called on the EDT.
+     */
+    public void cancel() {
+        ended = true;
+        abort();
+    }
+
+    private void abort() {
+        cancelled = true;
+        if (worker != null) {
+            worker.cancel(false);
+        }
+    }
+
+    private void end(SearchResult result) {
+        if (!ended) {
+            ended = true;
+            callback.accept(result);
+        }
+    }
+
+    /**
+     * Finds the next match starting at or after {@code forwardFrom}, or the last match ending at or before
+     * {@code backwardFrom} when searching backward, wrapping around the document if the context allows it.
+     *
+     * @param replacement the replacement to expand for the match, or null if the match is not replaced.
+     */
+    private Outcome find(MatchScanner scanner, int backwardFrom, int forwardFrom, String replacement) {
+        boolean forward = context.getSearchForward();
+        boolean wrapped = false;
+        int[] match = forward ? findForward(scanner, forwardFrom, Integer.MAX_VALUE)
+                : findBackward(scanner, 0, backwardFrom);
+        if (match == null && context.getSearchWrap()) {
+            wrapped = true;
+            match = forward ? findForward(scanner, 0, forwardFrom) : findBackward(scanner, backwardFrom, Integer.MAX_VALUE);
+        }
+        if (match == null) {
+            return new Outcome(null, false, null, context.getMarkAll() ? markAll(scanner) : null, null);
+        }
+        String expanded = null;
+        if (replacement != null) {
+            scanner.find(match[0]);
+            expanded = expand(scanner, replacement, 0);
+        }
+        List<DocumentRange> marks = context.getMarkAll() && replacement == null ? markAll(scanner) : null;
+        return new Outcome(new DocumentRange(match[0], match[1]), wrapped, expanded, marks, null);
+    }
+
+    /**
+     * Returns the first non-empty match starting in {@code [from, before)}.
+     */
+    private static int[] findForward(MatchScanner scanner, int from, int before) {
+        if (scanner.find(from) && scanner.start() < before) {
+            return new int[]{scanner.start(), scanner.end()};
+        }
+        return null;
+    }
+
+    /**
+     * Returns the last non-empty match starting at or after {@code from} and ending at or before {@code to}.
+     */
+    private static int[] findBackward(MatchScanner scanner, int from, int to) {
+        int[] last = null;
+        boolean found = scanner.find(from);
+        while (found && scanner.end() <= to) {
+            last = new int[]{scanner.start(), scanner.end()};
+            found = scanner.next();
+        }
+        return last;
+    }
+
+    private static List<DocumentRange> markAll(MatchScanner scanner) {
+        List<DocumentRange> ranges = new ArrayList<>();
+        scanner.reset();
+        while (scanner.next()) {
+            ranges.add(new DocumentRange(scanner.start(), scanner.end()));
+        }
+        return ranges;
+    }
+
+    /**
+     * Computes the edits that replace every match, from the end of the text to its start.
+     */
+    private List<LineDiff.Edit> replaceAll(MatchScanner scanner, String replacement) {
+        List<LineDiff.Edit> edits = new ArrayList<>();
+        scanner.reset();
+        int appended = 0;
+        while (scanner.next()) {
+            edits.add(new LineDiff.Edit(scanner.start(), scanner.end() - scanner.start(),
+                    expand(scanner, replacement, appended)));
+            appended = scanner.end();
+        }
+        Collections.reverse(edits);
+        return edits;
+    }
+
+    /**
+     * Expands the replacement for the scanner's current match, resolving group references such as {@code $1}.
+     * A plain-text query is only ever replaced with plain text, which needs no expanding.
+     *
+     * @param appended where the matcher's last append ended: the end of the previous replaced match, or 0 after
+     *                 the matcher was reset.
+     */
+    private String expand(MatchScanner scanner, String replacement, int appended) {
+        Matcher matcher = scanner.regexMatcher();
+        if (matcher == null) {
+            return replaceWith;
+        }
+        if (replacement.indexOf('$') < 0 && replacement.indexOf('\\') < 0) {
+            return replacement;
+        }
+        // appendReplacement also copies the text since the last append, which is cut off again.
+        StringBuilder expanded = new StringBuilder();
+        matcher.appendReplacement(expanded, replacement);
+        return expanded.substring(matcher.start() - appended);
+    }
+
+    /**
+     * Applies the outcome to the text area. Called on the EDT while the document still holds the searched text.
+     */
+    private SearchResult apply(Outcome outcome) throws BadLocationException {
+        if (outcome.marks() != null) {
+            MarkAllHighlighter.of(textArea).mark(pattern, outcome.marks());
+        }
+        int markedCount = outcome.marks() != null ? outcome.marks().size() : 0;
+        switch (type) {
+            case FIND -> {
+                if (outcome.match() == null) {
+                    return new SearchResult(null, 0, markedCount);
+                }
+                textArea.select(outcome.match().getStartOffset(), outcome.match().getEndOffset());
+                SearchResult result = new SearchResult(outcome.match(), 1, markedCount);
+                result.setWrapped(outcome.wrapped());
+                return result;
+            }
+            case REPLACE -> {
+                if (outcome.match() == null) {
+                    return new SearchResult(null, 0, 0);
+                }
+                int start = outcome.match().getStartOffset();
+                int end = outcome.match().getEndOffset();
+                textArea.beginAtomicEdit();
+                try {
+                    ((AbstractDocument) textArea.getDocument()).replace(start, end - start, outcome.replacement(), null);
+                } finally {
+                    textArea.endAtomicEdit();
+                }
+                int caret = start + outcome.replacement().length();
+                textArea.select(caret, caret);
+                DocumentRange replaced = new DocumentRange(start, caret);
+                SearchResult result = new SearchResult(replaced, 1, 0);
+                result.setWrapped(outcome.wrapped());
+                return result;
+            }
+            case REPLACE_ALL -> {
+                if (!outcome.edits().isEmpty()) {
+                    textArea.beginAtomicEdit();
+                    try {
+                        LineDiff.apply((AbstractDocument) textArea.getDocument(), outcome.edits());
+                    } finally {
+                        textArea.endAtomicEdit();
+                    }
+                }
+                return new SearchResult(null, outcome.edits().size(), 0);
+            }
+            default -> {
+                return new SearchResult(null, 0, markedCount);
+            }
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package com.github.an0nn30.jpad.ui.search;
+
+import com.github.an0nn30.jpad.io.AtomicFileWriter;
+import com.github.an0nn30.jpad.io.DirtyTracker;
+import com.github.an0nn30.jpad.io.DocumentLoader;
+import com.github.an0nn30.jpad.io.DocumentRegistry;
+import com.github.an0nn30.jpad.io.EditJournal;
+import com.github.an0nn30.jpad.io.FileEncoding;
+import com.github.an0nn30.jpad.io.IoExecutors;
+import com.github.an0nn30.jpad.io.LineDiff;
+import com.github.an0nn30.jpad.logging.Logger;
+import com.github.an0nn30.jpad.ui.TextAreaTabManager;
+import com.github.an0nn30.jpad.ui.components.TextArea;
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultEditorKit;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.ToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces a pattern across many files: first as a preview of every changed line, then for real, with a single
+ * undo for the whole operation.
+ * <p>
+ * The preview reads and rewrites each file in memory on the {@link IoExecutors#search() search executor};
+ * files that are open in a tab are taken from their document rather than from disk. Applying the changes
+ * updates open documents in place with small undoable edits, as a reload does, and writes the other files
+ * with {@link AtomicFileWriter} on the {@link IoExecutors#read() read executor}, several at a time. Files that
+ * changed since the preview are skipped. If any write fails, the files already written are restored, so the
+ * project is either fully replaced or left as it was.
+ * </p>
+ */
+public final class FileReplace {
+
+    private FileReplace() {
+    }
+
+    /**
+     * A changed line, as shown in the preview.
+     *
+     * @param line   the 0-based line number in the old text.
+     * @param before the line before the replacement.
+     * @param after  the line after the replacement.
+     */
+    public record Hunk(int line, String before, String after) {
+    }
+
+    /**
+     * The replacement planned for one file.
+     *
+     * @param file          the file.
+     * @param hunks         the changed lines, in order.
+     * @param replacements  the number of matches replaced.
+     * @param oldText       the text the preview was computed from, with '\n' line separators.
+     * @param newText       the text after the replacement.
+     * @param edits         the edits that turn the old text into the new one, from the end of the text to its start.
+     * @param encoding      the encoding to write the file with.
+     * @param lineSeparator the line separator to write the file with.
+     * @param lastModified  the modification time of the file when it was read, or 0 if the text came from an open document.
+     */
+    public record FileChange(File file, List<Hunk> hunks, int replacements, String oldText, String newText,
+                             List<LineDiff.Edit> edits, FileEncoding encoding, String lineSeparator,
+                             long lastModified) {
+    }
+
+    /**
+     * Text captured on the EDT from a document that is open in a tab.
+     */
+    private record Snapshot(String text, FileEncoding encoding, String lineSeparator) {
+    }
+
+    /**
+     * Computes the replacement of a pattern in each file. Must be called on the EDT.
+     *
+     * @param files       the files to replace in, typically those a search found matches in.
+     * @param pattern     the pattern to replace.
+     * @param replacement the replacement; {@code $1} and similar refer to groups only if {@code regularExpression} is set.
+     * @param regularExpression whether the replacement may refer to groups of the pattern.
+     * @return a future completed on the EDT with the planned changes, in the order of the files;
+     * files without matches, that cannot be read or that were not valid in their encoding are left out.
+     */
+    public static CompletableFuture<List<FileChange>> preview(List<File> files, Pattern pattern, String replacement,
+                                                              boolean regularExpression) {
+        String expandedReplacement = regularExpression ? replacement : Matcher.quoteReplacement(replacement);
+        List<CompletableFuture<FileChange>> futures = new ArrayList<>();
+        for (File file : files) {
+            RSyntaxDocument document = DocumentRegistry.get(file);
+            if (document != null && DocumentLoader.hasReplacedInput(document)) {
+                Logger.getInstance().error(FileReplace.class, "Skipping " + file + ": it is not valid "
+                        + FileEncoding.of(document).charset().name());
+                continue;
+            }
+            Snapshot snapshot = snapshotOf(document);
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return plan(file, snapshot, pattern, expandedReplacement);
+                } catch (IOException | BadLocationException e) {
+                    Logger.getInstance().error(FileReplace.class, "Error reading " + file + ": " + e.getMessage());
+                    return null;
+                }
+            }, IoExecutors.search()));
+        }
+        return onEdt(CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])))
+                .thenApply(ignored -> futures.stream().map(CompletableFuture::join).filter(Objects::nonNull).toList());
+    }
+
+    /**
+     * Returns a future that completes on the EDT, normally or exceptionally, once the given one has.
+     */
+    private static <T> CompletableFuture<T> onEdt(CompletableFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, failure) -> SwingUtilities.invokeLater(() -> {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(value);
+            }
+        }));
+        return result;
+    }
+
+    private static Snapshot snapshotOf(RSyntaxDocument document) {
+        if (document == null) {
+            return null;
+        }
+        try {
+            return new Snapshot(document.getText(0, document.getLength()), FileEncoding.of(document),
+                    lineSeparatorOf(document));
+        } catch (BadLocationException e) {
+            return null;
+        }
+    }
+
+    private static String lineSeparatorOf(RSyntaxDocument document) {
+        Object separator = document.getProperty(DefaultEditorKit.EndOfLineStringProperty);
+        return separator instanceof String s ? s : System.lineSeparator();
+    }
+
+    /**
+     * Reads a file, unless it is open, and replaces every match in its text.
+     *
+     * @return the change, or null if nothing matched.
+     */
+    private static FileChange plan(File file, Snapshot snapshot, Pattern pattern, String replacement)
+            throws IOException, BadLocationException {
+        long lastModified = 0;
+        if (snapshot == null) {
+            lastModified = file.lastModified();
+            try (FileChannel channel = FileChannel.open(file.toPath())) {
+                RSyntaxDocument loaded = DocumentLoader.load(channel, null);
+                if (DocumentLoader.hasReplacedInput(loaded)) {
+                    // Writing the file back would replace its invalid bytes.
+                    throw new IOException("not valid " + FileEncoding.of(loaded).charset().name());
+                }
+                snapshot = new Snapshot(loaded.getText(0, loaded.getLength()), FileEncoding.of(loaded),
+                        lineSeparatorOf(loaded));
+            }
+        }
+        String oldText = snapshot.text();
+        Matcher matcher = pattern.matcher(oldText);
+        StringBuilder newText = new StringBuilder(oldText.length());
+        List<LineDiff.Edit> edits = new ArrayList<>();
+        int appended = 0;
+        while (matcher.find()) {
+            int start = matcher.start();
+            if (matcher.end() == start) {
+                // Empty matches are not shown in the search results either.
+                continue;
+            }
+            int replacementStart = newText.length() + (start - appended);
+            matcher.appendReplacement(newText, replacement);
+            appended = matcher.end();
+            edits.add(new LineDiff.Edit(start, appended - start, newText.substring(replacementStart)));
+        }
+        if (edits.isEmpty()) {
+            return null;
+        }
+        matcher.appendTail(newText);
+        List<Hunk> hunks = hunksOf(oldText, edits);
+        Collections.reverse(edits);
+        return new FileChange(file, hunks, edits.size(), oldText, newText.toString(), edits,
+                snapshot.encoding(), snapshot.lineSeparator(), lastModified);
+    }
+
+    /**
+     * Collects the lines changed by edits, given in ascending order. Edits on the same line share a hunk.
+     */
+    private static List<Hunk> hunksOf(String oldText, List<LineDiff.Edit> edits) {
+        List<Hunk> hunks = new ArrayList<>();
+        int line = 0;
+        int scanned = 0;
+        int i = 0;
+        while (i < edits.size()) {
+            int firstOffset = edits.get(i).offset();
+            for (; scanned < firstOffset; scanned++) {
+                if (oldText.charAt(scanned) == '\n') {
+                    line++;
+                }
+            }
+            int lineStart = oldText.lastIndexOf('\n', firstOffset - 1) + 1;
+            StringBuilder after = new StringBuilder();
+            int position = lineStart;
+            int lineEnd;
+            do {
+                LineDiff.Edit edit = edits.get(i++);
+                after.append(oldText, position, edit.offset()).append(edit.text());
+                position = edit.offset() + edit.length();
+                lineEnd = oldText.indexOf('\n', position);
+                if (lineEnd < 0) {
+                    lineEnd = oldText.length();
+                }
+            } while (i < edits.size() && edits.get(i).offset() < lineEnd);
+            after.append(oldText, position, lineEnd);
+            hunks.add(new Hunk(line, oldText.substring(lineStart, lineEnd), after.toString()));
+        }
+        return hunks;
+    }
+
+    /**
+     * Applies planned changes. Must be called on the EDT.
+     * <p>
+     * Open documents that still hold the previewed text are updated in place; those without unsaved changes are
+     * also written to disk, the others are left for the user to save. Closed files that were not modified since
+     * the preview are written. If a write fails, every file and document changed so far is restored and the
+     * future completes exceptionally.
+     * </p>
+     *
+     * @param changes the changes from {@link #preview}.
+     * @return a future completed on the EDT with the transaction, which can undo the replacement.
+     */
+    public static CompletableFuture<Transaction> apply(List<FileChange> changes) {
+        // A document that was closed since the preview may have been saved with other text, so it is not written.
+        return run(changes, true, change -> change.lastModified() != 0 ? change.lastModified() : -1)
+                .thenApply(result -> new Transaction(result.applied(), result.skipped(), result.modified()));
+    }
+
+    /**
+     * A file to write: the change, whether to write its new or its old text, and the modification time the file
+     * must still have, or 0 if it is written regardless.
+     */
+    private record Write(FileChange change, boolean forward, long expectedModified) {
+    }
+
+    /**
+     * The outcome of applying or undoing changes: the changes that were made, the files left alone because they
+     * were modified by something else, and the modification time of each file written.
+     */
+    private record Result(List<FileChange> applied, List<File> skipped, Map<File, Long> modified) {
+    }
+
+    /**
+     * Applies changes, or undoes them, to open documents right away and to files on the read executor.
+     *
+     * @param changes          the changes.
+     * @param forward          whether to replace the old text with the new one, or the new with the old.
+     * @param expectedModified gives the modification time a closed file must still have to be written.
+     */
+    private static CompletableFuture<Result> run(List<FileChange> changes, boolean forward,
+                                                 ToLongFunction<FileChange> expectedModified) {
+        List<File> skipped = new ArrayList<>();
+        Map<FileChange, RSyntaxDocument> documents = new IdentityHashMap<>();
+        Map<FileChange, DirtyTracker.SavePoint> savePoints = new IdentityHashMap<>();
+        List<Write> writes = new ArrayList<>();
+        for (FileChange change : changes) {
+            RSyntaxDocument document = DocumentRegistry.get(change.file());
+            if (document == null) {
+                writes.add(new Write(change, forward, expectedModified.applyAsLong(change)));
+                continue;
+            }
+            if (!holds(document, forward ? change.oldText() : change.newText())) {
+                skipped.add(change.file());
+                continue;
+            }
+            boolean saved = !DirtyTracker.isDirty(document);
+            update(document, forward ? change.edits() : inverseEdits(change));
+            documents.put(change, document);
+            if (saved) {
+                savePoints.put(change, DirtyTracker.attach(document).savePoint());
+                writes.add(new Write(change, forward, 0));
+            }
+        }
+        return onEdt(writeAll(writes)).handle((modified, failure) -> {
+            if (failure != null) {
+                documents.forEach((change, document) -> {
+                    if (holds(document, forward ? change.newText() : change.oldText())) {
+                        update(document, forward ? inverseEdits(change) : change.edits());
+                    }
+                });
+                throw failure instanceof CompletionException c ? c : new CompletionException(failure);
+            }
+            List<FileChange> applied = new ArrayList<>();
+            for (FileChange change : changes) {
+                RSyntaxDocument document = documents.get(change);
+                if (document != null) {
+                    DirtyTracker.SavePoint savePoint = savePoints.get(change);
+                    if (savePoint != null) {
+                        markSaved(document, change.file(), savePoint);
+                    }
+                    applied.add(change);
+                } else if (modified.containsKey(change.file())) {
+                    applied.add(change);
+                } else if (!skipped.contains(change.file())) {
+                    skipped.add(change.file());
+                }
+            }
+            return new Result(applied, skipped, modified);
+        });
+    }
+
+    /**
+     * Writes files in parallel. A closed file whose modification time is not the expected one is not written.
+     * If a write fails, the files that were written are put back and the returned future fails.
+     *
+     * @return a future completed with the modification time of each file written.
+     */
+    private static CompletableFuture<Map<File, Long>> writeAll(List<Write> writes) {
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (Write write : writes) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                File file = write.change().file();
+                if (write.expectedModified() != 0 && file.lastModified() != write.expectedModified()) {
+                    return null;
+                }
+                write(write.change(), write.forward());
+                return file.lastModified();
+            }, IoExecutors.read()));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).handle((ignored, failure) -> {
+            if (failure == null) {
+                Map<File, Long> modified = new HashMap<>();
+                for (int i = 0; i < writes.size(); i++) {
+                    Long lastModified = futures.get(i).join();
+                    if (lastModified != null) {
+                        modified.put(writes.get(i).change().file(), lastModified);
+                    }
+                }
+                return modified;
+            }
+            for (int i = 0; i < writes.size(); i++) {
+                CompletableFuture<Long> future = futures.get(i);
+                if (!future.isCompletedExceptionally() && future.join() != null) {
+                    Write write = writes.get(i);
+                    try {
+                        write(write.change(), !write.forward());
+                    } catch (UncheckedIOException e) {
+                        // Already logged; restore the other files anyway.
+                    }
+                }
+            }
+            throw failure instanceof CompletionException c ? c : new CompletionException(failure);
+        });
+    }
+
+    private static void write(FileChange change, boolean forward) {
+        try {
+            AtomicFileWriter.write(change.file().toPath(), forward ? change.newText() : change.oldText(),
+                    change.encoding(), change.lineSeparator());
+        } catch (IOException e) {
+            Logger.getInstance().error(FileReplace.class, "Error writing " + change.file() + ": " + e.getMessage());
+            throw new UncheckedIOException("Error writing " + change.file().getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean holds(RSyntaxDocument document, String text) {
+        try {
+            return document.getLength() == text.length() && document.getText(0, document.getLength()).equals(text);
+        } catch (BadLocationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Applies edits to an open document as one undoable edit of a view showing it, if there is one.
+     */
+    private static void update(RSyntaxDocument document, List<LineDiff.Edit> edits) {
+        TextArea view = TextAreaTabManager.findView(document);
+        if (view != null) {
+            view.beginAtomicEdit();
+        }
+        try {
+            LineDiff.apply(document, edits);
+        } catch (BadLocationException e) {
+            Logger.getInstance().error(FileReplace.class, "Error updating document: " + e.getMessage());
+        } finally {
+            if (view != null) {
+                view.endAtomicEdit();
+            }
+        }
+    }
+
+    /**
+     * Records that an open document's text was written to its file by a replacement. If the document was edited
+     * while the file was being written, it stays modified.
+     */
+    private static void markSaved(RSyntaxDocument document, File file, DirtyTracker.SavePoint savePoint) {
+        EditJournal journal = EditJournal.of(document);
+        if (journal != null && savePoint.modificationCount() == DirtyTracker.attach(document).getModificationCount()) {
+            journal.checkpoint(file, journal.getSequence());
+        }
+        DirtyTracker.attach(document).markSaved(savePoint);
+    }
+
+    /**
+     * Computes the edits that undo a change: each replaced match, at its position in the new text, goes back to
+     * the text it replaced. Like the forward edits, they run from the end of the text to its start.
+     */
+    private static List<LineDiff.Edit> inverseEdits(FileChange change) {
+        List<LineDiff.Edit> forward = change.edits();
+        List<LineDiff.Edit> inverse = new ArrayList<>(forward.size());
+        int shift = 0;
+        for (int i = forward.size() - 1; i >= 0; i--) {
+            LineDiff.Edit edit = forward.get(i);
+            inverse.add(new LineDiff.Edit(edit.offset() + shift, edit.text().length(),
+                    change.oldText().substring(edit.offset(), edit.offset() + edit.length())));
+            shift += edit.text().length() - edit.length();
+        }
+        Collections.reverse(inverse);
+        return inverse;
+    }
+
+    /**
+     * A completed replacement, which can be undone once.
+     */
+    public static final class Transaction {
+
+        private final List<FileChange> changes;
+        private final List<File> skipped;
+        private final Map<File, Long> modified;
+        private boolean undone;
+
+        private Transaction(List<FileChange> changes, List<File> skipped, Map<File, Long> modified) {
+            this.changes = changes;
+            this.skipped = skipped;
+            this.modified = modified;
+        }
+
+        /**
+         * Returns the number of files that were changed.
+         *
+         * @return the file count.
+         */
+        public int getFileCount() {
+            return changes.size();
+        }
+
+        /**
+         * Returns the number of matches that were replaced.
+         *
+         * @return the replacement count.
+         */
+        public int getReplacementCount() {
+            return changes.stream().mapToInt(FileChange::replacements).sum();
+        }
+
+        /**
+         * Returns the files that were left alone because they changed after the preview.
+         *
+         * @return the skipped files.
+         */
+        public List<File> getSkipped() {
+            return skipped;
+        }
+
+        public boolean isUndone() {
+            return undone;
+        }
+
+        /**
+         * Restores every file the replacement changed. Must be called on the EDT.
+         * <p>
+         * Open documents that still hold the replaced text get the old text back in place, and are written
+         * if they have no other unsaved changes. Closed files are restored unless they were modified after the
+         * replacement; such files are left alone and reported.
+         * </p>
+         *
+         * @return a future completed on the EDT with the files that could not be restored.
+         */
+        public CompletableFuture<List<File>> undo() {
+            undone = true;
+            return run(changes, false, change -> modified.getOrDefault(change.file(), -1L))
+                    .handle((result, failure) -> {
+                        if (failure != null) {
+                            undone = false;
+                            throw failure instanceof CompletionException c ? c : new CompletionException(failure);
+                        }
+                        return result.skipped();
+                    });
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.github.an0nn30.jpad.ui.search;
+
+import com.github.an0nn30.jpad.io.EncodingDetector;
+import com.github.an0nn30.jpad.io.FileEncoding;
+import com.github.an0nn30.jpad.io.IoExecutors;
+import com.github.an0nn30.jpad.logging.Logger;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * A search for a pattern across many files, running on the {@link IoExecutors#search() search executor}.
+ * <p>
+ * Each file is a separate task. Small files are read into a per-thread buffer and larger ones are
+ * memory-mapped; both are decoded into a per-thread char buffer, so a search allocates little beyond its
+ * results. Binary files and files at or above the large-file threshold are skipped. Results are handed to
+ * the {@link Listener} on the EDT as files finish, in batches, until {@value #MAX_MATCHES} matches have
+ * been found or the search is {@link #cancel() cancelled}.
+ * </p>
+ */
+public class FileSearch {
+
+    /**
+     * The most matches a search reports.
+     */
+    public static final int MAX_MATCHES = 5000;
+
+    // Files larger than this are memory-mapped instead of read into the per-thread buffer.
+    private static final int MAPPED_THRESHOLD = 256 * 1024;
+    // Per-thread char buffers are kept up to this size; larger files get a buffer of their own.
+    private static final int MAX_POOLED_CHARS = 4 * 1024 * 1024;
+    private static final int PREVIEW_LENGTH = 200;
+    private static final int PREVIEW_CONTEXT = 60;
+
+    private static final ThreadLocal<ByteBuffer> BYTES = ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAPPED_THRESHOLD));
+    private static final ThreadLocal<CharBuffer> CHARS = ThreadLocal.withInitial(() -> CharBuffer.allocate(MAPPED_THRESHOLD));
+
+    /**
+     * Receives the results of a search. Called on the EDT, and never after the search was cancelled.
+     */
+    public interface Listener {
+        /**
+         * Called with the files that matched since the last call.
+         *
+         * @param results the files and their matches.
+         */
+        void found(List<FileResult> results);
+
+        /**
+         * Called once, after the last file has been searched.
+         *
+         * @param matchCount the number of matches found.
+         * @param truncated  whether the search stopped at {@link #MAX_MATCHES} matches.
+         */
+        void finished(int matchCount, boolean truncated);
+    }
+
+    /**
+     * The matches in one file.
+     *
+     * @param file    the file.
+     * @param matches the matches, in the order they occur in the file.
+     */
+    public record FileResult(File file, List<Match> matches) {
+    }
+
+    /**
+     * A match within a file.
+     *
+     * @param line          the 0-based line of the match.
+     * @param column        the column of the match within its line.
+     * @param length        the length of the match.
+     * @param preview       the text of the line around the match, at most {@value #PREVIEW_LENGTH} characters.
+     * @param previewColumn the column of the match within the preview.
+     */
+    public record Match(int line, int column, int length, String preview, int previewColumn) {
+    }
+
+    private final Pattern pattern;
+    private final Listener listener;
+    private final long maxFileSize;
+    private final List<Future<?>> tasks = new ArrayList<>();
+    private final Queue<FileResult> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean deliveryScheduled = new AtomicBoolean();
+    private final AtomicInteger remainingFiles;
+    private final AtomicInteger matchCount = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile boolean truncated;
+    private boolean finished;
+
+    private FileSearch(List<File> files, Pattern pattern, long maxFileSize, Listener listener) {
+        this.pattern = pattern;
+        this.listener = listener;
+        this.maxFileSize = maxFileSize;
+        this.remainingFiles = new AtomicInteger(files.size());
+    }
+
+    /**
+     * Starts searching files for a pattern.
+     *
+     * @param files       the files to search.
+     * @param pattern     the pattern to find.
+     * @param maxFileSize files of this size or larger are skipped.
+     * @param listener    the listener for the results.
+     * @return the running search.
+     */
+    public static FileSearch start(List<File> files, Pattern pattern, long maxFileSize, Listener listener) {
+        FileSearch search = new FileSearch(files, pattern, maxFileSize, listener);
+        if (files.isEmpty()) {
+            search.scheduleDelivery();
+        }
+        for (File file : files) {
+            search.tasks.add(IoExecutors.search().submit(() -> search.searchFile(file)));
+        }
+        return search;
+    }
+
+    /**
+     * Stops the search. Files that are being searched are abandoned and the listener is not called again.
+     * Must be called on the EDT.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (Future<?> task : tasks) {
+            task.cancel(false);
+        }
+    }
+
+    private void searchFile(File file) {
+        try {
+            if (cancelled || truncated) {
+                return;
+            }
+            List<Match> matches = search(file);
+            if (matches != null && !matches.isEmpty()) {
+                pending.add(new FileResult(file, matches));
+                scheduleDelivery();
+            }
+        } catch (IOException | RuntimeException e) {
+            Logger.getInstance().error(FileSearch.class, "Error searching " + file + ": " + e.getMessage());
+        } finally {
+            if (remainingFiles.decrementAndGet() == 0) {
+                scheduleDelivery();
+            }
+        }
+    }
+
+    /**
+     * Reads, decodes and searches one file.
+     *
+     * @return the matches, or null if the file was skipped.
+     */
+    private List<Match> search(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            long size = channel.size();
+            if (size == 0 || size >= maxFileSize || EncodingDetector.isBinary(channel)) {
+                return null;
+            }
+            FileEncoding encoding = EncodingDetector.detect(channel);
+            ByteBuffer bytes;
+            if (size > MAPPED_THRESHOLD) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                bytes = BYTES.get();
+                bytes.clear();
+                while (bytes.position() < size && channel.read(bytes) >= 0) {
+                    // Keep reading until the whole file is in the buffer.
+                }
+                bytes.flip();
+            }
+            bytes.position(Math.min(bytes.limit(), encoding.bomBytes().length));
+            return match(decode(bytes, encoding));
+        }
+    }
+
+    private static CharBuffer decode(ByteBuffer bytes, FileEncoding encoding) {
+        CharsetDecoder decoder = encoding.charset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        int needed = (int) Math.min(Integer.MAX_VALUE - 8, (long) Math.ceil(bytes.remaining() * (double) decoder.maxCharsPerByte()));
+        CharBuffer chars = CHARS.get();
+        if (chars.capacity() < needed) {
+            chars = CharBuffer.allocate(needed);
+            if (needed <= MAX_POOLED_CHARS) {
+                CHARS.set(chars);
+            }
+        }
+        chars.clear();
+        decoder.decode(bytes, chars, true);
+        decoder.flush(chars);
+        chars.flip();
+        return chars;
+    }
+
+    private List<Match> match(CharBuffer text) {
+        List<Match> matches = new ArrayList<>();
+        // Empty matches, e.g. of "^", cannot be shown and are skipped by the scanner.
+        MatchScanner scanner = new MatchScanner(pattern, text);
+        int line = 0;
+        int lineStart = 0;
+        int scanned = 0;
+        while (scanner.next()) {
+            if (cancelled) {
+                return null;
+            }
+            int start = scanner.start();
+            for (; scanned < start; scanned++) {
+                if (text.get(scanned) == '\n') {
+                    line++;
+                    lineStart = scanned + 1;
+                }
+            }
+            matches.add(createMatch(text, line, lineStart, start, scanner.end() - start));
+            if (matchCount.incrementAndGet() >= MAX_MATCHES) {
+                truncated = true;
+                break;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Creates a match with a preview of its line, cut around the match if the line is long.
+     */
+    private static Match createMatch(CharBuffer text, int line, int lineStart, int start, int length) {
+        int lineEnd = start;
+        while (lineEnd < text.limit() && text.get(lineEnd) != '\n' && text.get(lineEnd) != '\r') {
+            lineEnd++;
+        }
+        int previewStart = Math.max(lineStart, Math.min(start - PREVIEW_CONTEXT, lineEnd - PREVIEW_LENGTH));
+        int previewEnd = Math.min(lineEnd, previewStart + PREVIEW_LENGTH);
+        String preview = text.subSequence(previewStart, previewEnd).toString();
+        return new Match(line, start - lineStart, length, preview, start - previewStart);
+    }
+
+    /**
+     * Hands the collected results to the listener on the EDT, coalescing results that arrive while a
+     * delivery is already pending.
+     */
+    private void scheduleDelivery() {
+        if (deliveryScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::deliver);
+        }
+    }
+
+    private void deliver() {
+        deliveryScheduled.set(false);
+        if (cancelled) {
+            return;
+        }
+        List<FileResult> results = new ArrayList<>();
+        FileResult result;
+        while ((result = pending.poll()) != null) {
+            results.add(result);
+        }
+        if (!results.isEmpty()) {
+            listener.found(results);
+        }
+        if (!finished && remainingFiles.get() == 0 && pending.isEmpty()) {
+            finished = true;
+            listener.finished(Math.min(matchCount.get(), MAX_MATCHES), truncated);
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.github.an0nn30.jpad.ui.search;
+
+import com.github.an0nn30.jpad.settings.Settings;
+import com.github.an0nn30.jpad.ui.EditorFrame;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeCellRenderer;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
+import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A dialog that searches the text of all files in the project.
+ * <p>
+ * The files come from the {@link ProjectFileSearchIndex}, which leaves out files ignored by git. A
+ * {@link FileSearch} runs after a short pause in typing; results appear in a tree, grouped by file, while
+ * the search is still running. Changing the query cancels the running search. Double-clicking a match
+ * opens its file with the match selected.
+ * </p>
+ * <p>
+ * Replace All previews every changed line of the files that matched and, once confirmed, rewrites them with
+ * {@link FileReplace}. The last replacement can be undone from the dialog.
+ * </p>
+ */
+public class FindInFilesDialog extends JDialog {
+
+    private static final int SEARCH_DELAY = 300; // milliseconds
+
+    private final EditorFrame editorFrame;
+    private final JTextField searchField;
+    private final JTextField replaceField;
+    private final JButton replaceButton;
+    private final JButton undoButton;
+    private final JCheckBox matchCaseBox;
+    private final JCheckBox wholeWordBox;
+    private final JCheckBox regexBox;
+    private final JLabel statusLabel;
+    private final DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode();
+    private final DefaultTreeModel treeModel = new DefaultTreeModel(rootNode);
+    private final JTree resultTree;
+    private final Timer searchTimer;
+    private FileSearch search;
+    private Pattern searchPattern;
+    private boolean searchFinished;
+
+    // The last replacement, kept across dialogs so that it can be undone after the dialog was closed.
+    private static FileReplace.Transaction lastReplace;
+
+    /**
+     * A result tree node for a match, which knows its file.
+     */
+    private record MatchNode(File file, FileSearch.Match match) {
+    }
+
+    public FindInFilesDialog(EditorFrame owner) {
+        super(owner, "Find in Files", false);
+        this.editorFrame = owner;
+        setLayout(new BorderLayout());
+        setSize(700, 500);
+        setLocationRelativeTo(owner);
+
+        searchField = new JTextField();
+        matchCaseBox = new JCheckBox("Match Case");
+        wholeWordBox = new JCheckBox("Whole Word");
+        regexBox = new JCheckBox("Regular Expression");
+        JPanel options = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
+        options.add(matchCaseBox);
+        options.add(wholeWordBox);
+        options.add(regexBox);
+        replaceField = new JTextField();
+        replaceButton = new JButton("Replace All...");
+        replaceButton.setEnabled(false);
+        replaceButton.addActionListener(e -> previewReplace());
+        undoButton = new JButton("Undo Replace");
+        undoButton.setEnabled(lastReplace != null && !lastReplace.isUndone());
+        undoButton.addActionListener(e -> undoReplace());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 6, 0));
+        buttons.add(replaceButton);
+        buttons.add(undoButton);
+        JPanel replacePanel = new JPanel(new BorderLayout(6, 0));
+        replacePanel.add(new JLabel("Replace with:"), BorderLayout.WEST);
+        replacePanel.add(replaceField, BorderLayout.CENTER);
+        replacePanel.add(buttons, BorderLayout.EAST);
+        JPanel queryPanel = new JPanel(new BorderLayout());
+        queryPanel.add(searchField, BorderLayout.NORTH);
+        queryPanel.add(options, BorderLayout.CENTER);
+        queryPanel.add(replacePanel, BorderLayout.SOUTH);
+        add(queryPanel, BorderLayout.NORTH);
+
+        resultTree = new JTree(treeModel);
+        resultTree.setRootVisible(false);
+        resultTree.setShowsRootHandles(true);
+        resultTree.setCellRenderer(new ResultCellRenderer());
+        add(new JScrollPane(resultTree), BorderLayout.CENTER);
+
+        statusLabel = new JLabel(" ");
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+        add(statusLabel, BorderLayout.SOUTH);
+
+        searchTimer = new Timer(SEARCH_DELAY, e -> startSearch());
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+        });
+        matchCaseBox.addActionListener(e -> startSearch());
+        wholeWordBox.addActionListener(e -> startSearch());
+        regexBox.addActionListener(e -> startSearch());
+
+        searchField.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_DOWN && resultTree.getRowCount() > 0) {
+                    resultTree.requestFocusInWindow();
+                    resultTree.setSelectionRow(0);
+                } else if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+                    dispose();
+                }
+            }
+        });
+        resultTree.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ENTER) {
+                    openSelectedMatch();
+                }
+            }
+        });
+        resultTree.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    openSelectedMatch();
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels the running search and starts one for the current query.
+     */
+    private void startSearch() {
+        clearResults();
+        String text = searchField.getText();
+        if (text.isEmpty()) {
+            statusLabel.setText(" ");
+            return;
+        }
+        List<File> files = ProjectFileSearchIndex.getIndexedFiles();
+        if (files == null || files.isEmpty()) {
+            statusLabel.setText(ProjectFileSearchIndex.isIndexingInProgress()
+                    ? "The project is still being indexed." : "Open a project folder to search its files.");
+            return;
+        }
+        Pattern pattern;
+        try {
+            pattern = new FindInFilesQuery(text, matchCaseBox.isSelected(), wholeWordBox.isSelected(),
+                    regexBox.isSelected()).toPattern();
+        } catch (PatternSyntaxException e) {
+            statusLabel.setText("Invalid regular expression: " + e.getDescription());
+            return;
+        }
+        searchPattern = pattern;
+        statusLabel.setText("Searching " + files.size() + " files…");
+        search = FileSearch.start(files, pattern, Settings.getInstance().getLargeFileThresholdBytes(),
+                new FileSearch.Listener() {
+                    @Override
+                    public void found(List<FileSearch.FileResult> results) {
+                        addResults(results);
+                    }
+
+                    @Override
+                    public void finished(int matchCount, boolean truncated) {
+                        String status = String.format("%,d matches in %,d files", matchCount, rootNode.getChildCount());
+                        statusLabel.setText(truncated ? status + " (stopped at " + FileSearch.MAX_MATCHES + ")" : status);
+                        searchFinished = true;
+                        replaceButton.setEnabled(matchCount > 0);
+                    }
+                });
+    }
+
+    /**
+     * Cancels the running search and empties the result tree.
+     */
+    private void clearResults() {
+        searchTimer.stop();
+        if (search != null) {
+            search.cancel();
+            search = null;
+        }
+        searchPattern = null;
+        searchFinished = false;
+        replaceButton.setEnabled(false);
+        rootNode.removeAllChildren();
+        treeModel.reload();
+    }
+
+    private void addResults(List<FileSearch.FileResult> results) {
+        for (FileSearch.FileResult result : results) {
+            DefaultMutableTreeNode fileNode = new DefaultMutableTreeNode(result);
+            for (FileSearch.Match match : result.matches()) {
+                fileNode.add(new DefaultMutableTreeNode(new MatchNode(result.file(), match), false));
+            }
+            treeModel.insertNodeInto(fileNode, rootNode, rootNode.getChildCount());
+            resultTree.expandPath(new TreePath(fileNode.getPath()));
+        }
+    }
+
+    private void openSelectedMatch() {
+        TreePath path = resultTree.getSelectionPath();
+        if (path == null) {
+            return;
+        }
+        Object value = ((DefaultMutableTreeNode) path.getLastPathComponent()).getUserObject();
+        if (value instanceof MatchNode node) {
+            FileSearch.Match match = node.match();
+            editorFrame.getTabManager().openFileAt(node.file(), match.line(), match.column(), match.length());
+        } else if (value instanceof FileSearch.FileResult result) {
+            editorFrame.getTabManager().openFile(result.file());
+        }
+    }
+
+    /**
+     * Computes the replacement in every file that matched and shows it for confirmation.
+     */
+    private void previewReplace() {
+        if (!searchFinished || searchPattern == null) {
+            return;
+        }
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < rootNode.getChildCount(); i++) {
+            Object value = ((DefaultMutableTreeNode) rootNode.getChildAt(i)).getUserObject();
+            files.add(((FileSearch.FileResult) value).file());
+        }
+        replaceButton.setEnabled(false);
+        statusLabel.setText("Preparing the replacement…");
+        FileReplace.preview(files, searchPattern, replaceField.getText(), regexBox.isSelected())
+                .whenComplete((changes, failure) -> {
+                    replaceButton.setEnabled(searchFinished);
+                    if (failure != null) {
+                        showReplaceError("Replace failed; no files were changed.", failure);
+                    } else if (changes.isEmpty()) {
+                        statusLabel.setText("Nothing to replace.");
+                    } else if (confirmReplace(changes)) {
+                        applyReplace(changes);
+                    } else {
+                        statusLabel.setText(" ");
+                    }
+                });
+    }
+
+    /**
+     * Shows every changed line and asks whether to apply the replacement.
+     */
+    private boolean confirmReplace(List<FileReplace.FileChange> changes) {
+        DefaultMutableTreeNode previewRoot = new DefaultMutableTreeNode();
+        int replacements = 0;
+        for (FileReplace.FileChange change : changes) {
+            DefaultMutableTreeNode fileNode = new DefaultMutableTreeNode(change);
+            for (FileReplace.Hunk hunk : change.hunks()) {
+                fileNode.add(new DefaultMutableTreeNode(hunk, false));
+            }
+            previewRoot.add(fileNode);
+            replacements += change.replacements();
+        }
+        JTree previewTree = new JTree(previewRoot);
+        previewTree.setRootVisible(false);
+        previewTree.setShowsRootHandles(true);
+        previewTree.setRowHeight(0);
+        previewTree.setCellRenderer(new ResultCellRenderer());
+        for (int row = 0; row < previewTree.getRowCount(); row++) {
+            previewTree.expandRow(row);
+        }
+        JScrollPane scrollPane = new JScrollPane(previewTree);
+        scrollPane.setPreferredSize(new Dimension(650, 400));
+        JPanel panel = new JPanel(new BorderLayout(0, 6));
+        panel.add(new JLabel(String.format("Replace %,d matches in %,d files?", replacements, changes.size())),
+                BorderLayout.NORTH);
+        panel.add(scrollPane, BorderLayout.CENTER);
+        Object[] choices = {"Replace", "Cancel"};
+        return JOptionPane.showOptionDialog(this, panel, "Replace in Files", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE, null, choices, choices[0]) == 0;
+    }
+
+    private void applyReplace(List<FileReplace.FileChange> changes) {
+        statusLabel.setText("Replacing…");
+        FileReplace.apply(changes).whenComplete((transaction, failure) -> {
+            if (failure != null) {
+                showReplaceError("Replace failed; no files were changed.", failure);
+                return;
+            }
+            lastReplace = transaction;
+            undoButton.setEnabled(true);
+            String status = String.format("Replaced %,d matches in %,d files", transaction.getReplacementCount(),
+                    transaction.getFileCount());
+            if (!transaction.getSkipped().isEmpty()) {
+                status += String.format("; %,d files changed since the preview were skipped",
+                        transaction.getSkipped().size());
+            }
+            // The results no longer match the files; search again to see what is left.
+            clearResults();
+            statusLabel.setText(status);
+        });
+    }
+
+    private void undoReplace() {
+        FileReplace.Transaction transaction = lastReplace;
+        if (transaction == null || transaction.isUndone()) {
+            return;
+        }
+        undoButton.setEnabled(false);
+        statusLabel.setText("Undoing the replacement…");
+        transaction.undo().whenComplete((conflicts, failure) -> {
+            if (failure != null) {
+                undoButton.setEnabled(true);
+                showReplaceError("Undo failed; no files were changed.", failure);
+                return;
+            }
+            String status = conflicts.isEmpty() ? "Replacement undone"
+                    : String.format("Replacement undone; %,d files changed since then were left alone", conflicts.size());
+            clearResults();
+            statusLabel.setText(status);
+        });
+    }
+
+    private void showReplaceError(String message, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        statusLabel.setText(" ");
+        JOptionPane.showMessageDialog(this, message + "\n" + cause.getMessage(),
+                "Error", JOptionPane.ERROR_MESSAGE);
+    }
+
+    @Override
+    public void dispose() {
+        searchTimer.stop();
+        if (search != null) {
+            search.cancel();
+            search = null;
+        }
+        super.dispose();
+    }
+
+    /**
+     * Returns a file's path relative to the project root, or its absolute path if it is outside the project.
+     */
+    private String displayPath(File file) {
+        File root = editorFrame.getDirectoryTree() != null ? editorFrame.getDirectoryTree().getRootDirectory() : null;
+        String filePath = file.getAbsolutePath();
+        if (root != null && filePath.startsWith(root.getAbsolutePath() + File.separator)) {
+            return filePath.substring(root.getAbsolutePath().length() + 1);
+        }
+        return filePath;
+    }
+
+    /**
+     * Renders file nodes as their project-relative path and match count, and match nodes as their line number
+     * and a preview with the match in bold.
+     */
+    private class ResultCellRenderer extends DefaultTreeCellRenderer {
+        @Override
+        public Component getTreeCellRendererComponent(JTree tree, Object value, boolean selected, boolean expanded,
+                                                      boolean leaf, int row, boolean hasFocus) {
+            super.getTreeCellRendererComponent(tree, value, selected, expanded, leaf, row, hasFocus);
+            Object userObject = ((DefaultMutableTreeNode) value).getUserObject();
+            if (userObject instanceof FileSearch.FileResult result) {
+                setText(displayPath(result.file()) + " (" + result.matches().size() + ")");
+                setIcon(getDefaultClosedIcon());
+            } else if (userObject instanceof FileReplace.FileChange change) {
+                setText(displayPath(change.file()) + " (" + change.replacements() + ")");
+                setIcon(getDefaultClosedIcon());
+            } else if (userObject instanceof FileReplace.Hunk hunk) {
+                setText("<html>" + (hunk.line() + 1) + ": <s>" + escape(hunk.before()) + "</s><br>"
+                        + (hunk.line() + 1) + ": " + escape(hunk.after()) + "</html>");
+                setIcon(null);
+            } else if (userObject instanceof MatchNode node) {
+                FileSearch.Match match = node.match();
+                String preview = match.preview();
+                int start = match.previewColumn();
+                int end = Math.min(preview.length(), start + match.length());
+                setText("<html>" + (match.line() + 1) + ": " + escape(preview.substring(0, start))
+                        + "<b>" + escape(preview.substring(start, end)) + "</b>" + escape(preview.substring(end))
+                        + "</html>");
+                setIcon(null);
+            }
+            return this;
+        }
+
+        private String escape(String text) {
+            return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\t", "    ")
+                    .replace("\n", " \u21B5 ");
+        }
+    }
+}
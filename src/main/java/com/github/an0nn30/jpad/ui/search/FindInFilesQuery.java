@@ -0,0 +1,31 @@
+package com.github.an0nn30.jpad.ui.search;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * What to search for across the files of a project.
+ *
+ * @param text              the text or regular expression to find.
+ * @param matchCase         whether the case of letters must match.
+ * @param wholeWord         whether matches must start and end at word boundaries.
+ * @param regularExpression whether the text is a regular expression rather than literal text.
+ */
+public record FindInFilesQuery(String text, boolean matchCase, boolean wholeWord, boolean regularExpression) {
+
+    /**
+     * Compiles the query into a pattern, or returns it from the {@link PatternCache}. A plain-text query is quoted,
+     * which lets a {@link MatchScanner} search for it without the regular expression engine.
+     *
+     * @return the pattern.
+     * @throws PatternSyntaxException if the query is an invalid regular expression.
+     */
+    public Pattern toPattern() {
+        String regex = regularExpression ? text : Pattern.quote(text);
+        if (wholeWord) {
+            regex = "\\b(?:" + regex + ")\\b";
+        }
+        int flags = Pattern.MULTILINE | (matchCase ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        return PatternCache.compile(regex, flags);
+    }
+}
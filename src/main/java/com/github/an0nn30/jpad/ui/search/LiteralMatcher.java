@@ -0,0 +1,169 @@
+package com.github.an0nn30.jpad.ui.search;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Finds a plain-text query with the Boyer-Moore-Horspool algorithm instead of a regular expression.
+ * <p>
+ * A literal query is compiled by {@link FindInFilesQuery#toPattern()} into a quoted pattern, which
+ * {@link #of(Pattern)} recognizes. The matcher then skips through the text by up to the length of the query at
+ * each step, comparing characters from the end of the query. Ignoring case folds each character the way
+ * {@link Pattern#CASE_INSENSITIVE} with {@link Pattern#UNICODE_CASE} does, so both find the same matches. The
+ * whole-word boundaries are left to the caller. A matcher is immutable and can be shared between threads.
+ * </p>
+ */
+final class LiteralMatcher {
+
+    private static final String QUOTE_START = "\\Q";
+    private static final String QUOTE_END = "\\E";
+    private static final String WORD_START = "\\b(?:";
+    private static final String WORD_END = ")\\b";
+    // The skip table is indexed by the low byte of a character; characters sharing it keep the smallest skip.
+    private static final int TABLE_SIZE = 256;
+    private static final char[] ASCII_FOLDED = new char[128];
+
+    static {
+        for (char c = 0; c < ASCII_FOLDED.length; c++) {
+            ASCII_FOLDED[c] = Character.toLowerCase(c);
+        }
+    }
+
+    private final String literal;
+    private final char[] needle;
+    private final boolean ignoreCase;
+    private final boolean wholeWord;
+    private final int[] skip = new int[TABLE_SIZE];
+
+    private LiteralMatcher(String literal, boolean ignoreCase, boolean wholeWord) {
+        this.literal = literal;
+        this.ignoreCase = ignoreCase;
+        this.wholeWord = wholeWord;
+        needle = literal.toCharArray();
+        if (ignoreCase) {
+            for (int i = 0; i < needle.length; i++) {
+                needle[i] = fold(needle[i]);
+            }
+        }
+        int last = needle.length - 1;
+        Arrays.fill(skip, needle.length);
+        for (int i = 0; i < last; i++) {
+            skip[needle[i] & (TABLE_SIZE - 1)] = last - i;
+        }
+    }
+
+    /**
+     * Returns a literal matcher for a pattern that only finds plain text.
+     *
+     * @param pattern the pattern.
+     * @return the matcher, or null if the pattern is a regular expression or uses flags the matcher cannot follow.
+     */
+    static LiteralMatcher of(Pattern pattern) {
+        String regex = pattern.pattern();
+        boolean wholeWord = regex.startsWith(WORD_START) && regex.endsWith(WORD_END);
+        if (wholeWord) {
+            regex = regex.substring(WORD_START.length(), regex.length() - WORD_END.length());
+        }
+        if (regex.length() <= QUOTE_START.length() + QUOTE_END.length()
+                || !regex.startsWith(QUOTE_START) || !regex.endsWith(QUOTE_END)) {
+            return null;
+        }
+        String literal = regex.substring(QUOTE_START.length(), regex.length() - QUOTE_END.length());
+        if (literal.contains(QUOTE_END)) {
+            // Pattern.quote splits such text into several quoted parts.
+            return null;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (Character.isSurrogate(literal.charAt(i))) {
+                return null;
+            }
+        }
+        int flags = pattern.flags() & ~Pattern.MULTILINE;
+        if (flags == 0) {
+            return new LiteralMatcher(literal, false, wholeWord);
+        }
+        if (flags == (Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)) {
+            return new LiteralMatcher(literal, true, wholeWord);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the length of every match.
+     *
+     * @return the length of the query.
+     */
+    int length() {
+        return needle.length;
+    }
+
+    /**
+     * Returns whether the pattern only matches whole words; the matches found by {@link #indexOf} must then be
+     * checked for word boundaries.
+     *
+     * @return true if the query is searched for as a whole word.
+     */
+    boolean isWholeWord() {
+        return wholeWord;
+    }
+
+    /**
+     * Finds the first occurrence of the query starting at or after an offset.
+     *
+     * @param text the text to search.
+     * @param from the offset to start from.
+     * @return the start of the occurrence, or -1 if there is none.
+     */
+    int indexOf(CharSequence text, int from) {
+        if (!ignoreCase && text instanceof String string) {
+            // String.indexOf is an intrinsic that compares many characters at once.
+            return string.indexOf(literal, from);
+        }
+        int last = needle.length - 1;
+        int end = text.length() - last;
+        int i = Math.max(0, from);
+        if (ignoreCase) {
+            while (i < end) {
+                char c = fold(text.charAt(i + last));
+                if (c == needle[last] && matchesFolded(text, i, last)) {
+                    return i;
+                }
+                i += skip[c & (TABLE_SIZE - 1)];
+            }
+        } else {
+            while (i < end) {
+                char c = text.charAt(i + last);
+                if (c == needle[last] && matches(text, i, last)) {
+                    return i;
+                }
+                i += skip[c & (TABLE_SIZE - 1)];
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(CharSequence text, int start, int last) {
+        for (int j = last - 1; j >= 0; j--) {
+            if (text.charAt(start + j) != needle[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matchesFolded(CharSequence text, int start, int last) {
+        for (int j = last - 1; j >= 0; j--) {
+            if (fold(text.charAt(start + j)) != needle[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Folds the case of a character as a case-insensitive Unicode pattern compares it.
+     */
+    private static char fold(char c) {
+        return c < ASCII_FOLDED.length ? ASCII_FOLDED[c] : Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
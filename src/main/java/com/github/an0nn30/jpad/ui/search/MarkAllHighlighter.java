@@ -0,0 +1,316 @@
+package com.github.an0nn30.jpad.ui.search;
+
+import com.github.an0nn30.jpad.logging.Logger;
+import org.fife.ui.rtextarea.DocumentRange;
+import org.fife.ui.rtextarea.RTextArea;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.Highlighter;
+import javax.swing.text.Segment;
+import java.awt.*;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The "mark all" highlights of one text area, added a little at a time and kept up to date while the text is edited.
+ * <p>
+ * When a search marks its matches, the ones in the viewport are highlighted at once and the rest are added in small
+ * batches from a timer, so the EDT stays free for typing and scrolling; matches that scroll into view are added
+ * first. Highlights move with the text like any other highlight. After an edit only the changed lines are
+ * searched again, and their highlights are replaced. Matches that were not highlighted yet when an edit happened
+ * are shifted to fit the new text.
+ * </p>
+ */
+public final class MarkAllHighlighter {
+
+    private static final String PROPERTY = "markAllHighlighter";
+    // Highlights added per timer tick once the viewport is done.
+    private static final int BATCH_SIZE = 500;
+    private static final int BATCH_DELAY_MS = 10;
+    // Changed lines longer than this are not searched again, to keep typing responsive.
+    private static final int MAX_RESCAN_LENGTH = 64 * 1024;
+
+    private final RTextArea textArea;
+    private final Timer fillTimer;
+    private final Highlighter.HighlightPainter painter;
+    // Highlight tags in document order; their offsets follow the edits.
+    private final List<Object> tags = new ArrayList<>();
+    private final DocumentListener documentListener = new DocumentListener() {
+        @Override
+        public void insertUpdate(DocumentEvent e) {
+            textChanged(e.getOffset(), 0, e.getLength());
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            textChanged(e.getOffset(), e.getLength(), 0);
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+            // Attribute changes do not move the text.
+        }
+    };
+    private final PropertyChangeListener documentSwapListener = e -> clear();
+    private Document document;
+    private Pattern pattern;
+    // Matches found by the search that have not been highlighted yet, in the coordinates of the searched text.
+    private List<DocumentRange> pending = List.of();
+    private final BitSet added = new BitSet();
+    private int nextPending;
+    // Edits made since the search, as (changed region start, old region end, length delta) triples.
+    private final List<int[]> shifts = new ArrayList<>();
+
+    private MarkAllHighlighter(RTextArea textArea) {
+        this.textArea = textArea;
+        this.painter = new DefaultHighlighter.DefaultHighlightPainter(textArea.getMarkAllHighlightColor());
+        this.fillTimer = new Timer(BATCH_DELAY_MS, e -> fill());
+        fillTimer.setRepeats(true);
+    }
+
+    /**
+     * Returns the highlighter of a text area, creating it on first use.
+     *
+     * @param textArea the text area.
+     * @return the text area's mark-all highlighter.
+     */
+    public static MarkAllHighlighter of(RTextArea textArea) {
+        Object highlighter = textArea.getClientProperty(PROPERTY);
+        if (highlighter instanceof MarkAllHighlighter markAllHighlighter) {
+            return markAllHighlighter;
+        }
+        MarkAllHighlighter created = new MarkAllHighlighter(textArea);
+        textArea.putClientProperty(PROPERTY, created);
+        return created;
+    }
+
+    /**
+     * Replaces the highlights with the given matches. Must be called on the EDT while the document still holds the
+     * text the matches were found in.
+     *
+     * @param pattern the pattern that was searched for, used to search edited lines again.
+     * @param matches the matches, in document order.
+     */
+    public void mark(Pattern pattern, List<DocumentRange> matches) {
+        clear();
+        if (matches.isEmpty()) {
+            return;
+        }
+        this.pattern = pattern;
+        this.document = textArea.getDocument();
+        document.addDocumentListener(documentListener);
+        textArea.addPropertyChangeListener("document", documentSwapListener);
+        pending = matches;
+        nextPending = 0;
+        fillViewport();
+        if (nextPending < pending.size()) {
+            fillTimer.start();
+        }
+    }
+
+    /**
+     * Removes all highlights and stops following edits.
+     */
+    public void clear() {
+        fillTimer.stop();
+        Highlighter highlighter = textArea.getHighlighter();
+        for (Object tag : tags) {
+            highlighter.removeHighlight(tag);
+        }
+        tags.clear();
+        pending = List.of();
+        added.clear();
+        shifts.clear();
+        pattern = null;
+        if (document != null) {
+            document.removeDocumentListener(documentListener);
+            textArea.removePropertyChangeListener("document", documentSwapListener);
+            document = null;
+        }
+    }
+
+    /**
+     * Returns the number of matches, highlighted or still to be highlighted.
+     *
+     * @return the match count.
+     */
+    public int getMatchCount() {
+        return tags.size() + pending.size() - added.cardinality();
+    }
+
+    /**
+     * Returns whether the highlights are those of a pattern equal to the given one.
+     *
+     * @param pattern the pattern.
+     * @return true if the pattern's matches are marked.
+     */
+    public boolean isMarking(Pattern pattern) {
+        return this.pattern != null && this.pattern.pattern().equals(pattern.pattern())
+                && this.pattern.flags() == pattern.flags();
+    }
+
+    private void fill() {
+        fillViewport();
+        int count = 0;
+        while (nextPending < pending.size() && count < BATCH_SIZE) {
+            if (!added.get(nextPending)) {
+                add(nextPending);
+                count++;
+            }
+            nextPending++;
+        }
+        if (nextPending >= pending.size()) {
+            fillTimer.stop();
+            pending = List.of();
+            added.clear();
+            shifts.clear();
+        }
+    }
+
+    /**
+     * Highlights the pending matches that lie in the visible part of the text area.
+     */
+    private void fillViewport() {
+        if (nextPending >= pending.size()) {
+            return;
+        }
+        Rectangle visible = textArea.getVisibleRect();
+        int first = originalOffset(textArea.viewToModel2D(new Point(visible.x, visible.y)));
+        int last = originalOffset(textArea.viewToModel2D(new Point(visible.x + visible.width, visible.y + visible.height)));
+        for (int i = Math.max(nextPending, firstEndingAfter(first)); i < pending.size(); i++) {
+            if (pending.get(i).getStartOffset() > last) {
+                break;
+            }
+            if (!added.get(i)) {
+                add(i);
+            }
+        }
+    }
+
+    /**
+     * Maps an offset in the current text back to the searched text, roughly; used only to find the viewport's
+     * matches, so an offset inside an edited region may land anywhere in that region.
+     */
+    private int originalOffset(int offset) {
+        for (int i = shifts.size() - 1; i >= 0; i--) {
+            int[] shift = shifts.get(i);
+            if (offset >= shift[1] + shift[2]) {
+                offset -= shift[2];
+            } else if (offset > shift[0]) {
+                offset = shift[0];
+            }
+        }
+        return offset;
+    }
+
+    private int firstEndingAfter(int offset) {
+        int low = 0;
+        int high = pending.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (pending.get(middle).getEndOffset() <= offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Highlights a pending match, moved to where its text is now. Matches in regions edited since the search are
+     * dropped; those regions were searched again when they were edited.
+     */
+    private void add(int index) {
+        added.set(index);
+        DocumentRange match = pending.get(index);
+        int start = match.getStartOffset();
+        int end = match.getEndOffset();
+        for (int[] shift : shifts) {
+            if (start >= shift[1]) {
+                start += shift[2];
+                end += shift[2];
+            } else if (end > shift[0]) {
+                return;
+            }
+        }
+        addHighlight(start, end);
+    }
+
+    private void addHighlight(int start, int end) {
+        try {
+            Object tag = textArea.getHighlighter().addHighlight(start, end, painter);
+            tags.add(insertionPoint(start), tag);
+        } catch (BadLocationException e) {
+            Logger.getInstance().error(MarkAllHighlighter.class, "Invalid mark-all range: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the index of the first highlight starting at or after the given offset.
+     */
+    private int insertionPoint(int offset) {
+        int low = 0;
+        int high = tags.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (((Highlighter.Highlight) tags.get(middle)).getStartOffset() < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Searches the lines touched by an edit again and replaces their highlights.
+     */
+    private void textChanged(int offset, int removedLength, int insertedLength) {
+        Element root = document.getDefaultRootElement();
+        int regionStart = root.getElement(root.getElementIndex(offset)).getStartOffset();
+        int regionEnd = Math.min(document.getLength(),
+                root.getElement(root.getElementIndex(offset + insertedLength)).getEndOffset());
+        int delta = insertedLength - removedLength;
+        if (nextPending < pending.size()) {
+            shifts.add(new int[]{regionStart, regionEnd - delta, delta});
+        }
+        int from = insertionPoint(regionStart);
+        int to = from;
+        while (to < tags.size() && ((Highlighter.Highlight) tags.get(to)).getStartOffset() < regionEnd) {
+            to++;
+        }
+        // A highlight that started before the region but reaches into it was cut by the edit as well.
+        if (from > 0 && ((Highlighter.Highlight) tags.get(from - 1)).getEndOffset() > regionStart) {
+            from--;
+        }
+        Highlighter highlighter = textArea.getHighlighter();
+        List<Object> removed = tags.subList(from, to);
+        for (Object tag : removed) {
+            highlighter.removeHighlight(tag);
+        }
+        removed.clear();
+        if (regionEnd - regionStart > MAX_RESCAN_LENGTH) {
+            return;
+        }
+        try {
+            Segment text = new Segment();
+            document.getText(regionStart, regionEnd - regionStart, text);
+            MatchScanner scanner = new MatchScanner(pattern, text);
+            while (scanner.next()) {
+                addHighlight(regionStart + scanner.start(), regionStart + scanner.end());
+            }
+        } catch (BadLocationException e) {
+            Logger.getInstance().error(MarkAllHighlighter.class, "Error updating mark-all highlights: " + e.getMessage());
+        }
+    }
+}
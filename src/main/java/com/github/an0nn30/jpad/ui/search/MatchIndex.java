@@ -0,0 +1,268 @@
+package com.github.an0nn30.jpad.ui.search;
+
+import com.github.an0nn30.jpad.logging.Logger;
+import com.github.an0nn30.jpad.settings.Settings;
+import org.fife.ui.rtextarea.DocumentRange;
+import org.fife.ui.rtextarea.RTextArea;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * All matches of a pattern in one text area, as sorted arrays of offsets, for "match 17 of 2,341" feedback and
+ * for moving between matches without searching again.
+ * <p>
+ * The matches are found on a background thread in a snapshot of the text, through a {@link CheckedText} so that a
+ * slow pattern is stopped by the search timeout. Looking up the match at or around an offset is a binary search.
+ * An index belongs to the text it was built from: the first edit to the document makes it {@link #isStale() stale}.
+ * </p>
+ */
+public final class MatchIndex {
+
+    private final RTextArea textArea;
+    private final Pattern pattern;
+    private final int[] starts;
+    private final int[] ends;
+    private final int count;
+    private final Document document;
+    private final Runnable onStale;
+    private boolean stale;
+    private final DocumentListener staleListener = new DocumentListener() {
+        @Override
+        public void insertUpdate(DocumentEvent e) {
+            markStale();
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            markStale();
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+            // Attribute changes do not move the text.
+        }
+    };
+
+    private MatchIndex(RTextArea textArea, Pattern pattern, int[] starts, int[] ends, int count, Runnable onStale) {
+        this.textArea = textArea;
+        this.pattern = pattern;
+        this.starts = starts;
+        this.ends = ends;
+        this.count = count;
+        this.document = textArea.getDocument();
+        this.onStale = onStale;
+        document.addDocumentListener(staleListener);
+    }
+
+    /**
+     * The matches found by a build's worker.
+     */
+    private record Found(int[] starts, int[] ends, int count) {
+    }
+
+    /**
+     * A running build of an index, which can be cancelled.
+     */
+    public static final class Build {
+        private final SwingWorker<Found, Void> worker;
+        private volatile boolean cancelled;
+
+        private Build(SwingWorker<Found, Void> worker) {
+            this.worker = worker;
+        }
+
+        /**
+         * Stops the build; its callback is not called. Must be called on the EDT.
+         */
+        public void cancel() {
+            cancelled = true;
+            worker.cancel(false);
+        }
+    }
+
+    /**
+     * Starts finding all matches of a pattern in a text area. Must be called on the EDT.
+     *
+     * @param textArea the text area.
+     * @param pattern  the pattern.
+     * @param onStale  called on the EDT when the document is edited during the build, or first edited after the
+     *                 index was built.
+     * @param callback called on the EDT with the index, or with null if the text changed during the build or the
+     *                 build timed out.
+     * @return the running build.
+     */
+    public static Build build(RTextArea textArea, Pattern pattern, Runnable onStale, Consumer<MatchIndex> callback) {
+        Document document = textArea.getDocument();
+        String text = textArea.getText();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Settings.getInstance().getSearchTimeoutSeconds());
+        boolean[] edited = new boolean[1];
+        DocumentListener editListener = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                edited[0] = true;
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                edited[0] = true;
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes do not move the text.
+            }
+        };
+        document.addDocumentListener(editListener);
+        Build[] build = new Build[1];
+        SwingWorker<Found, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Found doInBackground() {
+                MatchScanner scanner = new MatchScanner(pattern, new CheckedText(text, () -> build[0].cancelled, deadline));
+                int[] starts = new int[16];
+                int[] ends = new int[16];
+                int count = 0;
+                while (scanner.next()) {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                        ends = Arrays.copyOf(ends, count * 2);
+                    }
+                    starts[count] = scanner.start();
+                    ends[count] = scanner.end();
+                    count++;
+                }
+                return new Found(starts, ends, count);
+            }
+
+            @Override
+            protected void done() {
+                document.removeDocumentListener(editListener);
+                if (build[0].cancelled) {
+                    return;
+                }
+                try {
+                    Found found = get();
+                    if (edited[0]) {
+                        onStale.run();
+                        callback.accept(null);
+                        return;
+                    }
+                    callback.accept(new MatchIndex(textArea, pattern, found.starts(), found.ends(), found.count(), onStale));
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof CheckedText.TimeoutException)
+                            && !(e.getCause() instanceof CancellationException)) {
+                        Logger.getInstance().error(MatchIndex.class, "Counting matches failed: " + e.getCause());
+                    }
+                    callback.accept(null);
+                } catch (InterruptedException | CancellationException e) {
+                    callback.accept(null);
+                }
+            }
+        };
+        build[0] = new Build(worker);
+        worker.execute();
+        return build[0];
+    }
+
+    private void markStale() {
+        if (!stale) {
+            stale = true;
+            document.removeDocumentListener(staleListener);
+            onStale.run();
+        }
+    }
+
+    /**
+     * Stops following the document. Must be called when the index is no longer used.
+     */
+    public void dispose() {
+        stale = true;
+        document.removeDocumentListener(staleListener);
+    }
+
+    /**
+     * Returns whether this index was built for the given text area's current text and an equal pattern.
+     *
+     * @param textArea the text area.
+     * @param pattern  the pattern.
+     * @return true if the index can be used to answer searches for the pattern.
+     */
+    public boolean matches(RTextArea textArea, Pattern pattern) {
+        return !stale && this.textArea == textArea && textArea.getDocument() == document
+                && this.pattern.pattern().equals(pattern.pattern()) && this.pattern.flags() == pattern.flags();
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    /**
+     * Returns all matches as document ranges, e.g. to mark them.
+     *
+     * @return the matches, in document order.
+     */
+    public List<DocumentRange> toRanges() {
+        List<DocumentRange> ranges = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ranges.add(new DocumentRange(starts[i], ends[i]));
+        }
+        return ranges;
+    }
+
+    /**
+     * Returns the match that starts exactly at the given range, e.g. the current selection.
+     *
+     * @param start the start of the range.
+     * @param end   the end of the range.
+     * @return the index of the match, or -1 if no match covers exactly that range.
+     */
+    public int indexOf(int start, int end) {
+        int index = Arrays.binarySearch(starts, 0, count, start);
+        return index >= 0 && ends[index] == end ? index : -1;
+    }
+
+    /**
+     * Returns the first match starting at or after an offset.
+     *
+     * @param offset the offset.
+     * @return the index of the match, or {@link #getCount()} if there is none.
+     */
+    public int firstAtOrAfter(int offset) {
+        int index = Arrays.binarySearch(starts, 0, count, offset);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Returns the last match ending at or before an offset.
+     *
+     * @param offset the offset.
+     * @return the index of the match, or -1 if there is none.
+     */
+    public int lastEndingAtOrBefore(int offset) {
+        // Matches do not overlap, so their ends are sorted like their starts.
+        int index = Arrays.binarySearch(ends, 0, count, offset);
+        return index >= 0 ? index : -index - 2;
+    }
+}
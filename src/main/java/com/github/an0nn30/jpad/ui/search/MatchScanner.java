@@ -0,0 +1,137 @@
+package com.github.an0nn30.jpad.ui.search;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Steps through the non-empty matches of a pattern in a text, with a {@link LiteralMatcher} when the pattern is
+ * plain text and with a {@link Matcher} otherwise.
+ * <p>
+ * A literal search takes linear time, so when the text is a {@link CheckedText} it searches the text underneath
+ * and checks for cancellation and the timeout once per match instead of once every few thousand characters.
+ * Whole-word boundaries of a literal match are checked with the pattern itself, so both paths agree on what a
+ * word is. A scanner is meant for one thread.
+ * </p>
+ */
+final class MatchScanner {
+
+    private final Pattern pattern;
+    private final CharSequence text;
+    private final LiteralMatcher literal;
+    private final CheckedText checked;
+    private Matcher matcher;
+    private int start = -1;
+    private int end = -1;
+
+    /**
+     * Creates a scanner positioned before the first match.
+     *
+     * @param pattern the pattern.
+     * @param text    the text to search.
+     */
+    MatchScanner(Pattern pattern, CharSequence text) {
+        this.pattern = pattern;
+        this.literal = LiteralMatcher.of(pattern);
+        this.checked = literal != null && text instanceof CheckedText checkedText ? checkedText : null;
+        this.text = checked != null ? checked.unchecked() : text;
+    }
+
+    /**
+     * Finds the first match starting at or after an offset.
+     *
+     * @param from the offset.
+     * @return true if a match was found.
+     */
+    boolean find(int from) {
+        if (literal == null) {
+            Matcher regex = matcher();
+            int position = from;
+            while (position <= text.length() && regex.find(position)) {
+                if (regex.end() > regex.start()) {
+                    return found(regex.start(), regex.end());
+                }
+                position = regex.end() + 1;
+            }
+            return found(-1, -1);
+        }
+        if (checked != null) {
+            checked.check();
+        }
+        int position = from;
+        int hit;
+        while ((hit = literal.indexOf(text, position)) >= 0) {
+            if (!literal.isWholeWord() || isWholeWord(hit)) {
+                return found(hit, hit + literal.length());
+            }
+            position = hit + 1;
+        }
+        return found(-1, -1);
+    }
+
+    /**
+     * Finds the match after the current one, or the first match if none was found yet.
+     *
+     * @return true if a match was found.
+     */
+    boolean next() {
+        if (literal != null) {
+            return find(Math.max(end, 0));
+        }
+        Matcher regex = matcher();
+        while (regex.find()) {
+            if (regex.end() > regex.start()) {
+                return found(regex.start(), regex.end());
+            }
+        }
+        return found(-1, -1);
+    }
+
+    /**
+     * Moves the scanner back before the first match.
+     */
+    void reset() {
+        if (matcher != null) {
+            matcher.reset();
+        }
+        found(-1, -1);
+    }
+
+    int start() {
+        return start;
+    }
+
+    int end() {
+        return end;
+    }
+
+    /**
+     * Returns the regular expression matcher positioned at the current match, e.g. to expand a replacement with
+     * group references.
+     *
+     * @return the matcher, or null if the pattern is searched for as plain text.
+     */
+    Matcher regexMatcher() {
+        return literal == null ? matcher() : null;
+    }
+
+    private boolean found(int start, int end) {
+        this.start = start;
+        this.end = end;
+        return start >= 0;
+    }
+
+    private Matcher matcher() {
+        if (matcher == null) {
+            matcher = pattern.matcher(text);
+            if (literal != null) {
+                // Lets the word boundaries of a region see the characters around it.
+                matcher.useTransparentBounds(true).useAnchoringBounds(false);
+            }
+        }
+        return matcher;
+    }
+
+    private boolean isWholeWord(int hit) {
+        return matcher().region(hit, hit + literal.length()).matches();
+    }
+}
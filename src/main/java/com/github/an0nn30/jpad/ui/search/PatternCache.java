@@ -0,0 +1,53 @@
+package com.github.an0nn30.jpad.ui.search;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A small cache of compiled patterns, so that searching again for the same query, as find next does on every
+ * key press, does not compile its pattern again. The least recently used pattern is evicted once the cache is
+ * full. Patterns are immutable, so a cached pattern can be shared between threads.
+ */
+public final class PatternCache {
+
+    private static final int CAPACITY = 32;
+
+    private record Key(String regex, int flags) {
+    }
+
+    private static final Map<Key, Pattern> patterns = new LinkedHashMap<>(CAPACITY, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Pattern> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    private PatternCache() {
+    }
+
+    /**
+     * Returns the compiled pattern for a regular expression and flags, compiling it if it is not cached.
+     *
+     * @param regex the regular expression.
+     * @param flags the {@link Pattern} flags.
+     * @return the pattern.
+     * @throws PatternSyntaxException if the regular expression is invalid; invalid expressions are not cached.
+     */
+    public static Pattern compile(String regex, int flags) {
+        Key key = new Key(regex, flags);
+        synchronized (patterns) {
+            Pattern pattern = patterns.get(key);
+            if (pattern != null) {
+                return pattern;
+            }
+        }
+        // Compiled outside the lock; two threads compiling the same pattern at once is harmless.
+        Pattern pattern = Pattern.compile(regex, flags);
+        synchronized (patterns) {
+            patterns.put(key, pattern);
+        }
+        return pattern;
+    }
+}
@@ -83,9 +83,10 @@ public class ProjectFileSearchIndex {
 
     private static boolean isBinaryFile(File file) {
         String name = file.getName().toLowerCase();
-        String[] binaryExtensions = { ".exe", ".dll", ".so", ".bin", ".class", ".jar",
+        // Compressed files, archives and other binaries are not listed here; they open in read-only viewers.
+        String[] binaryExtensions = {
                 ".png", ".jpg", ".jpeg", ".gif", ".bmp", ".ico",
-                ".pdf", ".zip", ".tar", ".gz", ".7z", ".mp3", ".mp4",
+                ".pdf", ".tar", ".7z", ".mp3", ".mp4",
                 ".avi", ".mov", ".wmv" };
         for (String ext : binaryExtensions) {
             if (name.endsWith(ext)) {
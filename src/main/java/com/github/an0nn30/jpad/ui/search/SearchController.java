@@ -1,18 +1,30 @@
 package com.github.an0nn30.jpad.ui.search;
 
 import com.github.an0nn30.jpad.ui.EditorFrame;
+import com.github.an0nn30.jpad.ui.components.LargeFileViewer;
 import com.github.an0nn30.jpad.ui.components.TextArea;
 import org.fife.rsta.ui.search.*;
 import org.fife.ui.rtextarea.SearchContext;
 import org.fife.ui.rtextarea.SearchEngine;
-import org.fife.ui.rtextarea.SearchResult;
 
 import javax.swing.*;
+import javax.swing.event.CaretListener;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * The SearchController class handles find/replace functionality for the editor.
  * It initializes find and replace dialogs, as well as their toolbars,
- * and delegates search operations to the underlying SearchEngine.
+ * and runs search operations in the background with {@link DocumentSearch}.
+ * A search that takes a while shows a small window from which it can be cancelled.
+ * <p>
+ * While a search dialog is open, the matches of the query are counted in the background as it is typed and the
+ * status bar shows "Match 17 of 2,341". Finding the next or previous match then moves through the
+ * {@link MatchIndex} instead of searching the text again.
+ * </p>
  */
 public class SearchController implements SearchListener {
 
@@ -21,6 +33,20 @@ public class SearchController implements SearchListener {
     private final ReplaceDialog replaceDialog;
     private final FindToolBar findToolBar;
     private final ReplaceToolBar replaceToolBar;
+    private final SearchContext context;
+    private final Timer progressTimer;
+    private final Timer countTimer;
+    private final CaretListener caretListener = e -> updateMatchStatus();
+    private JDialog progressDialog;
+    private DocumentSearch search;
+    private MatchIndex matchIndex;
+    private MatchIndex.Build countBuild;
+    private TextArea countedTextArea;
+
+    // How long a search runs before the window to cancel it is shown, in milliseconds.
+    private static final int PROGRESS_DELAY = 500;
+    // How long the query or the text must stay unchanged before the matches are counted again, in milliseconds.
+    private static final int COUNT_DELAY = 250;
 
     /**
      * Constructs a SearchController with the given EditorFrame.
@@ -35,7 +61,7 @@ public class SearchController implements SearchListener {
         replaceDialog = new ReplaceDialog(editorFrame, this);
 
         // Share the search context between dialogs.
-        SearchContext context = findDialog.getSearchContext();
+        context = findDialog.getSearchContext();
         replaceDialog.setSearchContext(context);
 
         // Optionally, initialize the search toolbars.
@@ -43,6 +69,35 @@ public class SearchController implements SearchListener {
         findToolBar.setSearchContext(context);
         replaceToolBar = new ReplaceToolBar(this);
         replaceToolBar.setSearchContext(context);
+
+        progressTimer = new Timer(PROGRESS_DELAY, e -> showProgress());
+        progressTimer.setRepeats(false);
+
+        // Count the matches again once the query has stopped changing.
+        countTimer = new Timer(COUNT_DELAY, e -> recount());
+        countTimer.setRepeats(false);
+        context.addPropertyChangeListener(e -> {
+            if (isFindDialogVisible() || isReplaceDialogVisible()) {
+                countTimer.restart();
+            }
+        });
+        ComponentAdapter dialogListener = new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                countTimer.restart();
+            }
+
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                if (!isFindDialogVisible() && !isReplaceDialogVisible()) {
+                    countTimer.stop();
+                    disposeMatchIndex();
+                    editorFrame.showSearchStatus("");
+                }
+            }
+        };
+        findDialog.addComponentListener(dialogListener);
+        replaceDialog.addComponentListener(dialogListener);
     }
 
     /**
@@ -104,46 +159,246 @@ public class SearchController implements SearchListener {
         if (activeTextArea == null) {
             return; // No active text area to search.
         }
-        SearchResult result = performSearchOperation(e.getType(), activeTextArea, context);
-        // Provide error feedback for FIND and REPLACE operations if not found or wrapped.
-        if ((e.getType() == SearchEvent.Type.FIND || e.getType() == SearchEvent.Type.REPLACE)
-                && (result == null || !result.wasFound() || result.isWrapped())) {
-            UIManager.getLookAndFeel().provideErrorFeedback(activeTextArea);
-        }
-        // Notify the user about the number of occurrences replaced in a REPLACE_ALL operation.
-        if (e.getType() == SearchEvent.Type.REPLACE_ALL && result != null) {
-            JOptionPane.showMessageDialog(null, result.getCount() + " occurrences replaced.");
+        LargeFileViewer largeFileViewer = editorFrame.getTabManager().getActiveLargeFileViewer();
+        if (largeFileViewer != null) {
+            searchLargeFile(e.getType(), largeFileViewer, context);
+            return;
         }
-        // Additional status updates (e.g., status bar messages) can be added here.
+        performSearchOperation(e.getType(), activeTextArea, context);
     }
 
     /**
-     * Performs the search operation corresponding to the specified type.
+     * Handles a search event for a tab showing a large-file viewer. Find runs across the whole file
+     * in the background; "mark all" only covers the lines currently loaded, and the viewer is read-only
+     * so replace operations are rejected.
      *
-     * @param type           the type of search event.
-     * @param activeTextArea the active text area to search within.
-     * @param context        the search context.
-     * @return the SearchResult of the operation, or null if not applicable.
+     * @param type    the type of search event.
+     * @param viewer  the active large-file viewer.
+     * @param context the search context.
      */
-    private SearchResult performSearchOperation(SearchEvent.Type type, TextArea activeTextArea, SearchContext context) {
-        SearchResult result = null;
+    private void searchLargeFile(SearchEvent.Type type, LargeFileViewer viewer, SearchContext context) {
         switch (type) {
-            case MARK_ALL:
-                result = SearchEngine.markAll(activeTextArea, context);
-                break;
             case FIND:
-                result = SearchEngine.find(activeTextArea, context);
-                break;
-            case REPLACE:
-                result = SearchEngine.replace(activeTextArea, context);
+                viewer.find(context);
                 break;
-            case REPLACE_ALL:
-                result = SearchEngine.replaceAll(activeTextArea, context);
+            case MARK_ALL:
+                SearchEngine.markAll(viewer.getTextArea(), context);
                 break;
             default:
+                UIManager.getLookAndFeel().provideErrorFeedback(viewer.getTextArea());
                 break;
         }
-        return result;
+    }
+
+    /**
+     * Starts the search operation corresponding to the specified type in the background, cancelling a search
+     * that is still running. A replace is followed by a find of the next occurrence, as in the search dialogs.
+     *
+     * @param type           the type of search event.
+     * @param activeTextArea the active text area to search within.
+     * @param context        the search context.
+     */
+    private void performSearchOperation(SearchEvent.Type type, TextArea activeTextArea, SearchContext context) {
+        if (type == SearchEvent.Type.FIND && findInMatchIndex(activeTextArea, context)) {
+            return;
+        }
+        cancelSearch();
+        if (type == SearchEvent.Type.REPLACE_ALL) {
+            // The replaced count stays in the status bar instead of being counted over.
+            countTimer.stop();
+            disposeMatchIndex();
+        } else if ((type == SearchEvent.Type.FIND || type == SearchEvent.Type.MARK_ALL)
+                && (matchIndex == null || countedTextArea != activeTextArea) && countBuild == null) {
+            recount();
+        }
+        progressTimer.restart();
+        search = DocumentSearch.start(activeTextArea, type, context, result -> {
+            search = null;
+            hideProgress();
+            if (result == null) {
+                return;
+            }
+            // Provide error feedback for FIND and REPLACE operations if not found or wrapped.
+            if ((type == SearchEvent.Type.FIND || type == SearchEvent.Type.REPLACE)
+                    && (!result.wasFound() || result.isWrapped())) {
+                UIManager.getLookAndFeel().provideErrorFeedback(activeTextArea);
+            }
+            if (type == SearchEvent.Type.REPLACE && result.wasFound()) {
+                performSearchOperation(SearchEvent.Type.FIND, activeTextArea, context);
+            }
+            // Report the number of occurrences replaced in a REPLACE_ALL operation.
+            if (type == SearchEvent.Type.REPLACE_ALL) {
+                editorFrame.showSearchStatus(String.format(result.getCount() == 1
+                        ? "Replaced %,d occurrence" : "Replaced %,d occurrences", result.getCount()));
+            }
+        });
+    }
+
+    /**
+     * Finds the next or previous match through the match index, without searching the text again.
+     *
+     * @param textArea the active text area.
+     * @param context  the search context.
+     * @return true if the find was answered from the index; false if the index does not fit the text area and
+     * query, and the text has to be searched.
+     */
+    private boolean findInMatchIndex(TextArea textArea, SearchContext context) {
+        Pattern pattern = toPattern(context);
+        if (matchIndex == null || pattern == null || !matchIndex.matches(textArea, pattern)) {
+            return false;
+        }
+        cancelSearch();
+        int count = matchIndex.getCount();
+        boolean wrapped = false;
+        int index;
+        if (context.getSearchForward()) {
+            index = matchIndex.firstAtOrAfter(textArea.getSelectionEnd());
+            if (index == count && context.getSearchWrap()) {
+                index = 0;
+                wrapped = true;
+            }
+        } else {
+            index = matchIndex.lastEndingAtOrBefore(textArea.getSelectionStart());
+            if (index < 0 && context.getSearchWrap()) {
+                index = count - 1;
+                wrapped = true;
+            }
+        }
+        MarkAllHighlighter markAll = MarkAllHighlighter.of(textArea);
+        if (context.getMarkAll() && !markAll.isMarking(pattern)) {
+            markAll.mark(pattern, matchIndex.toRanges());
+        }
+        if (index < 0 || index >= count) {
+            UIManager.getLookAndFeel().provideErrorFeedback(textArea);
+            return true;
+        }
+        textArea.select(matchIndex.getStart(index), matchIndex.getEnd(index));
+        if (wrapped) {
+            UIManager.getLookAndFeel().provideErrorFeedback(textArea);
+        }
+        return true;
+    }
+
+    /**
+     * Counts the matches of the current query in the active text area in the background, replacing the previous
+     * match index.
+     */
+    private void recount() {
+        countTimer.stop();
+        disposeMatchIndex();
+        TextArea textArea = editorFrame.getTabManager().getActiveTextArea();
+        Pattern pattern = toPattern(context);
+        if (textArea == null || pattern == null || editorFrame.getTabManager().getActiveLargeFileViewer() != null) {
+            editorFrame.showSearchStatus("");
+            return;
+        }
+        countBuild = MatchIndex.build(textArea, pattern, countTimer::restart, index -> {
+            countBuild = null;
+            if (index == null) {
+                editorFrame.showSearchStatus("");
+                return;
+            }
+            matchIndex = index;
+            countedTextArea = textArea;
+            textArea.addCaretListener(caretListener);
+            updateMatchStatus();
+        });
+    }
+
+    private void disposeMatchIndex() {
+        if (countBuild != null) {
+            countBuild.cancel();
+            countBuild = null;
+        }
+        if (matchIndex != null) {
+            matchIndex.dispose();
+            matchIndex = null;
+            countedTextArea.removeCaretListener(caretListener);
+            countedTextArea = null;
+        }
+    }
+
+    /**
+     * Shows the match count in the status bar, with the position of the selected match if a match is selected.
+     * An index made stale by an edit keeps its last status until the matches have been counted again.
+     */
+    private void updateMatchStatus() {
+        if (matchIndex == null || matchIndex.isStale()) {
+            return;
+        }
+        int count = matchIndex.getCount();
+        if (count == 0) {
+            editorFrame.showSearchStatus("No matches");
+            return;
+        }
+        int index = matchIndex.indexOf(countedTextArea.getSelectionStart(), countedTextArea.getSelectionEnd());
+        if (index >= 0) {
+            editorFrame.showSearchStatus(String.format("Match %,d of %,d", index + 1, count));
+        } else {
+            editorFrame.showSearchStatus(String.format(count == 1 ? "%,d match" : "%,d matches", count));
+        }
+    }
+
+    /**
+     * Compiles the query of a search context.
+     *
+     * @param context the search context.
+     * @return the pattern, or null if the query is empty or an invalid regular expression.
+     */
+    private static Pattern toPattern(SearchContext context) {
+        String searchFor = context.getSearchFor();
+        if (searchFor == null || searchFor.isEmpty()) {
+            return null;
+        }
+        try {
+            return new FindInFilesQuery(searchFor, context.getMatchCase(), context.getWholeWord(),
+                    context.isRegularExpression()).toPattern();
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Cancels the search that is running, if any.
+     */
+    public void cancelSearch() {
+        if (search != null) {
+            search.cancel();
+            search = null;
+        }
+        hideProgress();
+    }
+
+    /**
+     * Shows a small window, with a button to cancel the search, once a search has been running for a while.
+     */
+    private void showProgress() {
+        if (search == null) {
+            return;
+        }
+        if (progressDialog == null) {
+            progressDialog = new JDialog(editorFrame, "Searching", false);
+            JPanel panel = new JPanel(new BorderLayout(12, 0));
+            panel.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+            JProgressBar progressBar = new JProgressBar();
+            progressBar.setIndeterminate(true);
+            panel.add(new JLabel("Searching…"), BorderLayout.WEST);
+            panel.add(progressBar, BorderLayout.CENTER);
+            JButton cancelButton = new JButton("Cancel");
+            cancelButton.addActionListener(e -> cancelSearch());
+            panel.add(cancelButton, BorderLayout.EAST);
+            progressDialog.setContentPane(panel);
+            progressDialog.pack();
+        }
+        progressDialog.setLocationRelativeTo(editorFrame);
+        progressDialog.setVisible(true);
+    }
+
+    private void hideProgress() {
+        progressTimer.stop();
+        if (progressDialog != null) {
+            progressDialog.setVisible(false);
+        }
     }
 
     /**
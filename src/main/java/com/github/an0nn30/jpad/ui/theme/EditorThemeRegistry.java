@@ -0,0 +1,123 @@
+package com.github.an0nn30.jpad.ui.theme;
+
+import com.github.an0nn30.jpad.event.EventBus;
+import com.github.an0nn30.jpad.event.EventKey;
+import com.github.an0nn30.jpad.logging.Logger;
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import org.fife.ui.rsyntaxtextarea.SyntaxScheme;
+import org.fife.ui.rsyntaxtextarea.Theme;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Parses each RSyntaxTextArea editor theme once and applies it to every editor.
+ * <p>
+ * Editors register themselves when they are created. When the interface theme changes, the new editor theme
+ * is looked up once and applied to all registered editors in one pass, so neither opening a tab nor switching
+ * themes parses any XML after the first use of a theme. Each editor gets its own copy of the theme's
+ * {@link SyntaxScheme}, because changing an editor's font changes its scheme in place.
+ * Editors are held weakly and must be used on the EDT.
+ * </p>
+ */
+public final class EditorThemeRegistry {
+
+    private static final String LIGHT_THEME = "/org/fife/ui/rsyntaxtextarea/themes/idea.xml";
+    private static final String DARK_THEME = "/org/fife/ui/rsyntaxtextarea/themes/monokai.xml";
+
+    private static final Map<String, Theme> themes = new HashMap<>();
+    private static final Set<RSyntaxTextArea> editors = Collections.newSetFromMap(new WeakHashMap<>());
+    private static boolean subscribed;
+
+    private EditorThemeRegistry() {
+    }
+
+    /**
+     * Applies the editor theme for the given interface theme to an editor and keeps it up to date with
+     * later theme changes until it is {@link #unregister unregistered}.
+     *
+     * @param editor         the editor.
+     * @param interfaceTheme the interface theme, e.g. "Light", "Retro" or "Dark".
+     */
+    public static void register(RSyntaxTextArea editor, String interfaceTheme) {
+        if (!subscribed) {
+            subscribed = true;
+            EventBus.subscribe(EventKey.THEME_CHANGED, event -> applyToAll(event.data()));
+        }
+        editors.add(editor);
+        apply(editor, interfaceTheme);
+    }
+
+    /**
+     * Stops applying theme changes to an editor, e.g. because its tab was closed.
+     *
+     * @param editor the editor.
+     */
+    public static void unregister(RSyntaxTextArea editor) {
+        editors.remove(editor);
+    }
+
+    /**
+     * Applies the editor theme for the given interface theme to one editor.
+     *
+     * @param editor         the editor.
+     * @param interfaceTheme the interface theme.
+     */
+    public static void apply(RSyntaxTextArea editor, String interfaceTheme) {
+        Theme theme = getTheme(interfaceTheme);
+        if (theme != null) {
+            applyTheme(editor, theme);
+        }
+    }
+
+    private static void applyToAll(String interfaceTheme) {
+        Theme theme = getTheme(interfaceTheme);
+        if (theme == null) {
+            return;
+        }
+        // The weak set drops collected editors whenever it is accessed, so iterate over a copy.
+        for (RSyntaxTextArea editor : new ArrayList<>(editors)) {
+            // Keep the user's font size; the theme only supplies colors and styles.
+            Font font = editor.getFont();
+            applyTheme(editor, theme);
+            editor.setFont(font);
+        }
+    }
+
+    private static void applyTheme(RSyntaxTextArea editor, Theme theme) {
+        theme.apply(editor);
+        editor.setSyntaxScheme((SyntaxScheme) editor.getSyntaxScheme().clone());
+    }
+
+    /**
+     * Returns the parsed editor theme for an interface theme, parsing it on first use.
+     *
+     * @param interfaceTheme the interface theme.
+     * @return the theme, or null if it could not be loaded.
+     */
+    public static Theme getTheme(String interfaceTheme) {
+        String path = "dark".equalsIgnoreCase(interfaceTheme) ? DARK_THEME : LIGHT_THEME;
+        Theme theme = themes.get(path);
+        if (theme == null) {
+            try (InputStream in = EditorThemeRegistry.class.getResourceAsStream(path)) {
+                if (in == null) {
+                    Logger.getInstance().error(EditorThemeRegistry.class, "Theme resource not found: " + path);
+                    return null;
+                }
+                theme = Theme.load(in);
+                themes.put(path, theme);
+            } catch (IOException e) {
+                Logger.getInstance().error(EditorThemeRegistry.class, "Error loading theme: " + e.getMessage());
+                return null;
+            }
+        }
+        return theme;
+    }
+}